@@ -0,0 +1,408 @@
+package com.mrhabibi.autonomousdialog.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Annotation processor that generates BundleCodec for every class annotated with BundleCodable,
+ * the generated codec accesses the fields directly, so decoding params and responses needs no
+ * reflection. Most fields are not boxed either, except what Bundle boxes itself, byte, char and
+ * short are read with its boxing getters, and Integer lists are written to Parcel as values
+ */
+public class BundleCodecProcessor extends AbstractProcessor {
+
+    static final String BUNDLE_CODABLE = "com.mrhabibi.autonomousdialog.codec.BundleCodable";
+    static final String BUNDLE_CODEC = "com.mrhabibi.autonomousdialog.codec.BundleCodec";
+    static final String CODEC_SUFFIX = "Codec";
+
+    private Elements mElements;
+    private Types mTypes;
+    private Messager mMessager;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        mElements = processingEnv.getElementUtils();
+        mTypes = processingEnv.getTypeUtils();
+        mMessager = processingEnv.getMessager();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(BUNDLE_CODABLE);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement annotation = mElements.getTypeElement(BUNDLE_CODABLE);
+        if (annotation == null) {
+            return false;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@BundleCodable can only be applied to classes");
+                continue;
+            }
+            TypeElement typeElement = (TypeElement) element;
+            List<CodecField> fields = collectFields(typeElement, getPackage(typeElement));
+            if (fields != null && isInstantiable(typeElement)) {
+                writeCodec(typeElement, fields);
+            }
+        }
+        return true;
+    }
+
+    private boolean isInstantiable(TypeElement typeElement) {
+        Set<Modifier> modifiers = typeElement.getModifiers();
+        if (modifiers.contains(Modifier.ABSTRACT) || modifiers.contains(Modifier.PRIVATE)) {
+            error(typeElement, "@BundleCodable class must not be abstract or private");
+            return false;
+        }
+        if (typeElement.getNestingKind() == NestingKind.MEMBER && !modifiers.contains(Modifier.STATIC)) {
+            error(typeElement, "@BundleCodable nested class must be static");
+            return false;
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(typeElement.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        error(typeElement, "@BundleCodable class needs non-private constructor without arguments");
+        return false;
+    }
+
+    /**
+     * Collect the fields of the class and its superclasses, superclass fields first. The codec is
+     * generated into the package of the annotated class, so the inherited fields from other
+     * packages must be public. A field can't hide an inherited one with the same name, the codec
+     * accesses both by the name and they would be written to the same key
+     *
+     * @param codecPackage The package of the generated codec
+     * @return The fields, or null if there is unsupported or inaccessible field
+     */
+    private List<CodecField> collectFields(TypeElement typeElement, PackageElement codecPackage) {
+        List<CodecField> fields = new ArrayList<>();
+        Set<String> inheritedNames = new HashSet<>();
+        boolean valid = true;
+
+        TypeMirror superclass = typeElement.getSuperclass();
+        if (superclass.getKind() == TypeKind.DECLARED) {
+            TypeElement superElement = (TypeElement) ((DeclaredType) superclass).asElement();
+            if (!superElement.getQualifiedName().contentEquals("java.lang.Object")) {
+                List<CodecField> superFields = collectFields(superElement, codecPackage);
+                if (superFields == null) {
+                    valid = false;
+                } else {
+                    fields.addAll(superFields);
+                    for (CodecField superField : superFields) {
+                        inheritedNames.add(superField.name);
+                    }
+                }
+            }
+        }
+
+        boolean samePackage = getPackage(typeElement).getQualifiedName().contentEquals(codecPackage.getQualifiedName());
+        for (VariableElement field : ElementFilter.fieldsIn(typeElement.getEnclosedElements())) {
+            Set<Modifier> modifiers = field.getModifiers();
+            if (inheritedNames.contains(field.getSimpleName().toString())) {
+                error(field, "@BundleCodable field " + typeElement.getQualifiedName() + "."
+                        + field.getSimpleName() + " hides an inherited field with the same name, rename it");
+                valid = false;
+                continue;
+            }
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)
+                    || modifiers.contains(Modifier.PRIVATE)) {
+                continue;
+            }
+            if (modifiers.contains(Modifier.FINAL)) {
+                error(field, "@BundleCodable field must not be final");
+                valid = false;
+                continue;
+            }
+            if (!samePackage && !modifiers.contains(Modifier.PUBLIC)) {
+                error(field, "@BundleCodable inherited field " + typeElement.getQualifiedName() + "."
+                        + field.getSimpleName() + " is not accessible from " + codecPackage.getQualifiedName()
+                        + ", make it public");
+                valid = false;
+                continue;
+            }
+            CodecField codecField = toCodecField(field);
+            if (codecField == null) {
+                error(field, "Unsupported @BundleCodable field type " + field.asType());
+                valid = false;
+            } else {
+                fields.add(codecField);
+            }
+        }
+        return valid ? fields : null;
+    }
+
+    private CodecField toCodecField(VariableElement field) {
+        String name = field.getSimpleName().toString();
+        TypeMirror type = field.asType();
+        String typeName = type.toString();
+
+        CodecField.Kind kind = toPrimitiveKind(type.getKind());
+        if (kind != null) {
+            return new CodecField(name, typeName, kind, null);
+        }
+
+        if (type.getKind() == TypeKind.ARRAY) {
+            TypeMirror componentType = ((ArrayType) type).getComponentType();
+            kind = toArrayKind(componentType);
+            return kind != null ? new CodecField(name, typeName, kind, null) : null;
+        }
+
+        if (type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+
+        TypeElement typeElement = (TypeElement) ((DeclaredType) type).asElement();
+        String qualifiedName = typeElement.getQualifiedName().toString();
+
+        if (qualifiedName.equals("java.lang.String")) {
+            kind = CodecField.Kind.STRING;
+        } else if (qualifiedName.equals("java.lang.CharSequence")) {
+            kind = CodecField.Kind.CHAR_SEQUENCE;
+        } else if (qualifiedName.equals("android.os.Bundle")) {
+            kind = CodecField.Kind.BUNDLE;
+        } else if (qualifiedName.equals("java.util.ArrayList")) {
+            List<? extends TypeMirror> typeArguments = ((DeclaredType) type).getTypeArguments();
+            if (typeArguments.size() == 1) {
+                String argumentName = typeArguments.get(0).toString();
+                if (argumentName.equals("java.lang.String")) {
+                    kind = CodecField.Kind.STRING_LIST;
+                } else if (argumentName.equals("java.lang.Integer")) {
+                    kind = CodecField.Kind.INTEGER_LIST;
+                }
+            }
+        } else if (typeElement.getKind() == ElementKind.ENUM) {
+            kind = CodecField.Kind.ENUM;
+        } else if (isCodable(typeElement)) {
+            return new CodecField(name, typeName, CodecField.Kind.CODABLE, codecName(typeElement));
+        } else if (isParcelable(type)) {
+            kind = CodecField.Kind.PARCELABLE;
+        }
+        return kind != null ? new CodecField(name, typeName, kind, null) : null;
+    }
+
+    private CodecField.Kind toPrimitiveKind(TypeKind typeKind) {
+        switch (typeKind) {
+            case BOOLEAN:
+                return CodecField.Kind.BOOLEAN;
+            case BYTE:
+                return CodecField.Kind.BYTE;
+            case CHAR:
+                return CodecField.Kind.CHAR;
+            case SHORT:
+                return CodecField.Kind.SHORT;
+            case INT:
+                return CodecField.Kind.INT;
+            case LONG:
+                return CodecField.Kind.LONG;
+            case FLOAT:
+                return CodecField.Kind.FLOAT;
+            case DOUBLE:
+                return CodecField.Kind.DOUBLE;
+            default:
+                return null;
+        }
+    }
+
+    private CodecField.Kind toArrayKind(TypeMirror componentType) {
+        switch (componentType.getKind()) {
+            case BOOLEAN:
+                return CodecField.Kind.BOOLEAN_ARRAY;
+            case BYTE:
+                return CodecField.Kind.BYTE_ARRAY;
+            case CHAR:
+                return CodecField.Kind.CHAR_ARRAY;
+            case SHORT:
+                return CodecField.Kind.SHORT_ARRAY;
+            case INT:
+                return CodecField.Kind.INT_ARRAY;
+            case LONG:
+                return CodecField.Kind.LONG_ARRAY;
+            case FLOAT:
+                return CodecField.Kind.FLOAT_ARRAY;
+            case DOUBLE:
+                return CodecField.Kind.DOUBLE_ARRAY;
+            case DECLARED:
+                String componentName = componentType.toString();
+                if (componentName.equals("java.lang.String")) {
+                    return CodecField.Kind.STRING_ARRAY;
+                } else if (componentName.equals("java.lang.CharSequence")) {
+                    return CodecField.Kind.CHAR_SEQUENCE_ARRAY;
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private boolean isCodable(TypeElement typeElement) {
+        for (AnnotationMirror annotationMirror : typeElement.getAnnotationMirrors()) {
+            TypeElement annotationElement = (TypeElement) annotationMirror.getAnnotationType().asElement();
+            if (annotationElement.getQualifiedName().contentEquals(BUNDLE_CODABLE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isParcelable(TypeMirror type) {
+        TypeElement parcelable = mElements.getTypeElement("android.os.Parcelable");
+        return parcelable != null && mTypes.isAssignable(type, parcelable.asType());
+    }
+
+    /**
+     * Codec name is the class name with Codec suffix, nested class names are joined with underscore
+     */
+    private String codecName(TypeElement typeElement) {
+        String packageName = getPackage(typeElement).getQualifiedName().toString();
+        String binaryName = typeElement.getQualifiedName().toString();
+        if (!packageName.isEmpty()) {
+            binaryName = binaryName.substring(packageName.length() + 1);
+        }
+        String simpleName = binaryName.replace('.', '_') + CODEC_SUFFIX;
+        return packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+    }
+
+    private PackageElement getPackage(Element element) {
+        while (element.getKind() != ElementKind.PACKAGE) {
+            element = element.getEnclosingElement();
+        }
+        return (PackageElement) element;
+    }
+
+    private void writeCodec(TypeElement typeElement, List<CodecField> fields) {
+        String packageName = getPackage(typeElement).getQualifiedName().toString();
+        String qualifiedCodecName = codecName(typeElement);
+        String codecName = qualifiedCodecName.substring(qualifiedCodecName.lastIndexOf('.') + 1);
+        String typeName = typeElement.getQualifiedName().toString();
+
+        SourceWriter writer = new SourceWriter();
+        if (!packageName.isEmpty()) {
+            writer.line("package " + packageName + ";").emptyLine();
+        }
+        writer.line("import android.os.Bundle;")
+                .line("import android.os.Parcel;")
+                .line("import android.text.TextUtils;")
+                .emptyLine()
+                .line("import " + BUNDLE_CODEC + ";")
+                .emptyLine()
+                .line("/**")
+                .line(" * Generated by autonomous-dialog-compiler, do not edit")
+                .line(" */")
+                .line("public final class " + codecName + " implements BundleCodec<" + typeName + "> {")
+                .indent()
+                .emptyLine()
+                .line("public static final " + codecName + " INSTANCE = new " + codecName + "();")
+                .emptyLine()
+                .line("@Override")
+                .line("public void writeToBundle(" + typeName + " value, Bundle bundle) {")
+                .indent();
+        for (CodecField field : fields) {
+            field.writeToBundle(writer);
+        }
+        writer.unindent()
+                .line("}")
+                .emptyLine()
+                .line("@Override")
+                .line("public " + typeName + " readFromBundle(Bundle bundle) {")
+                .indent()
+                .line("bundle.setClassLoader(getClass().getClassLoader());")
+                .line(typeName + " value = new " + typeName + "();");
+        for (CodecField field : fields) {
+            field.readFromBundle(writer);
+        }
+        writer.line("return value;")
+                .unindent()
+                .line("}")
+                .emptyLine()
+                .line("@Override")
+                .line("public void writeToParcel(" + typeName + " value, Parcel parcel) {")
+                .indent()
+                .line("if (value == null) {")
+                .indent()
+                .line("parcel.writeInt(0);")
+                .line("return;")
+                .unindent()
+                .line("}")
+                .line("parcel.writeInt(1);");
+        for (CodecField field : fields) {
+            field.writeToParcel(writer);
+        }
+        writer.unindent()
+                .line("}")
+                .emptyLine()
+                .line("@Override")
+                .line("@SuppressWarnings(\"unchecked\")")
+                .line("public " + typeName + " readFromParcel(Parcel parcel) {")
+                .indent()
+                .line("if (parcel.readInt() == 0) {")
+                .indent()
+                .line("return null;")
+                .unindent()
+                .line("}")
+                .line(typeName + " value = new " + typeName + "();");
+        for (CodecField field : fields) {
+            field.readFromParcel(writer);
+        }
+        writer.line("return value;")
+                .unindent()
+                .line("}")
+                .unindent()
+                .line("}");
+
+        try {
+            JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(qualifiedCodecName, typeElement);
+            Writer sourceWriter = sourceFile.openWriter();
+            try {
+                sourceWriter.write(writer.toString());
+            } finally {
+                sourceWriter.close();
+            }
+        } catch (IOException e) {
+            error(typeElement, "Failed to write " + qualifiedCodecName + ": " + e.getMessage());
+        }
+    }
+
+    private void error(Element element, String message) {
+        mMessager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
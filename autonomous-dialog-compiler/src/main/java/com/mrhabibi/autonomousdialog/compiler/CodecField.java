@@ -0,0 +1,272 @@
+package com.mrhabibi.autonomousdialog.compiler;
+
+/**
+ * One field of BundleCodable class, knows how the field is written to and read from Bundle and
+ * Parcel, every statement is written against the local variables value, bundle and parcel
+ */
+class CodecField {
+
+    enum Kind {
+        BOOLEAN("Boolean"),
+        BYTE("Byte"),
+        CHAR("Char"),
+        SHORT("Short"),
+        INT("Int"),
+        LONG("Long"),
+        FLOAT("Float"),
+        DOUBLE("Double"),
+        STRING("String"),
+        CHAR_SEQUENCE("CharSequence"),
+        BOOLEAN_ARRAY("BooleanArray"),
+        BYTE_ARRAY("ByteArray"),
+        CHAR_ARRAY("CharArray"),
+        SHORT_ARRAY("ShortArray"),
+        INT_ARRAY("IntArray"),
+        LONG_ARRAY("LongArray"),
+        FLOAT_ARRAY("FloatArray"),
+        DOUBLE_ARRAY("DoubleArray"),
+        STRING_ARRAY("StringArray"),
+        CHAR_SEQUENCE_ARRAY("CharSequenceArray"),
+        STRING_LIST("StringArrayList"),
+        INTEGER_LIST("IntegerArrayList"),
+        BUNDLE("Bundle"),
+        PARCELABLE("Parcelable"),
+        ENUM(null),
+        CODABLE(null);
+
+        /**
+         * The suffix of Bundle put and get methods
+         */
+        final String bundleSuffix;
+
+        Kind(String bundleSuffix) {
+            this.bundleSuffix = bundleSuffix;
+        }
+    }
+
+    final String name;
+    final String typeName;
+    final Kind kind;
+
+    /**
+     * The generated codec of the field type, only for CODABLE kind
+     */
+    final String codecName;
+
+    CodecField(String name, String typeName, Kind kind, String codecName) {
+        this.name = name;
+        this.typeName = typeName;
+        this.kind = kind;
+        this.codecName = codecName;
+    }
+
+    void writeToBundle(SourceWriter writer) {
+        String key = '"' + name + '"';
+        String field = "value." + name;
+        switch (kind) {
+            case ENUM:
+                writer.line("bundle.putString(" + key + ", " + field + " != null ? " + field + ".name() : null);");
+                break;
+            case CODABLE:
+                writer.line("if (" + field + " != null) {");
+                writer.indent();
+                writer.line("Bundle " + name + "Bundle = new Bundle();");
+                writer.line(codecName + ".INSTANCE.writeToBundle(" + field + ", " + name + "Bundle);");
+                writer.line("bundle.putBundle(" + key + ", " + name + "Bundle);");
+                writer.unindent();
+                writer.line("}");
+                break;
+            default:
+                writer.line("bundle.put" + kind.bundleSuffix + "(" + key + ", " + field + ");");
+                break;
+        }
+    }
+
+    void readFromBundle(SourceWriter writer) {
+        String key = '"' + name + '"';
+        String field = "value." + name;
+        switch (kind) {
+            case ENUM:
+                writer.line("String " + name + "Name = bundle.getString(" + key + ");");
+                writer.line("if (" + name + "Name != null) {");
+                writer.indent();
+                writer.line(field + " = " + typeName + ".valueOf(" + name + "Name);");
+                writer.unindent();
+                writer.line("}");
+                break;
+            case CODABLE:
+                writer.line("Bundle " + name + "Bundle = bundle.getBundle(" + key + ");");
+                writer.line("if (" + name + "Bundle != null) {");
+                writer.indent();
+                writer.line(field + " = " + codecName + ".INSTANCE.readFromBundle(" + name + "Bundle);");
+                writer.unindent();
+                writer.line("}");
+                break;
+            case BOOLEAN:
+            case BYTE:
+            case CHAR:
+            case SHORT:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                /*
+                 * Keep the field initializer value when the key is absent
+                 */
+                writer.line(field + " = bundle.get" + kind.bundleSuffix + "(" + key + ", " + field + ");");
+                break;
+            default:
+                writer.line("if (bundle.containsKey(" + key + ")) {");
+                writer.indent();
+                writer.line(field + " = bundle.get" + kind.bundleSuffix + "(" + key + ");");
+                writer.unindent();
+                writer.line("}");
+                break;
+        }
+    }
+
+    void writeToParcel(SourceWriter writer) {
+        String field = "value." + name;
+        switch (kind) {
+            case BOOLEAN:
+                writer.line("parcel.writeInt(" + field + " ? 1 : 0);");
+                break;
+            case BYTE:
+                writer.line("parcel.writeByte(" + field + ");");
+                break;
+            case CHAR:
+            case SHORT:
+                writer.line("parcel.writeInt(" + field + ");");
+                break;
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+            case STRING:
+            case BOOLEAN_ARRAY:
+            case BYTE_ARRAY:
+            case CHAR_ARRAY:
+            case INT_ARRAY:
+            case LONG_ARRAY:
+            case FLOAT_ARRAY:
+            case DOUBLE_ARRAY:
+            case STRING_ARRAY:
+                writer.line("parcel.write" + kind.bundleSuffix + "(" + field + ");");
+                break;
+            case CHAR_SEQUENCE:
+                writer.line("TextUtils.writeToParcel(" + field + ", parcel, 0);");
+                break;
+            case SHORT_ARRAY:
+            case CHAR_SEQUENCE_ARRAY:
+                writer.line("if (" + field + " == null) {");
+                writer.indent();
+                writer.line("parcel.writeInt(-1);");
+                writer.unindent();
+                writer.line("} else {");
+                writer.indent();
+                writer.line("parcel.writeInt(" + field + ".length);");
+                writer.line("for (int i = 0; i < " + field + ".length; i++) {");
+                writer.indent();
+                writer.line(kind == Kind.SHORT_ARRAY
+                        ? "parcel.writeInt(" + field + "[i]);"
+                        : "TextUtils.writeToParcel(" + field + "[i], parcel, 0);");
+                writer.unindent();
+                writer.line("}");
+                writer.unindent();
+                writer.line("}");
+                break;
+            case STRING_LIST:
+                writer.line("parcel.writeStringList(" + field + ");");
+                break;
+            case INTEGER_LIST:
+                writer.line("parcel.writeValue(" + field + ");");
+                break;
+            case BUNDLE:
+                writer.line("parcel.writeBundle(" + field + ");");
+                break;
+            case PARCELABLE:
+                writer.line("parcel.writeParcelable(" + field + ", 0);");
+                break;
+            case ENUM:
+                writer.line("parcel.writeString(" + field + " != null ? " + field + ".name() : null);");
+                break;
+            case CODABLE:
+                writer.line(codecName + ".INSTANCE.writeToParcel(" + field + ", parcel);");
+                break;
+        }
+    }
+
+    void readFromParcel(SourceWriter writer) {
+        String field = "value." + name;
+        switch (kind) {
+            case BOOLEAN:
+                writer.line(field + " = parcel.readInt() != 0;");
+                break;
+            case BYTE:
+                writer.line(field + " = parcel.readByte();");
+                break;
+            case CHAR:
+                writer.line(field + " = (char) parcel.readInt();");
+                break;
+            case SHORT:
+                writer.line(field + " = (short) parcel.readInt();");
+                break;
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+            case STRING:
+                writer.line(field + " = parcel.read" + kind.bundleSuffix + "();");
+                break;
+            case BOOLEAN_ARRAY:
+            case BYTE_ARRAY:
+            case CHAR_ARRAY:
+            case INT_ARRAY:
+            case LONG_ARRAY:
+            case FLOAT_ARRAY:
+            case DOUBLE_ARRAY:
+            case STRING_ARRAY:
+                writer.line(field + " = parcel.create" + kind.bundleSuffix + "();");
+                break;
+            case CHAR_SEQUENCE:
+                writer.line(field + " = TextUtils.CHAR_SEQUENCE_CREATOR.createFromParcel(parcel);");
+                break;
+            case SHORT_ARRAY:
+            case CHAR_SEQUENCE_ARRAY:
+                writer.line("int " + name + "Length = parcel.readInt();");
+                writer.line("if (" + name + "Length >= 0) {");
+                writer.indent();
+                writer.line(field + " = new " + (kind == Kind.SHORT_ARRAY ? "short" : "CharSequence")
+                        + "[" + name + "Length];");
+                writer.line("for (int i = 0; i < " + name + "Length; i++) {");
+                writer.indent();
+                writer.line(kind == Kind.SHORT_ARRAY
+                        ? field + "[i] = (short) parcel.readInt();"
+                        : field + "[i] = TextUtils.CHAR_SEQUENCE_CREATOR.createFromParcel(parcel);");
+                writer.unindent();
+                writer.line("}");
+                writer.unindent();
+                writer.line("}");
+                break;
+            case STRING_LIST:
+                writer.line(field + " = parcel.createStringArrayList();");
+                break;
+            case INTEGER_LIST:
+                writer.line(field + " = (" + typeName + ") parcel.readValue(null);");
+                break;
+            case BUNDLE:
+                writer.line(field + " = parcel.readBundle(getClass().getClassLoader());");
+                break;
+            case PARCELABLE:
+                writer.line(field + " = parcel.readParcelable(getClass().getClassLoader());");
+                break;
+            case ENUM:
+                writer.line("String " + name + "Name = parcel.readString();");
+                writer.line(field + " = " + name + "Name != null ? " + typeName + ".valueOf(" + name + "Name) : null;");
+                break;
+            case CODABLE:
+                writer.line(field + " = " + codecName + ".INSTANCE.readFromParcel(parcel);");
+                break;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.mrhabibi.autonomousdialog.compiler;
+
+/**
+ * Tiny indenting source builder, just enough for writing the codecs
+ */
+class SourceWriter {
+
+    private static final String INDENT = "    ";
+
+    private final StringBuilder mBuilder = new StringBuilder();
+    private int mLevel;
+
+    SourceWriter line(String line) {
+        for (int i = 0; i < mLevel; i++) {
+            mBuilder.append(INDENT);
+        }
+        mBuilder.append(line).append('\n');
+        return this;
+    }
+
+    SourceWriter emptyLine() {
+        mBuilder.append('\n');
+        return this;
+    }
+
+    SourceWriter indent() {
+        mLevel++;
+        return this;
+    }
+
+    SourceWriter unindent() {
+        mLevel--;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return mBuilder.toString();
+    }
+}
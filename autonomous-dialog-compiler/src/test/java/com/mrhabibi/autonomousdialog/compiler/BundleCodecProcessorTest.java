@@ -0,0 +1,258 @@
+package com.mrhabibi.autonomousdialog.compiler;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.JavaFileObjects;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaFileObject;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static com.google.testing.compile.Compiler.javac;
+
+/**
+ * Compiles small BundleCodable classes against the Android stubs in the test resources and checks
+ * the generated codecs and the processor errors
+ */
+public class BundleCodecProcessorTest {
+
+    private static final String[] STUBS = {
+            "stubs/android/os/Bundle.java",
+            "stubs/android/os/Parcel.java",
+            "stubs/android/text/TextUtils.java",
+            "stubs/com/mrhabibi/autonomousdialog/codec/BundleCodable.java",
+            "stubs/com/mrhabibi/autonomousdialog/codec/BundleCodec.java"
+    };
+
+    @Test
+    public void readsAndWritesFieldsDirectly() {
+        Compilation compilation = compile(
+                JavaFileObjects.forSourceLines("test.Params",
+                        "package test;",
+                        "import com.mrhabibi.autonomousdialog.codec.BundleCodable;",
+                        "import java.util.ArrayList;",
+                        "@BundleCodable",
+                        "public class Params {",
+                        "    int count = 3;",
+                        "    byte flag;",
+                        "    public String name;",
+                        "    ArrayList<Integer> ids;",
+                        "}"));
+
+        assertThat(compilation).succeeded();
+        assertThat(compilation).generatedSourceFile("test.ParamsCodec").contentsAsUtf8String()
+                .contains("value.count = bundle.getInt(\"count\", value.count);");
+        assertThat(compilation).generatedSourceFile("test.ParamsCodec").contentsAsUtf8String()
+                .contains("value.flag = bundle.getByte(\"flag\", value.flag);");
+        assertThat(compilation).generatedSourceFile("test.ParamsCodec").contentsAsUtf8String()
+                .contains("parcel.writeValue(value.ids);");
+    }
+
+    @Test
+    public void inheritsFieldsFromSamePackage() {
+        Compilation compilation = compile(
+                JavaFileObjects.forSourceLines("test.Base",
+                        "package test;",
+                        "public class Base {",
+                        "    protected int count;",
+                        "    String label;",
+                        "}"),
+                JavaFileObjects.forSourceLines("test.Child",
+                        "package test;",
+                        "import com.mrhabibi.autonomousdialog.codec.BundleCodable;",
+                        "@BundleCodable",
+                        "public class Child extends Base {",
+                        "    String name;",
+                        "}"));
+
+        assertThat(compilation).succeeded();
+        assertThat(compilation).generatedSourceFile("test.ChildCodec").contentsAsUtf8String()
+                .contains("bundle.putInt(\"count\", value.count);");
+        assertThat(compilation).generatedSourceFile("test.ChildCodec").contentsAsUtf8String()
+                .contains("bundle.putString(\"label\", value.label);");
+        assertThat(compilation).generatedSourceFile("test.ChildCodec").contentsAsUtf8String()
+                .contains("bundle.putString(\"name\", value.name);");
+    }
+
+    @Test
+    public void rejectsInaccessibleFieldsInheritedFromOtherPackage() {
+        Compilation compilation = compile(
+                JavaFileObjects.forSourceLines("other.Base",
+                        "package other;",
+                        "public class Base {",
+                        "    protected int count;",
+                        "    String label;",
+                        "    public String title;",
+                        "    private long secret;",
+                        "}"),
+                JavaFileObjects.forSourceLines("test.Child",
+                        "package test;",
+                        "import com.mrhabibi.autonomousdialog.codec.BundleCodable;",
+                        "@BundleCodable",
+                        "public class Child extends other.Base {",
+                        "}"));
+
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorCount(2);
+        assertThat(compilation).hadErrorContaining("other.Base.count is not accessible from test");
+        assertThat(compilation).hadErrorContaining("other.Base.label is not accessible from test");
+    }
+
+    @Test
+    public void acceptsPublicFieldsInheritedFromOtherPackage() {
+        Compilation compilation = compile(
+                JavaFileObjects.forSourceLines("other.Base",
+                        "package other;",
+                        "public class Base {",
+                        "    public String title;",
+                        "    private long secret;",
+                        "}"),
+                JavaFileObjects.forSourceLines("test.Child",
+                        "package test;",
+                        "import com.mrhabibi.autonomousdialog.codec.BundleCodable;",
+                        "@BundleCodable",
+                        "public class Child extends other.Base {",
+                        "}"));
+
+        assertThat(compilation).succeeded();
+        assertThat(compilation).generatedSourceFile("test.ChildCodec").contentsAsUtf8String()
+                .contains("bundle.putString(\"title\", value.title);");
+    }
+
+    @Test
+    public void rejectsFieldsHidingInheritedFields() {
+        Compilation compilation = compile(
+                JavaFileObjects.forSourceLines("test.Base",
+                        "package test;",
+                        "public class Base {",
+                        "    int count;",
+                        "    String label;",
+                        "    private String secret;",
+                        "}"),
+                JavaFileObjects.forSourceLines("test.Child",
+                        "package test;",
+                        "import com.mrhabibi.autonomousdialog.codec.BundleCodable;",
+                        "@BundleCodable",
+                        "public class Child extends Base {",
+                        "    long count;",
+                        "    transient String label;",
+                        "    String secret;",
+                        "}"));
+
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorCount(2);
+        assertThat(compilation).hadErrorContaining("test.Child.count hides an inherited field");
+        assertThat(compilation).hadErrorContaining("test.Child.label hides an inherited field");
+    }
+
+    @Test
+    public void namesNestedCodecAfterEnclosingClasses() {
+        Compilation compilation = compile(
+                JavaFileObjects.forSourceLines("test.Outer",
+                        "package test;",
+                        "import com.mrhabibi.autonomousdialog.codec.BundleCodable;",
+                        "public class Outer {",
+                        "    @BundleCodable",
+                        "    public static class Inner {",
+                        "        int count;",
+                        "    }",
+                        "}"));
+
+        assertThat(compilation).succeeded();
+        assertThat(compilation).generatedSourceFile("test.Outer_InnerCodec").contentsAsUtf8String()
+                .contains("public final class Outer_InnerCodec implements BundleCodec<test.Outer.Inner> {");
+    }
+
+    @Test
+    public void rejectsInnerClass() {
+        Compilation compilation = compile(
+                JavaFileObjects.forSourceLines("test.Outer",
+                        "package test;",
+                        "import com.mrhabibi.autonomousdialog.codec.BundleCodable;",
+                        "public class Outer {",
+                        "    @BundleCodable",
+                        "    public class Inner {",
+                        "        int count;",
+                        "    }",
+                        "}"));
+
+        assertThat(compilation).hadErrorContaining("@BundleCodable nested class must be static");
+    }
+
+    @Test
+    public void skipsPrivateFields() {
+        Compilation compilation = compile(
+                JavaFileObjects.forSourceLines("test.Params",
+                        "package test;",
+                        "import com.mrhabibi.autonomousdialog.codec.BundleCodable;",
+                        "@BundleCodable",
+                        "public class Params {",
+                        "    int count;",
+                        "    private String secret;",
+                        "}"));
+
+        assertThat(compilation).succeeded();
+        assertThat(compilation).generatedSourceFile("test.ParamsCodec").contentsAsUtf8String()
+                .doesNotContain("secret");
+    }
+
+    @Test
+    public void rejectsPrivateClass() {
+        Compilation compilation = compile(
+                JavaFileObjects.forSourceLines("test.Outer",
+                        "package test;",
+                        "import com.mrhabibi.autonomousdialog.codec.BundleCodable;",
+                        "public class Outer {",
+                        "    @BundleCodable",
+                        "    private static class Inner {",
+                        "        int count;",
+                        "    }",
+                        "}"));
+
+        assertThat(compilation).hadErrorContaining("@BundleCodable class must not be abstract or private");
+    }
+
+    @Test
+    public void rejectsUnsupportedFieldType() {
+        Compilation compilation = compile(
+                JavaFileObjects.forSourceLines("test.Params",
+                        "package test;",
+                        "import com.mrhabibi.autonomousdialog.codec.BundleCodable;",
+                        "@BundleCodable",
+                        "public class Params {",
+                        "    java.util.Date date;",
+                        "}"));
+
+        assertThat(compilation).hadErrorContaining("Unsupported @BundleCodable field type java.util.Date");
+    }
+
+    @Test
+    public void rejectsUnsupportedInheritedFieldType() {
+        Compilation compilation = compile(
+                JavaFileObjects.forSourceLines("test.Base",
+                        "package test;",
+                        "public class Base {",
+                        "    Object any;",
+                        "}"),
+                JavaFileObjects.forSourceLines("test.Child",
+                        "package test;",
+                        "import com.mrhabibi.autonomousdialog.codec.BundleCodable;",
+                        "@BundleCodable",
+                        "public class Child extends Base {",
+                        "}"));
+
+        assertThat(compilation).hadErrorContaining("Unsupported @BundleCodable field type java.lang.Object");
+    }
+
+    private Compilation compile(JavaFileObject... sources) {
+        List<JavaFileObject> files = new ArrayList<>(Arrays.asList(sources));
+        for (String stub : STUBS) {
+            files.add(JavaFileObjects.forResource(stub));
+        }
+        return javac().withProcessors(new BundleCodecProcessor()).compile(files);
+    }
+}
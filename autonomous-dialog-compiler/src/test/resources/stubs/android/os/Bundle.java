@@ -0,0 +1,51 @@
+package android.os;
+
+import java.util.ArrayList;
+
+/**
+ * Just enough of Bundle to compile the generated codecs of the test classes
+ */
+public final class Bundle {
+
+    public void setClassLoader(ClassLoader loader) {
+    }
+
+    public boolean containsKey(String key) {
+        return false;
+    }
+
+    public void putInt(String key, int value) {
+    }
+
+    public int getInt(String key, int defaultValue) {
+        return defaultValue;
+    }
+
+    public void putByte(String key, byte value) {
+    }
+
+    public Byte getByte(String key, byte defaultValue) {
+        return defaultValue;
+    }
+
+    public void putString(String key, String value) {
+    }
+
+    public String getString(String key) {
+        return null;
+    }
+
+    public void putIntegerArrayList(String key, ArrayList<Integer> value) {
+    }
+
+    public ArrayList<Integer> getIntegerArrayList(String key) {
+        return null;
+    }
+
+    public void putBundle(String key, Bundle value) {
+    }
+
+    public Bundle getBundle(String key) {
+        return null;
+    }
+}
@@ -0,0 +1,35 @@
+package android.os;
+
+/**
+ * Just enough of Parcel to compile the generated codecs of the test classes
+ */
+public final class Parcel {
+
+    public void writeInt(int value) {
+    }
+
+    public int readInt() {
+        return 0;
+    }
+
+    public void writeByte(byte value) {
+    }
+
+    public byte readByte() {
+        return 0;
+    }
+
+    public void writeString(String value) {
+    }
+
+    public String readString() {
+        return null;
+    }
+
+    public void writeValue(Object value) {
+    }
+
+    public Object readValue(ClassLoader loader) {
+        return null;
+    }
+}
@@ -0,0 +1,7 @@
+package android.text;
+
+/**
+ * Imported by every generated codec
+ */
+public class TextUtils {
+}
@@ -0,0 +1,4 @@
+package com.mrhabibi.autonomousdialog.codec;
+
+public @interface BundleCodable {
+}
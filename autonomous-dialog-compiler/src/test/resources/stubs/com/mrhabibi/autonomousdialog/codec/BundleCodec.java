@@ -0,0 +1,15 @@
+package com.mrhabibi.autonomousdialog.codec;
+
+import android.os.Bundle;
+import android.os.Parcel;
+
+public interface BundleCodec<T> {
+
+    void writeToBundle(T value, Bundle bundle);
+
+    T readFromBundle(Bundle bundle);
+
+    void writeToParcel(T value, Parcel parcel);
+
+    T readFromParcel(Parcel parcel);
+}
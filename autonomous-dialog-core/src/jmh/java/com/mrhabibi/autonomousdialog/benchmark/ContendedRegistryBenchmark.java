@@ -0,0 +1,89 @@
+package com.mrhabibi.autonomousdialog.benchmark;
+
+import com.mrhabibi.autonomousdialog.DialogRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Threads show and dismiss the same few identifiers, like a button pressed twice while the dialog
+ * is coming up and a remote dismiss racing with the host. The thread that registers an identifier
+ * plays its host, the others dismiss it remotely
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ContendedRegistryBenchmark {
+
+    /**
+     * Power of two, so the identifier is picked with a mask
+     */
+    private static final int IDENTIFIER_COUNT = 4;
+
+    private final DialogRegistry registry = new DialogRegistry();
+    private final String[] identifiers = new String[IDENTIFIER_COUNT];
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < IDENTIFIER_COUNT; i++) {
+            identifiers[i] = "contended-" + i;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean showDismiss01(Cursor cursor) {
+        return showOrDismiss(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean showDismiss04(Cursor cursor) {
+        return showOrDismiss(cursor);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean showDismiss16(Cursor cursor) {
+        return showOrDismiss(cursor);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean showDismiss64(Cursor cursor) {
+        return showOrDismiss(cursor);
+    }
+
+    private boolean showOrDismiss(Cursor cursor) {
+        String identifier = identifiers[cursor.next++ & (IDENTIFIER_COUNT - 1)];
+        long token = registry.register(identifier);
+        if (token != DialogRegistry.NOT_REGISTERED) {
+            boolean dismissed = registry.markReady(identifier, token);
+            registry.unregister(identifier, token);
+            return dismissed;
+        }
+        return registry.requestDismiss(identifier);
+    }
+
+    /**
+     * Every thread walks the identifiers from its own random start, so they don't move in step
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        @Setup
+        public void setUp() {
+            next = new Random().nextInt(IDENTIFIER_COUNT);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.mrhabibi.autonomousdialog.benchmark;
+
+import com.mrhabibi.autonomousdialog.utils.HandoffStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The one time handoff behind FragmentPasser, a fragment is put by the builder and taken by its
+ * host, while other handoffs are still waiting for their hosts
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HandoffBenchmark {
+
+    /**
+     * Handoffs that are put but not taken yet
+     */
+    @Param({"0", "64", "1024"})
+    public int pendingHandoffs;
+
+    private final Object fragment = new Object();
+    private HandoffStore<Object> store;
+
+    @Setup
+    public void setUp() {
+        store = new HandoffStore<>();
+        for (int i = 0; i < pendingHandoffs; i++) {
+            store.put("pending-", new Object());
+        }
+    }
+
+    @Benchmark
+    public Object putTake() {
+        return store.take(store.put("fragment-", fragment));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object putTakeFourThreads() {
+        return putTake();
+    }
+
+    /**
+     * The host is recreated and takes the handoff again, it's gone already
+     */
+    @Benchmark
+    public Object takeMissing() {
+        return store.take("fragment-missing");
+    }
+}
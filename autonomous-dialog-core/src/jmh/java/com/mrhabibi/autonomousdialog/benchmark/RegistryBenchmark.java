@@ -0,0 +1,95 @@
+package com.mrhabibi.autonomousdialog.benchmark;
+
+import com.mrhabibi.autonomousdialog.DialogRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Identifier bookkeeping of one dialog while other dialogs are already shown, every thread shows
+ * and dismisses its own identifier, so only the registry lock is shared
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RegistryBenchmark {
+
+    private static final String DUPLICATE_IDENTIFIER = "duplicate";
+
+    /**
+     * Dialogs already shown while the measured one is shown and dismissed
+     */
+    @Param({"0", "64", "1024"})
+    public int shownDialogs;
+
+    private DialogRegistry registry;
+
+    @Setup
+    public void setUp() {
+        registry = new DialogRegistry();
+        for (int i = 0; i < shownDialogs; i++) {
+            registry.markReady("shown-" + i, registry.register("shown-" + i));
+        }
+        registry.markReady(DUPLICATE_IDENTIFIER, registry.register(DUPLICATE_IDENTIFIER));
+    }
+
+    /**
+     * The whole life of one dialog, shown, host ready, dismissed and host finished
+     */
+    @Benchmark
+    public boolean showDismiss(Identifier identifier) {
+        String value = identifier.value;
+        long token = registry.register(value);
+        boolean dismissed = registry.markReady(value, token);
+        registry.requestDismiss(value);
+        registry.unregister(value, token);
+        return dismissed;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean showDismissFourThreads(Identifier identifier) {
+        return showDismiss(identifier);
+    }
+
+    /**
+     * The dialog is dismissed before its host came up, the dismissal is kept and picked up
+     */
+    @Benchmark
+    public boolean dismissBeforeReady(Identifier identifier) {
+        String value = identifier.value;
+        long token = registry.register(value);
+        registry.requestDismiss(value);
+        boolean dismissed = registry.markReady(value, token);
+        registry.unregister(value, token);
+        return dismissed;
+    }
+
+    /**
+     * Showing the dialog that is already shown, it's rejected
+     */
+    @Benchmark
+    public long duplicateShow() {
+        return registry.register(DUPLICATE_IDENTIFIER);
+    }
+
+    @State(Scope.Thread)
+    public static class Identifier {
+        String value;
+
+        @Setup
+        public void setUp() {
+            value = UUID.randomUUID().toString();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.mrhabibi.autonomousdialog.benchmark;
+
+import com.mrhabibi.autonomousdialog.DialogOutcome;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The usual onActivityResult, the result is decoded once and checked against every dialog
+ * identifier of the activity for every button until one matches. The result belongs to the last
+ * identifier, so every check is made
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ResultDecodingBenchmark {
+
+    /**
+     * Dialog identifiers of the activity
+     */
+    @Param({"1", "8", "32"})
+    public int identifierCount;
+
+    private String[] identifiers;
+
+    /**
+     * The identifier read from the intent, equal but not the same instance
+     */
+    private String resultIdentifier;
+
+    @Setup
+    public void setUp() {
+        identifiers = new String[identifierCount];
+        for (int i = 0; i < identifierCount; i++) {
+            identifiers[i] = "dialog-" + i;
+        }
+        resultIdentifier = new String(identifiers[identifierCount - 1]);
+    }
+
+    @Benchmark
+    public int decodeAndDispatch() {
+        DialogOutcome outcome = new DialogOutcome(resultIdentifier,
+                DialogOutcome.RESULT_DIALOG_SINGLE_CHOICE, 2, true);
+        for (int i = 0; i < identifiers.length; i++) {
+            String identifier = identifiers[i];
+            if (outcome.isPositive(identifier) || outcome.isNegative(identifier)
+                    || outcome.isCancelled(identifier)) {
+                return i;
+            }
+            if (outcome.isSingleChoice(identifier)) {
+                return outcome.getWhich();
+            }
+        }
+        return -1;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int decodeAndDispatchFourThreads() {
+        return decodeAndDispatch();
+    }
+}
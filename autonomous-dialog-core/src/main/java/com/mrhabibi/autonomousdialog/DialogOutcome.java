@@ -0,0 +1,107 @@
+package com.mrhabibi.autonomousdialog;
+
+/**
+ * The decoded dialog result, the identifier, result code and chosen item are read from the result
+ * intent once by DialogResult, and every check after that is answered from these fields. It's
+ * plain Java without Android types, so it can be measured and checked on JVM alone
+ */
+public class DialogOutcome {
+
+    /**
+     * Dialog activity result
+     */
+    public final static int RESULT_DIALOG_SINGLE_CHOICE = 8801;
+    public final static int RESULT_DIALOG_MULTI_CHOICES = 8802;
+    public final static int RESULT_DIALOG_PLAIN_CHOICE = 8803;
+
+    public final static int RESULT_DIALOG_POSITIVE_BUTTON = 8804;
+    public final static int RESULT_DIALOG_NEGATIVE_BUTTON = 8805;
+    public final static int RESULT_DIALOG_NEUTRAL_BUTTON = 8806;
+
+    public final static int RESULT_DIALOG_CANCELLED = 0;
+
+    private final String mIdentifier;
+    private final int mResultCode;
+    private final int mWhich;
+    private final boolean mChecked;
+
+    /**
+     * DialogOutcome's constructor
+     *
+     * @param identifier The identifier, null if the result isn't from a dialog
+     * @param resultCode Activity result code
+     * @param which      The chosen item index
+     * @param checked    The chosen item value
+     */
+    public DialogOutcome(String identifier, int resultCode, int which, boolean checked) {
+        this.mIdentifier = identifier;
+        this.mResultCode = resultCode;
+        this.mWhich = which;
+        this.mChecked = checked;
+    }
+
+    /**
+     * The result is if identifier valid
+     *
+     * @param identifier The identifier
+     * @return Is if valid
+     */
+    public boolean isValid(String identifier) {
+        return mIdentifier != null && mIdentifier.equals(identifier);
+    }
+
+    /**
+     * The result is if identifier and result code are valid
+     *
+     * @param identifier The identifier
+     * @param resultCode The result code
+     * @return Is if valid
+     */
+    public boolean isValid(String identifier, int resultCode) {
+        return mResultCode == resultCode && isValid(identifier);
+    }
+
+    public boolean isPositive(String identifier) {
+        return isValid(identifier, RESULT_DIALOG_POSITIVE_BUTTON);
+    }
+
+    public boolean isNegative(String identifier) {
+        return isValid(identifier, RESULT_DIALOG_NEGATIVE_BUTTON);
+    }
+
+    public boolean isNeutral(String identifier) {
+        return isValid(identifier, RESULT_DIALOG_NEUTRAL_BUTTON);
+    }
+
+    public boolean isPlainChoice(String identifier) {
+        return isValid(identifier, RESULT_DIALOG_PLAIN_CHOICE);
+    }
+
+    public boolean isSingleChoice(String identifier) {
+        return isValid(identifier, RESULT_DIALOG_SINGLE_CHOICE);
+    }
+
+    public boolean isMultiChoices(String identifier) {
+        return isValid(identifier, RESULT_DIALOG_MULTI_CHOICES);
+    }
+
+    public boolean isCancelled(String identifier) {
+        return isValid(identifier, RESULT_DIALOG_CANCELLED);
+    }
+
+    public String getIdentifier() {
+        return mIdentifier;
+    }
+
+    public int getResultCode() {
+        return mResultCode;
+    }
+
+    public int getWhich() {
+        return mWhich;
+    }
+
+    public boolean getChecked() {
+        return mChecked;
+    }
+}
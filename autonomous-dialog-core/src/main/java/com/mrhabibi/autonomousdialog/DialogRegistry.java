@@ -0,0 +1,133 @@
+package com.mrhabibi.autonomousdialog;
+
+import java.util.HashMap;
+
+/**
+ * The identifier bookkeeping of AutonomousDialog, keeps which dialog ids are shown and ready,
+ * and which are dismissed before their host came up. It's plain Java without Android types, so
+ * it can be measured and checked on JVM alone.
+ * Every method is atomic under one lock, so a check and its update can't be interleaved by other
+ * threads, like dismissing between the ready check and keeping the pending dismissal.
+ * Every registration has its own token that its host passes back, so a host that outlived its
+ * registration, like after reset, can't mark or unregister the next dialog with the same id
+ */
+public class DialogRegistry {
+
+    /**
+     * Token of a rejected registration
+     */
+    public static final long NOT_REGISTERED = 0;
+
+    /**
+     * Used to keep shown dialog ids with their ready and dismissed status, for handling showing
+     * one dialog per id and the race condition while showing dialog
+     */
+    private final HashMap<String, Registration> mRegistrations = new HashMap<>();
+
+    private long mNextToken = NOT_REGISTERED + 1;
+
+    /**
+     * Register unready shown dialog identifier
+     *
+     * @param identifier The identifier
+     * @return The registration token to be passed to the host, or NOT_REGISTERED if dialog with
+     * this identifier has shown
+     */
+    public synchronized long register(String identifier) {
+        if (mRegistrations.containsKey(identifier)) {
+            return NOT_REGISTERED;
+        }
+        Registration registration = new Registration(mNextToken++);
+        mRegistrations.put(identifier, registration);
+        return registration.mToken;
+    }
+
+    /**
+     * Mark the dialog as ready when its host is created
+     *
+     * @param identifier The identifier
+     * @param token      The registration token of the host
+     * @return True if the dialog has been dismissed before its host came up, or its registration
+     * is gone, so the host must finish right away
+     */
+    public synchronized boolean markReady(String identifier, long token) {
+        Registration registration = mRegistrations.get(identifier);
+        if (registration == null || registration.mToken != token) {
+            return true;
+        }
+        registration.mReady = true;
+        return registration.mDismissed;
+    }
+
+    /**
+     * Request dismissal of the dialog
+     *
+     * @param identifier The identifier
+     * @return True if the dismissal is kept until the host comes up, false if the host is already
+     * up and must be dismissed directly
+     */
+    public synchronized boolean requestDismiss(String identifier) {
+        Registration registration = mRegistrations.get(identifier);
+        if (registration != null && !registration.mReady) {
+            registration.mDismissed = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Unregister shown dialog identifier when its host is finished, the pending dismissal is
+     * dropped with it. The registration of another host is left alone
+     *
+     * @param identifier The identifier
+     * @param token      The registration token of the host
+     */
+    public synchronized void unregister(String identifier, long token) {
+        Registration registration = mRegistrations.get(identifier);
+        if (registration != null && registration.mToken == token) {
+            mRegistrations.remove(identifier);
+        }
+    }
+
+    /**
+     * Forget everything about the identifier, its host is left with a stale token
+     *
+     * @param identifier The identifier
+     */
+    public synchronized void reset(String identifier) {
+        mRegistrations.remove(identifier);
+    }
+
+    public synchronized boolean isShown(String identifier) {
+        return mRegistrations.containsKey(identifier);
+    }
+
+    public synchronized int size() {
+        return mRegistrations.size();
+    }
+
+    /**
+     * Count of dismissals still waiting for their host
+     *
+     * @return The count
+     */
+    public synchronized int pendingDismissalCount() {
+        int count = 0;
+        for (Registration registration : mRegistrations.values()) {
+            if (registration.mDismissed && !registration.mReady) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static class Registration {
+        final long mToken;
+        boolean mReady;
+        boolean mDismissed;
+
+        Registration(long token) {
+            this.mToken = token;
+        }
+    }
+}
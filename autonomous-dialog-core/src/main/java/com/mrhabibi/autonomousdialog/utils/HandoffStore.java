@@ -0,0 +1,80 @@
+package com.mrhabibi.autonomousdialog.utils;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One time handoff of objects that can't be passed via intent, the object is kept by generated id
+ * and removed once it's taken. It's plain Java without Android types, so it can be measured and
+ * checked on JVM alone
+ *
+ * @param <T> The handed off type
+ */
+public class HandoffStore<T> {
+
+    private final HashMap<String, T> mValues = new HashMap<>();
+    private final HashMap<String, Long> mPutTimes = new HashMap<>();
+
+    /**
+     * Keep the value until it's taken
+     *
+     * @param prefix The id prefix
+     * @param value  The value
+     * @return The id to take the value
+     */
+    public String put(String prefix, T value) {
+        String id = prefix + UUID.randomUUID().toString();
+        synchronized (mValues) {
+            mValues.put(id, value);
+            mPutTimes.put(id, System.nanoTime());
+        }
+        return id;
+    }
+
+    /**
+     * Take and remove the value
+     *
+     * @param id The id
+     * @return The value, or null if it's already taken or never kept
+     */
+    public T take(String id) {
+        if (id == null) {
+            return null;
+        }
+        synchronized (mValues) {
+            mPutTimes.remove(id);
+            return mValues.remove(id);
+        }
+    }
+
+    /**
+     * Remove the values that are never taken for too long, their taker is most likely gone
+     *
+     * @param ageMillis The max age
+     * @return Count of removed values
+     */
+    public int releaseOlderThan(long ageMillis) {
+        long deadline = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(ageMillis);
+        int released = 0;
+        synchronized (mValues) {
+            for (Iterator<Map.Entry<String, Long>> iterator = mPutTimes.entrySet().iterator(); iterator.hasNext(); ) {
+                Map.Entry<String, Long> entry = iterator.next();
+                if (entry.getValue() - deadline < 0) {
+                    mValues.remove(entry.getKey());
+                    iterator.remove();
+                    released++;
+                }
+            }
+        }
+        return released;
+    }
+
+    public int size() {
+        synchronized (mValues) {
+            return mValues.size();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.mrhabibi.autonomousdialog;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DialogOutcomeTest {
+
+    @Test
+    public void matchesOnlyItsIdentifierAndResultCode() {
+        DialogOutcome outcome = new DialogOutcome("delete", DialogOutcome.RESULT_DIALOG_POSITIVE_BUTTON, 0, false);
+
+        assertTrue(outcome.isValid("delete"));
+        assertTrue(outcome.isPositive("delete"));
+        assertFalse(outcome.isNegative("delete"));
+        assertFalse(outcome.isCancelled("delete"));
+        assertFalse(outcome.isPositive("rename"));
+        assertTrue(outcome.isValid("delete", DialogOutcome.RESULT_DIALOG_POSITIVE_BUTTON));
+        assertFalse(outcome.isValid("delete", 42));
+    }
+
+    @Test
+    public void keepsChosenItem() {
+        DialogOutcome outcome = new DialogOutcome("sort", DialogOutcome.RESULT_DIALOG_MULTI_CHOICES, 3, true);
+
+        assertTrue(outcome.isMultiChoices("sort"));
+        assertEquals(3, outcome.getWhich());
+        assertTrue(outcome.getChecked());
+    }
+
+    @Test
+    public void matchesNothingWithoutIdentifier() {
+        DialogOutcome outcome = new DialogOutcome(null, DialogOutcome.RESULT_DIALOG_CANCELLED, 0, false);
+
+        assertFalse(outcome.isValid(null));
+        assertFalse(outcome.isCancelled("delete"));
+    }
+}
@@ -0,0 +1,97 @@
+package com.mrhabibi.autonomousdialog;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DialogRegistryTest {
+
+    private final DialogRegistry registry = new DialogRegistry();
+
+    @Test
+    public void registersOneDialogPerIdentifier() {
+        assertNotEquals(DialogRegistry.NOT_REGISTERED, registry.register("delete"));
+        assertEquals(DialogRegistry.NOT_REGISTERED, registry.register("delete"));
+        assertNotEquals(DialogRegistry.NOT_REGISTERED, registry.register("rename"));
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    public void keepsDismissalUntilHostComesUp() {
+        long token = registry.register("delete");
+
+        assertTrue(registry.requestDismiss("delete"));
+        assertEquals(1, registry.pendingDismissalCount());
+
+        assertTrue(registry.markReady("delete", token));
+        assertEquals(0, registry.pendingDismissalCount());
+    }
+
+    @Test
+    public void dismissesReadyHostDirectly() {
+        long token = registry.register("delete");
+
+        assertFalse(registry.markReady("delete", token));
+        assertFalse(registry.requestDismiss("delete"));
+        assertEquals(0, registry.pendingDismissalCount());
+    }
+
+    @Test
+    public void ignoresDismissalOfUnknownDialog() {
+        assertFalse(registry.requestDismiss("delete"));
+        assertEquals(0, registry.pendingDismissalCount());
+    }
+
+    @Test
+    public void dropsPendingDismissalWhenHostFinishesBeforeReady() {
+        long token = registry.register("delete");
+        registry.requestDismiss("delete");
+
+        registry.unregister("delete", token);
+        assertFalse(registry.isShown("delete"));
+        assertEquals(0, registry.pendingDismissalCount());
+
+        /*
+         * The next dialog with the same identifier isn't dismissed by the old request
+         */
+        long nextToken = registry.register("delete");
+        assertFalse(registry.markReady("delete", nextToken));
+    }
+
+    @Test
+    public void resetForgetsIdentifier() {
+        registry.register("delete");
+        registry.requestDismiss("delete");
+
+        registry.reset("delete");
+        assertEquals(0, registry.size());
+        assertEquals(0, registry.pendingDismissalCount());
+        assertNotEquals(DialogRegistry.NOT_REGISTERED, registry.register("delete"));
+    }
+
+    @Test
+    public void finishesHostThatOutlivedItsRegistration() {
+        long staleToken = registry.register("delete");
+        registry.reset("delete");
+        long token = registry.register("delete");
+
+        assertTrue(registry.markReady("delete", staleToken));
+        assertFalse(registry.markReady("delete", token));
+    }
+
+    @Test
+    public void keepsRegistrationOfAnotherHost() {
+        long staleToken = registry.register("delete");
+        registry.reset("delete");
+        long token = registry.register("delete");
+
+        registry.unregister("delete", staleToken);
+        assertTrue(registry.isShown("delete"));
+
+        registry.unregister("delete", token);
+        assertFalse(registry.isShown("delete"));
+    }
+}
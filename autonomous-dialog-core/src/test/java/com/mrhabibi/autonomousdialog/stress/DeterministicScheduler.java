@@ -0,0 +1,91 @@
+package com.mrhabibi.autonomousdialog.stress;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Runs actors, like a caller or a dialog host, one step at a time in an order picked by the seed,
+ * so an interleaving that breaks an invariant is replayed exactly by running the same seed again.
+ * Every step is atomic, the invariant is checked after each of them
+ */
+public class DeterministicScheduler {
+
+    private final long mSeed;
+    private final Random mRandom;
+    private final List<Actor> mActors = new ArrayList<>();
+    private final List<String> mTrace = new ArrayList<>();
+
+    public DeterministicScheduler(long seed) {
+        this.mSeed = seed;
+        this.mRandom = new Random(seed);
+    }
+
+    /**
+     * The random shared by the scheduler and the actors, so their choices follow the seed too
+     *
+     * @return The random
+     */
+    public Random getRandom() {
+        return mRandom;
+    }
+
+    /**
+     * Add actor, can be called from a running step
+     *
+     * @param actor The actor
+     */
+    public void spawn(Actor actor) {
+        mActors.add(actor);
+    }
+
+    /**
+     * Run until every actor is done
+     *
+     * @param invariant Checked after every step
+     * @param maxSteps  Guard against actors that never finish
+     */
+    public void run(Invariant invariant, int maxSteps) {
+        for (int step = 0; !mActors.isEmpty(); step++) {
+            if (step == maxSteps) {
+                throw new AssertionError(describe("Actors didn't finish in " + maxSteps + " steps"));
+            }
+            Actor actor = mActors.get(mRandom.nextInt(mActors.size()));
+            mTrace.add(actor.toString());
+            if (!actor.step(this)) {
+                mActors.remove(actor);
+            }
+            String violation = invariant.check();
+            if (violation != null) {
+                throw new AssertionError(describe(violation));
+            }
+        }
+    }
+
+    /**
+     * Describe the failure with the seed and the last steps that led to it
+     */
+    public String describe(String message) {
+        List<String> lastSteps = mTrace.subList(Math.max(0, mTrace.size() - 20), mTrace.size());
+        return message + " (seed " + mSeed + ", last steps " + lastSteps + ")";
+    }
+
+    public interface Actor {
+
+        /**
+         * Take one atomic step
+         *
+         * @param scheduler The scheduler
+         * @return False if the actor is done
+         */
+        boolean step(DeterministicScheduler scheduler);
+    }
+
+    public interface Invariant {
+
+        /**
+         * @return The violation, null if it holds
+         */
+        String check();
+    }
+}
@@ -0,0 +1,163 @@
+package com.mrhabibi.autonomousdialog.stress;
+
+import com.mrhabibi.autonomousdialog.DialogRegistry;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Plays the Android side of the registry, AutonomousDialog.show, dismiss and reset from callers,
+ * and DialogActivity.onCreate and onDestroy from the hosts they launch, in every order the seeds
+ * pick. A dismissal the host is already up for is delivered like the dismiss broadcast, only to
+ * the created hosts
+ */
+public class DialogRegistryScheduleTest {
+
+    private static final int SEEDS = 5000;
+    private static final int CALLERS = 3;
+    private static final int CALLS_PER_CALLER = 6;
+    private static final String[] IDENTIFIERS = {"delete", "rename"};
+
+    private final DialogRegistry registry = new DialogRegistry();
+    private final List<Host> hosts = new ArrayList<>();
+
+    @Test
+    public void showDismissWithoutReset() {
+        for (long seed = 0; seed < SEEDS; seed++) {
+            runSchedule(seed, false);
+        }
+    }
+
+    @Test
+    public void showDismissWithReset() {
+        for (long seed = 0; seed < SEEDS; seed++) {
+            runSchedule(seed, true);
+        }
+    }
+
+    private void runSchedule(long seed, boolean resetting) {
+        final DeterministicScheduler scheduler = new DeterministicScheduler(seed);
+        for (int i = 0; i < CALLERS; i++) {
+            scheduler.spawn(new Caller(i, resetting));
+        }
+        scheduler.run(new DeterministicScheduler.Invariant() {
+            @Override
+            public String check() {
+                for (String identifier : IDENTIFIERS) {
+                    int visible = 0;
+                    for (Host host : hosts) {
+                        if (host.mIdentifier.equals(identifier) && host.isVisible()) {
+                            visible++;
+                        }
+                    }
+                    if (visible > 1) {
+                        return visible + " visible hosts of " + identifier;
+                    }
+                }
+                return null;
+            }
+        }, 10000);
+
+        assertEquals(scheduler.describe("Leaked registrations"), 0, registry.size());
+        assertEquals(scheduler.describe("Leaked dismissals"), 0, registry.pendingDismissalCount());
+    }
+
+    private void dismiss(String identifier) {
+        if (!registry.requestDismiss(identifier)) {
+            for (Host host : hosts) {
+                if (host.mIdentifier.equals(identifier) && host.mState == Host.CREATED) {
+                    host.mDismissed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Shows, dismisses and resets random identifiers
+     */
+    private class Caller implements DeterministicScheduler.Actor {
+        private final int mIndex;
+        private final boolean mResetting;
+        private int mCalls;
+
+        Caller(int index, boolean resetting) {
+            this.mIndex = index;
+            this.mResetting = resetting;
+        }
+
+        @Override
+        public boolean step(DeterministicScheduler scheduler) {
+            String identifier = IDENTIFIERS[scheduler.getRandom().nextInt(IDENTIFIERS.length)];
+            int call = scheduler.getRandom().nextInt(mResetting ? 3 : 2);
+            if (call == 0) {
+                long token = registry.register(identifier);
+                if (token != DialogRegistry.NOT_REGISTERED) {
+                    Host host = new Host(identifier, token);
+                    hosts.add(host);
+                    scheduler.spawn(host);
+                }
+            } else if (call == 1) {
+                dismiss(identifier);
+            } else {
+                dismiss(identifier);
+                registry.reset(identifier);
+            }
+            return ++mCalls < CALLS_PER_CALLER;
+        }
+
+        @Override
+        public String toString() {
+            return "caller" + mIndex;
+        }
+    }
+
+    /**
+     * DialogActivity, launched, created, then finished by dismissal or by the user
+     */
+    private class Host implements DeterministicScheduler.Actor {
+        static final int LAUNCHED = 0;
+        static final int CREATED = 1;
+        static final int FINISHING = 2;
+
+        final String mIdentifier;
+        final long mToken;
+        int mState = LAUNCHED;
+        boolean mDismissed;
+
+        Host(String identifier, long token) {
+            this.mIdentifier = identifier;
+            this.mToken = token;
+        }
+
+        boolean isVisible() {
+            return mState == CREATED && !mDismissed;
+        }
+
+        @Override
+        public boolean step(DeterministicScheduler scheduler) {
+            switch (mState) {
+                case LAUNCHED:
+                    mState = registry.markReady(mIdentifier, mToken) ? FINISHING : CREATED;
+                    return true;
+                case CREATED:
+                    if (mDismissed || scheduler.getRandom().nextInt(3) == 0) {
+                        mState = FINISHING;
+                    }
+                    return true;
+                default:
+                    registry.unregister(mIdentifier, mToken);
+                    hosts.remove(this);
+                    return false;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "host(" + mIdentifier + ", " + mState + ")";
+        }
+    }
+}
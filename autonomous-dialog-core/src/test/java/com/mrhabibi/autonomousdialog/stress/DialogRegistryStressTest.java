@@ -0,0 +1,140 @@
+package com.mrhabibi.autonomousdialog.stress;
+
+import com.mrhabibi.autonomousdialog.DialogRegistry;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Real threads show, dismiss and reset the same few identifiers as fast as they can, the thread
+ * that registers an identifier plays its host. Complements the schedule test, which finds the
+ * interleavings, by running the lock under real contention, and reports how many operations per
+ * second the registry sustains
+ */
+public class DialogRegistryStressTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 200000;
+    private static final String[] IDENTIFIERS = {"delete", "rename", "share", "move"};
+
+    private final DialogRegistry registry = new DialogRegistry();
+
+    /**
+     * Hosts holding a registration of each identifier, there's at most one without reset
+     */
+    private final AtomicInteger[] hosts = new AtomicInteger[IDENTIFIERS.length];
+
+    private final AtomicLong keptDismissals = new AtomicLong();
+    private final AtomicLong consumedDismissals = new AtomicLong();
+    private final AtomicReference<String> violation = new AtomicReference<>();
+
+    @Test
+    public void keepsOneHostPerIdentifier() throws InterruptedException {
+        long operations = stress(false);
+
+        assertNull(violation.get(), violation.get());
+        assertLeaksNothing();
+
+        /*
+         * A dismissal requested twice before the host came up is consumed once
+         */
+        assertTrue(consumedDismissals.get() <= keptDismissals.get());
+        report("show/dismiss", operations);
+    }
+
+    @Test
+    public void leaksNothingWithReset() throws InterruptedException {
+        long operations = stress(true);
+
+        assertNull(violation.get(), violation.get());
+        assertLeaksNothing();
+        report("show/dismiss/reset", operations);
+    }
+
+    private long stress(final boolean resetting) throws InterruptedException {
+        for (int i = 0; i < hosts.length; i++) {
+            hosts[i] = new AtomicInteger();
+        }
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        final AtomicLong elapsedNanos = new AtomicLong();
+        for (int t = 0; t < THREADS; t++) {
+            final long seed = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        long startNanos = System.nanoTime();
+                        Random random = new Random(seed);
+                        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                            operate(random, resetting);
+                        }
+                        elapsedNanos.addAndGet(System.nanoTime() - startNanos);
+                    } catch (Throwable e) {
+                        violation.compareAndSet(null, e.toString());
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, "stress-" + t).start();
+        }
+
+        start.countDown();
+        assertTrue("Stress threads didn't finish", done.await(60, TimeUnit.SECONDS));
+        long averageNanos = elapsedNanos.get() / THREADS;
+        return averageNanos > 0 ? THREADS * (long) OPERATIONS_PER_THREAD * TimeUnit.SECONDS.toNanos(1) / averageNanos : 0;
+    }
+
+    /**
+     * One call, showing plays the whole host life, created and finished, the others dismiss or
+     * reset remotely
+     */
+    private void operate(Random random, boolean resetting) {
+        int index = random.nextInt(IDENTIFIERS.length);
+        String identifier = IDENTIFIERS[index];
+        int call = random.nextInt(resetting ? 8 : 7);
+
+        if (call < 4) {
+            long token = registry.register(identifier);
+            if (token == DialogRegistry.NOT_REGISTERED) {
+                return;
+            }
+            if (hosts[index].incrementAndGet() > 1 && !resetting) {
+                violation.compareAndSet(null, "Two hosts of " + identifier);
+            }
+            if (registry.markReady(identifier, token)) {
+                consumedDismissals.incrementAndGet();
+            }
+            hosts[index].decrementAndGet();
+            registry.unregister(identifier, token);
+        } else if (call < 7) {
+            if (registry.requestDismiss(identifier)) {
+                keptDismissals.incrementAndGet();
+            }
+        } else {
+            registry.reset(identifier);
+        }
+    }
+
+    private void assertLeaksNothing() {
+        assertEquals("Leaked registrations", 0, registry.size());
+        assertEquals("Leaked dismissals", 0, registry.pendingDismissalCount());
+    }
+
+    private void report(String workload, long operationsPerSecond) {
+        System.out.println(String.format("DialogRegistry %s: %,d ops/s on %d threads",
+                workload, operationsPerSecond, THREADS));
+    }
+}
@@ -0,0 +1,52 @@
+package com.mrhabibi.autonomousdialog.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HandoffStoreTest {
+
+    private final HandoffStore<Object> store = new HandoffStore<>();
+
+    @Test
+    public void takesValueOnlyOnce() {
+        Object value = new Object();
+        String id = store.put("fragment-", value);
+
+        assertTrue(id.startsWith("fragment-"));
+        assertSame(value, store.take(id));
+        assertNull(store.take(id));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void givesEveryValueItsOwnId() {
+        String first = store.put("fragment-", new Object());
+        String second = store.put("fragment-", new Object());
+
+        assertNotEquals(first, second);
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    public void takesNothingForUnknownId() {
+        assertNull(store.take(null));
+        assertNull(store.take("fragment-unknown"));
+    }
+
+    @Test
+    public void releasesOnlyOldValues() throws InterruptedException {
+        store.put("fragment-", new Object());
+        Thread.sleep(5);
+
+        assertEquals(0, store.releaseOlderThan(60 * 1000));
+        assertEquals(1, store.size());
+
+        assertEquals(1, store.releaseOlderThan(1));
+        assertEquals(0, store.size());
+    }
+}
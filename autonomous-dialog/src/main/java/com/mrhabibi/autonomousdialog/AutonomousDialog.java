@@ -12,17 +12,25 @@ import android.support.v4.app.ActivityCompat;
 import android.support.v4.app.Fragment;
 import android.support.v4.content.ContextCompat;
 
+import com.mrhabibi.autonomousdialog.codec.BundleCodec;
+import com.mrhabibi.autonomousdialog.codec.BundleCodecs;
+import com.mrhabibi.autonomousdialog.instrumentation.ParcelSizeProfiler;
+import com.mrhabibi.autonomousdialog.utils.DialogExecutors;
+import com.mrhabibi.autonomousdialog.utils.DialogPrewarmer;
 import com.mrhabibi.autonomousdialog.utils.DialogUtils;
 import com.mrhabibi.autonomousdialog.utils.FragmentPasser;
+import com.mrhabibi.autonomousdialog.utils.SpilledBundles;
 import com.mrhabibi.autonomousdialog.wrapper.DialogWrapper;
 
-import java.util.HashMap;
-import java.util.HashSet;
-
+import static com.mrhabibi.autonomousdialog.DialogActivity.ANSWER_TTL_LABEL;
+import static com.mrhabibi.autonomousdialog.DialogActivity.ANSWER_VERSION_LABEL;
 import static com.mrhabibi.autonomousdialog.DialogActivity.CANCELABLE_LABEL;
 import static com.mrhabibi.autonomousdialog.DialogActivity.FRAGMENT_GETTER_ID_LABEL;
 import static com.mrhabibi.autonomousdialog.DialogActivity.IDENTIFIER_LABEL;
+import static com.mrhabibi.autonomousdialog.DialogActivity.LOW_LATENCY_LABEL;
 import static com.mrhabibi.autonomousdialog.DialogActivity.PARAMS_LABEL;
+import static com.mrhabibi.autonomousdialog.DialogActivity.REGISTRATION_TOKEN_LABEL;
+import static com.mrhabibi.autonomousdialog.DialogActivity.SCOPE_TOKEN_LABEL;
 import static com.mrhabibi.autonomousdialog.DialogActivity.THEME_RES_LABEL;
 import static com.mrhabibi.autonomousdialog.DialogResult.REQUEST_DIALOG;
 
@@ -42,14 +50,22 @@ public class AutonomousDialog {
     public final static String TAG = "AutonomousDialog";
 
     /**
-     * Used to keep dialog ids that will be dismissed remotely, for handling race condition while showing dialog
+     * Presentation profiles, the low latency one skips window animations and activity transitions,
+     * and the alert dialog host draws no dim or background of its own under the alert dialog, auto
+     * uses it only on low RAM devices
      */
-    final static HashSet<String> dismissedDialogIds = new HashSet<>();
+    public final static int PRESENTATION_DEFAULT = 0;
+    public final static int PRESENTATION_LOW_LATENCY = 1;
+    public final static int PRESENTATION_AUTO = 2;
+
+    private static volatile int defaultPresentation = PRESENTATION_DEFAULT;
+    private static HeadlessResponder headlessResponder;
 
     /**
-     * Used to keep shown dialog ids and ready status, for handling showing one dialog per id
+     * Used to keep shown and remotely dismissed dialog ids, for handling showing one dialog per id
+     * and race condition while showing dialog
      */
-    final static HashMap<String, Boolean> shownDialogIds = new HashMap<>();
+    final static DialogRegistry registry = new DialogRegistry();
 
     /**
      * Builder instantiator for such simple dialog, with no callback and non singleton style
@@ -73,15 +89,30 @@ public class AutonomousDialog {
     }
 
     /**
-     * Used to dismiss dialog asyncrhonously from wherever you need
+     * Used to dismiss dialog asyncrhonously from wherever you need, can be called from any thread,
+     * off the main thread it's dispatched through the main thread dispatcher
      *
      * @param context    The God object
      * @param identifier The same whatever identifier
      */
-    public static void dismiss(@NonNull Context context, @NonNull String identifier) {
-        if (shownDialogIds.containsKey(identifier) && !shownDialogIds.get(identifier)) {
-            dismissedDialogIds.add(identifier);
-        } else {
+    public static void dismiss(@NonNull final Context context, @NonNull final String identifier) {
+        DialogExecutors.runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                dismissNow(context, identifier);
+            }
+        });
+    }
+
+    private static void dismissNow(@NonNull Context context, @NonNull String identifier) {
+        /*
+         * The dialog is still waiting for the foreground, just forget it
+         */
+        if (DialogDeferrer.cancel(identifier)) {
+            return;
+        }
+
+        if (!registry.requestDismiss(identifier)) {
             Intent intent = new Intent(DialogActivity.DISMISS_ACTION);
             intent.putExtra(DialogActivity.IDENTIFIER_KEY, identifier);
             context.sendBroadcast(intent);
@@ -89,15 +120,56 @@ public class AutonomousDialog {
     }
 
     /**
-     * Used to reset shown and dismissed dialog for specific identifier
+     * Used to reset shown and dismissed dialog for specific identifier, can be called from any
+     * thread, off the main thread it's dispatched through the main thread dispatcher
      *
      * @param context    The God object
      * @param identifier The same whatever identifier
      */
-    public static void reset(@NonNull Context context, @NonNull String identifier) {
-        dismiss(context, identifier);
-        dismissedDialogIds.remove(identifier);
-        shownDialogIds.remove(identifier);
+    public static void reset(@NonNull final Context context, @NonNull final String identifier) {
+        DialogExecutors.runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                dismissNow(context, identifier);
+                registry.reset(identifier);
+            }
+        });
+    }
+
+    /**
+     * Do the one time work of the first dialog at app idle time, like in Application.onCreate,
+     * the time it saved against the first dialog of a process that wasn't prewarmed is reported to
+     * DialogInstrumentation listener
+     *
+     * @param context The God object
+     */
+    public static void prewarm(@NonNull Context context) {
+        DialogPrewarmer.prewarm(context);
+    }
+
+    /**
+     * Setter for the presentation profile of every dialog that doesn't set its own
+     *
+     * @param presentation One of PRESENTATION_*
+     */
+    public static void setDefaultPresentation(int presentation) {
+        defaultPresentation = presentation;
+    }
+
+    /**
+     * Setter for the headless mode, the dialogs are answered by the responder synchronously
+     * instead of being shown, for automated tests. Every dialog needs a result listener, the
+     * builder one or the calling activity that implements OnDialogResultListener
+     *
+     * @param responder The responder, null to show the dialogs again
+     */
+    public static void setHeadlessResponder(@Nullable HeadlessResponder responder) {
+        headlessResponder = responder;
+    }
+
+    @Nullable
+    public static HeadlessResponder getHeadlessResponder() {
+        return headlessResponder;
     }
 
     public static class Builder {
@@ -109,16 +181,26 @@ public class AutonomousDialog {
         protected int mThemeRes;
         protected Bundle mParams;
         protected Intent mIntent;
+        protected boolean mPrecomputeText;
+        protected int mPresentation;
+        protected int mAnswerVersion;
+        protected long mAnswerTtl;
+        protected OnDialogResultListener mResultListener;
+        protected int mPriority;
+        protected long mDeferTtl = DialogDeferrer.DEFAULT_TTL_MILLIS;
+        protected DialogScope mScope;
 
         public Builder(@NonNull Context context) {
             this.mContext = context;
             this.mCancelable = true;
+            this.mPresentation = defaultPresentation;
         }
 
         public Builder(@NonNull Context context, String identifier) {
             this.mContext = context;
             this.mIdentifier = identifier;
             this.mCancelable = true;
+            this.mPresentation = defaultPresentation;
         }
 
         /**
@@ -141,6 +223,7 @@ public class AutonomousDialog {
          * @return The builder
          */
         public Builder setContent(@NonNull Class<? extends DialogActivity> activityClass, @Nullable Fragment fragment) {
+            DialogHostRegistry.markValid(activityClass);
             return setContent(new Intent(mContext, activityClass), fragment);
         }
 
@@ -152,13 +235,10 @@ public class AutonomousDialog {
          * @return The builder
          */
         public Builder setContent(@NonNull Intent intent, @Nullable Fragment fragment) {
-            try {
-                if (!(DialogActivity.class.isAssignableFrom(Class.forName(intent.getComponent().getClassName())))) {
-                    throw new IllegalStateException("Intent class for AutonomousDialog must inherit DialogActivity class!");
-                }
-            } catch (ClassNotFoundException e) {
-                e.printStackTrace();
-            }
+            /*
+             * The host class is only resolved once, see DialogHostRegistry
+             */
+            DialogHostRegistry.validate(intent);
             this.mIntent = intent;
             this.mFragment = fragment;
             return this;
@@ -210,9 +290,151 @@ public class AutonomousDialog {
         }
 
         /**
-         * Last method to show the dialog
+         * Setter for typed params, encoded by the codec into bundle, read it back with
+         * DialogResult.getParams(codec)
+         *
+         * @param params The passed params
+         * @param codec  The params codec
+         * @return The builder
+         */
+        public <T> Builder setParams(T params, @NonNull BundleCodec<T> codec) {
+            this.mParams = BundleCodecs.toBundle(params, codec);
+            return this;
+        }
+
+        /**
+         * Setter for text precomputation, the dialog texts will be measured on background thread
+         * while the activity is starting to warm the framework text cache, useful for dialog with
+         * long message
+         *
+         * @param precomputeText Precompute the texts
+         * @return The builder
+         */
+        public Builder setPrecomputeText(boolean precomputeText) {
+            this.mPrecomputeText = precomputeText;
+            return this;
+        }
+
+        /**
+         * Remember the answer of this dialog, the next show delivers it to the result listener
+         * right away without showing the dialog, needs identifier and result listener
+         *
+         * @param ttlMillis How long the answer is valid, or DialogAnswerCache.FOREVER
+         * @return The builder
+         */
+        public Builder setRememberAnswer(long ttlMillis) {
+            return setRememberAnswer(0, ttlMillis);
+        }
+
+        /**
+         * Remember the answer of this dialog for the content version, change the version when the
+         * dialog content changes to ask again
+         *
+         * @param contentVersion The dialog content version
+         * @param ttlMillis      How long the answer is valid, or DialogAnswerCache.FOREVER
+         * @return The builder
+         */
+        public Builder setRememberAnswer(int contentVersion, long ttlMillis) {
+            this.mAnswerVersion = contentVersion;
+            this.mAnswerTtl = ttlMillis;
+            return this;
+        }
+
+        /**
+         * Bind the dialog to the scope, it's dismissed when the scope is closed, needs identifier
+         *
+         * @param scope The scope
+         * @return The builder
+         */
+        public Builder bindTo(@Nullable DialogScope scope) {
+            this.mScope = scope;
+            return this;
+        }
+
+        /**
+         * Bind the dialog to the activity, it's dismissed when the activity is destroyed for good
+         *
+         * @param activity The owner
+         * @return The builder
+         */
+        public Builder bindTo(@NonNull Activity activity) {
+            return bindTo(DialogScope.of(activity));
+        }
+
+        /**
+         * Bind the dialog to the fragment, it's dismissed when the fragment is destroyed for good
+         *
+         * @param fragment The owner
+         * @return The builder
+         */
+        public Builder bindTo(@NonNull Fragment fragment) {
+            return bindTo(DialogScope.of(fragment));
+        }
+
+        /**
+         * Setter for the priority among dialogs deferred while the app is in background, the
+         * higher one is shown on top
+         *
+         * @param priority The priority, 0 by default
+         * @return The builder
+         */
+        public Builder setPriority(int priority) {
+            this.mPriority = priority;
+            return this;
+        }
+
+        /**
+         * Setter for how long the dialog may wait for the app to come to foreground, see
+         * DialogDeferrer
+         *
+         * @param ttlMillis The time to live
+         * @return The builder
+         */
+        public Builder setDeferTtl(long ttlMillis) {
+            this.mDeferTtl = ttlMillis;
+            return this;
+        }
+
+        /**
+         * Setter for the listener of results answered without showing the dialog, the calling
+         * activity that implements OnDialogResultListener is used if it's not set
+         *
+         * @param listener The listener
+         * @return The builder
+         */
+        public Builder setOnResultListener(@Nullable OnDialogResultListener listener) {
+            this.mResultListener = listener;
+            return this;
+        }
+
+        /**
+         * Setter for the presentation profile, overrides the default one
+         *
+         * @param presentation One of PRESENTATION_*
+         * @return The builder
+         */
+        public Builder setPresentation(int presentation) {
+            this.mPresentation = presentation;
+            return this;
+        }
+
+        /**
+         * Last method to show the dialog, can be called from any thread. On the main thread it's
+         * shown synchronously, like the result of remembered answer or headless mode delivered
+         * before this returns, except the first dialog remembering its answer while the answers
+         * are still loaded in background. Off the main thread it's posted to the main thread dispatcher and
+         * this returns before anything is shown, unless the dispatcher runs it inline
          */
         public void show() {
+            DialogExecutors.runOnMainThread(new Runnable() {
+                @Override
+                public void run() {
+                    showNow();
+                }
+            });
+        }
+
+        private void showNow() {
             Context context = this.mContext;
             this.mContext = null;
 
@@ -223,6 +445,84 @@ public class AutonomousDialog {
                 throw new IllegalStateException("Context must not be null!");
             }
 
+            if (mScope != null && (mIdentifier == null || mIdentifier.length() == 0)) {
+                throw new IllegalStateException("Identifier must be set to bind the dialog!");
+            }
+
+            OnDialogResultListener resultListener = this.mResultListener;
+            this.mResultListener = null;
+
+            /*
+             * Answer from the script right away, nothing is launched
+             */
+            HeadlessResponder responder = headlessResponder;
+            if (responder != null) {
+                if (resultListener == null && context instanceof OnDialogResultListener) {
+                    resultListener = (OnDialogResultListener) context;
+                }
+
+                /*
+                 * There's no activity result in headless mode, the answer would be lost
+                 */
+                if (resultListener == null) {
+                    throw new IllegalStateException("Result listener must be set in headless mode, set it with setOnResultListener!");
+                }
+                DialogResult result = responder.respond(context, mIdentifier, fragment, mParams, mCancelable, mThemeRes);
+                resultListener.onDialogResult(result);
+                return;
+            }
+
+            /*
+             * Deliver the remembered answer instead of showing the dialog again
+             */
+            if (mAnswerTtl > 0) {
+                if (mIdentifier == null || mIdentifier.length() == 0) {
+                    throw new IllegalStateException("Identifier must be set to remember the answer!");
+                }
+                if (resultListener == null && context instanceof OnDialogResultListener) {
+                    resultListener = (OnDialogResultListener) context;
+                }
+                if (resultListener == null) {
+                    throw new IllegalStateException("Result listener must be set to remember the answer!");
+                }
+                if (!registry.isShown(mIdentifier)) {
+                    if (!DialogAnswerCache.isLoaded()) {
+
+                        /*
+                         * Show again once the remembered answers are loaded off the main thread
+                         */
+                        this.mContext = context;
+                        this.mFragment = fragment;
+                        this.mResultListener = resultListener;
+                        DialogAnswerCache.whenLoaded(context, new Runnable() {
+                            @Override
+                            public void run() {
+                                showNow();
+                            }
+                        });
+                        return;
+                    }
+                    DialogResult answer = DialogAnswerCache.get(context, mIdentifier, mAnswerVersion, mParams);
+                    if (answer != null) {
+                        DialogUtils.log("Answering from Cache", mIdentifier);
+                        resultListener.onDialogResult(answer);
+                        return;
+                    }
+                }
+            }
+
+            /*
+             * Wait for the foreground instead of popping over other apps, the builder is kept with
+             * application context so it doesn't hold the service or receiver
+             */
+            if (DialogDeferrer.isEnabled() && !DialogDeferrer.isForeground() && !(unwrap(context) instanceof Activity)) {
+                this.mContext = context.getApplicationContext();
+                this.mFragment = fragment;
+                this.mResultListener = resultListener;
+                DialogDeferrer.defer(this);
+                return;
+            }
+
             /*
              * Make connection between fragment and activity
              */
@@ -234,9 +534,7 @@ public class AutonomousDialog {
             /*
              * Trying to extract Activity from ContextWrapper
              */
-            if (!(context instanceof Activity) && context instanceof ContextWrapper) {
-                context = ((ContextWrapper) context).getBaseContext();
-            }
+            context = unwrap(context);
 
             /*
              * Give flags FLAG_ACTIVITY_NEW_TASK if the context is not an Activity
@@ -263,13 +561,14 @@ public class AutonomousDialog {
              * Check if dialog with this identifier has shown
              */
             boolean hasShown;
+            long registrationToken = DialogRegistry.NOT_REGISTERED;
             if (mIdentifier != null && mIdentifier.length() > 0) {
-                if (!shownDialogIds.containsKey(mIdentifier)) {
+                registrationToken = registry.register(mIdentifier);
+                if (registrationToken != DialogRegistry.NOT_REGISTERED) {
 
                     /*
-                     * Register unready shown dialog identifier
+                     * Registered as unready shown dialog identifier
                      */
-                    shownDialogIds.put(mIdentifier, false);
                     hasShown = false;
                 } else {
                     DialogUtils.log("Cancelling Initialization due to Duplication", mIdentifier);
@@ -282,13 +581,58 @@ public class AutonomousDialog {
             if (!hasShown) {
                 DialogUtils.log("Initializing", mIdentifier);
 
+                if (mPrecomputeText && fragment instanceof DialogWrapper) {
+                    ((DialogWrapper) fragment).onPrecompute(context);
+                }
+
+                /*
+                 * Oversized arguments would crash the saved state of the host, and oversized
+                 * params the intent, only their stubs travel
+                 */
+                if (fragment instanceof DialogWrapper) {
+                    Bundle arguments = fragment.getArguments();
+                    Bundle spilledArguments = SpilledBundles.spill(context, arguments);
+                    if (spilledArguments != arguments) {
+                        fragment.setArguments(spilledArguments);
+                    }
+                }
+
                 mIntent.putExtra(FRAGMENT_GETTER_ID_LABEL, fragmentGetterId);
                 mIntent.putExtra(CANCELABLE_LABEL, mCancelable);
                 mIntent.putExtra(IDENTIFIER_LABEL, mIdentifier);
+                mIntent.putExtra(REGISTRATION_TOKEN_LABEL, registrationToken);
                 mIntent.putExtra(THEME_RES_LABEL, mThemeRes);
-                mIntent.putExtra(PARAMS_LABEL, mParams);
+                mIntent.putExtra(PARAMS_LABEL, SpilledBundles.spill(context, mParams));
+                if (mScope != null) {
+                    mIntent.putExtra(SCOPE_TOKEN_LABEL, mScope.bind(context, mIdentifier, fragmentGetterId));
+                }
+                if (mAnswerTtl > 0) {
+                    mIntent.putExtra(ANSWER_VERSION_LABEL, mAnswerVersion);
+                    mIntent.putExtra(ANSWER_TTL_LABEL, mAnswerTtl);
+                }
                 mIntent.addFlags(flags);
 
+                boolean lowLatency = DialogUtils.isLowLatency(context, mPresentation);
+                mIntent.putExtra(LOW_LATENCY_LABEL, lowLatency);
+                if (lowLatency) {
+                    mIntent.addFlags(Intent.FLAG_ACTIVITY_NO_ANIMATION);
+                }
+
+                /*
+                 * Remember the caller, so the host knows when its result has nowhere to go
+                 */
+                if (DialogResultInbox.isEnabled() && mIdentifier != null && mIdentifier.length() > 0) {
+                    DialogResultInbox.trackCaller(mIdentifier, context instanceof Activity ? (Activity) context : null);
+                }
+
+                if (ParcelSizeProfiler.isEnabled()) {
+                    String wrapperClass = fragment != null ? fragment.getClass().getName() : mIntent.getComponent().getClassName();
+                    if (fragment != null) {
+                        ParcelSizeProfiler.measure(ParcelSizeProfiler.PAYLOAD_ARGUMENTS, mIdentifier, wrapperClass, fragment.getArguments());
+                    }
+                    ParcelSizeProfiler.measure(ParcelSizeProfiler.PAYLOAD_INTENT_EXTRAS, mIdentifier, wrapperClass, mIntent.getExtras());
+                }
+
                 if (context instanceof Activity) {
                     ActivityCompat.startActivityForResult(((Activity) context), mIntent, REQUEST_DIALOG, null);
                 } else {
@@ -297,6 +641,13 @@ public class AutonomousDialog {
             }
         }
 
+
+        private static Context unwrap(Context context) {
+            if (!(context instanceof Activity) && context instanceof ContextWrapper) {
+                return ((ContextWrapper) context).getBaseContext();
+            }
+            return context;
+        }
     }
 
 }
@@ -5,7 +5,10 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.annotation.LayoutRes;
 import android.support.annotation.Nullable;
 import android.support.annotation.StyleRes;
@@ -15,10 +18,16 @@ import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.WindowManager;
 
+import com.mrhabibi.autonomousdialog.instrumentation.InteractionRecorder;
+import com.mrhabibi.autonomousdialog.instrumentation.ParcelSizeProfiler;
+import com.mrhabibi.autonomousdialog.utils.DialogPrewarmer;
 import com.mrhabibi.autonomousdialog.utils.DialogUtils;
 import com.mrhabibi.autonomousdialog.utils.FragmentPasser;
+import com.mrhabibi.autonomousdialog.utils.SpilledBundles;
 import com.mrhabibi.autonomousdialog.wrapper.DialogWrapper;
+import com.mrhabibi.autonomousdialog.wrapper.FlowDialogWrapper;
 
 /**
  * Created by mrhabibi on 12/2/16.
@@ -49,6 +58,12 @@ public class DialogActivity extends AppCompatActivity {
     public static final String THEME_RES_LABEL = "themeRes";
     public static final String PARAMS_LABEL = "params";
     public static final String WILL_REBORN_LABEL = "willReborn";
+    public static final String SHOWN_AT_LABEL = "shownAt";
+    public static final String LOW_LATENCY_LABEL = "lowLatency";
+    public static final String ANSWER_VERSION_LABEL = "answerVersion";
+    public static final String ANSWER_TTL_LABEL = "answerTtl";
+    public static final String SCOPE_TOKEN_LABEL = "scopeToken";
+    public static final String REGISTRATION_TOKEN_LABEL = "registrationToken";
 
     public static final String ALERTDIALOG_ID_PREFIX = "AlertDialog_";
     public static final String DIALOGFRAGMENT_ID_PREFIX = "DialogFragment_";
@@ -58,7 +73,16 @@ public class DialogActivity extends AppCompatActivity {
     protected String mIdentifier;
     @StyleRes
     protected int mThemeRes;
+    /**
+     * The params as passed, it's a stub if they're spilled, read them with getParams()
+     */
     protected Bundle mParams;
+    private Bundle mRehydratedParams;
+    protected boolean mLowLatency;
+    protected int mAnswerVersion;
+    protected long mAnswerTtl;
+    protected String mScopeToken;
+    protected long mRegistrationToken = DialogRegistry.NOT_REGISTERED;
 
     /**
      * Flag to indicate that dialog will be built again after config changes
@@ -70,6 +94,22 @@ public class DialogActivity extends AppCompatActivity {
     protected Fragment mCurrentFragment;
     protected AlertDialog mCurrentDialog;
 
+    /**
+     * The last result set, kept for the result inbox
+     */
+    private int mResultCode;
+    private Intent mResultData;
+
+    /**
+     * Uptime when the dialog is shown, for the time to decision
+     */
+    private long mShownAt;
+
+    /**
+     * Uptime when the host is created, for the first show time of the process
+     */
+    private long mCreatedAt;
+
     private BroadcastReceiver mActionReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
@@ -85,18 +125,39 @@ public class DialogActivity extends AppCompatActivity {
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
+        mCreatedAt = SystemClock.uptimeMillis();
         mFirstCreation = savedInstanceState == null;
         extractBundleStates(getIntent().getExtras());
+        if (savedInstanceState != null) {
+            mShownAt = savedInstanceState.getLong(SHOWN_AT_LABEL);
+        }
 
         /*
          * Set activity theme
          */
-        if (!isAlertDialog() && mThemeRes > 0) {
-            setTheme(mThemeRes);
+        if (!isAlertDialog()) {
+            if (mThemeRes > 0) {
+                setTheme(mThemeRes);
+            } else if (mLowLatency) {
+                setTheme(com.mrhabibi.autonomousdialog.R.style.AutonomousDialogFragment_LowLatency);
+            }
         }
 
         super.onCreate(savedInstanceState);
 
+        if (mLowLatency) {
+            getWindow().setWindowAnimations(0);
+            if (isAlertDialog()) {
+
+                /*
+                 * The alert dialog dims and draws its own frame already, the empty host window
+                 * draws neither the dim nor its dialog background under it
+                 */
+                getWindow().clearFlags(WindowManager.LayoutParams.FLAG_DIM_BEHIND);
+                getWindow().setBackgroundDrawable(new ColorDrawable(Color.TRANSPARENT));
+            }
+        }
+
         /*
          * Bring the fragment to live
          */
@@ -115,15 +176,14 @@ public class DialogActivity extends AppCompatActivity {
             return;
         }
 
-        if (mFirstCreation) {
-            AutonomousDialog.shownDialogIds.put(mIdentifier, true);
+        if (mFirstCreation && mIdentifier != null && mIdentifier.length() > 0) {
 
             /*
-             * Handle race condition when calling show & dismiss together
+             * Handle race condition when calling show & dismiss together, or reset before the
+             * host came up
              */
-            if (AutonomousDialog.dismissedDialogIds.contains(mIdentifier)) {
+            if (AutonomousDialog.registry.markReady(mIdentifier, mRegistrationToken)) {
                 DialogUtils.log("Dismissing due to Race Condition ", mIdentifier);
-                AutonomousDialog.dismissedDialogIds.remove(mIdentifier);
                 finish();
                 return;
             }
@@ -131,6 +191,9 @@ public class DialogActivity extends AppCompatActivity {
 
         if (!isAlertDialog()) {
             setContentView(com.mrhabibi.autonomousdialog.R.layout.activity_dialog);
+            if (mFirstCreation) {
+                recordShown();
+            }
         } else if (mCurrentFragment != null && isAlertDialog()) {
 
             /*
@@ -191,6 +254,13 @@ public class DialogActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putLong(SHOWN_AT_LABEL, mShownAt);
+        ParcelSizeProfiler.measure(ParcelSizeProfiler.PAYLOAD_SAVED_STATE, mIdentifier, getContentClassName(), outState);
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
@@ -201,9 +271,19 @@ public class DialogActivity extends AppCompatActivity {
              * Unregister shown dialog identifier
              */
             if (mIdentifier != null && mIdentifier.length() > 0) {
-                AutonomousDialog.shownDialogIds.remove(mIdentifier);
+                AutonomousDialog.registry.unregister(mIdentifier, mRegistrationToken);
             }
 
+            /*
+             * Leave the scope, it has nothing to dismiss anymore
+             */
+            DialogScope.unbind(mScopeToken);
+
+            /*
+             * The spilled params are read from their file by the result
+             */
+            SpilledBundles.evict(mParams);
+
         } else {
 
             if (mCurrentDialog != null) {
@@ -250,17 +330,43 @@ public class DialogActivity extends AppCompatActivity {
          */
         if (!isAlertDialog()) {
             final Intent intent = makeBasicIntent();
-            setResult(DialogResult.RESULT_DIALOG_CANCELLED, intent);
+            setDialogResult(DialogResult.RESULT_DIALOG_CANCELLED, intent);
             setCallback(intent);
         }
+
+        /*
+         * The result is taken by the system at the first finish, keep it when nobody receives it
+         */
+        if (!isFinishing()) {
+            recordDecision();
+            if (mResultData != null) {
+                ParcelSizeProfiler.measure(ParcelSizeProfiler.PAYLOAD_RESULT, mIdentifier, getContentClassName(), mResultData.getExtras());
+            }
+            if (!keepUndeliveredResult()) {
+
+                /*
+                 * Nobody is going to read the spilled params of the result
+                 */
+                SpilledBundles.release(mParams);
+            }
+            if (mAnswerTtl > 0 && mIdentifier != null && mIdentifier.length() > 0) {
+                DialogAnswerCache.put(this, mIdentifier, mAnswerVersion, mAnswerTtl, mResultCode, mResultData);
+            }
+        }
         super.finish();
+
+        if (mLowLatency) {
+            overridePendingTransition(0, 0);
+        }
     }
 
     /**
      * Build the alert dialog from given fragment
      */
     private void buildAlertDialog(final DialogWrapper dialogWrapper) {
-        final DialogBuilder builder = new DialogBuilder(this, mThemeRes > 0 ? mThemeRes : com.mrhabibi.autonomousdialog.R.style.AutonomousAlertDialog);
+        final DialogBuilder builder = new DialogBuilder(this, mThemeRes > 0 ? mThemeRes : (mLowLatency
+                ? com.mrhabibi.autonomousdialog.R.style.AutonomousAlertDialog_LowLatency
+                : com.mrhabibi.autonomousdialog.R.style.AutonomousAlertDialog));
 
         /*
          * Collect alert dialog datas
@@ -269,7 +375,7 @@ public class DialogActivity extends AppCompatActivity {
 
         final Intent intent = makeBasicIntent();
 
-        setResult(DialogResult.RESULT_DIALOG_CANCELLED, intent);
+        setDialogResult(DialogResult.RESULT_DIALOG_CANCELLED, intent);
 
         /*
          * Manipulate the listeners for activity resulting and intent data bundling
@@ -355,6 +461,18 @@ public class DialogActivity extends AppCompatActivity {
                  */
                 if (!mReborn) {
 
+                    /*
+                     * Flow goes on to its next step inside this host instead of finishing
+                     */
+                    if (dialogWrapper instanceof FlowDialogWrapper && !isFinishing()
+                            && ((FlowDialogWrapper) dialogWrapper).advance()) {
+                        if (builder.getDismissOverridingListener() != null) {
+                            builder.getDismissOverridingListener().onDismiss(dialogInterface);
+                        }
+                        buildAlertDialog(dialogWrapper);
+                        return;
+                    }
+
                     setCallback(intent);
 
                     if (builder.getDismissOverridingListener() != null) {
@@ -377,10 +495,18 @@ public class DialogActivity extends AppCompatActivity {
 
         mCurrentDialog = builder.create();
 
+        if (mLowLatency && mCurrentDialog.getWindow() != null) {
+            mCurrentDialog.getWindow().setWindowAnimations(0);
+        }
+
         mCurrentDialog.setOnShowListener(new DialogInterface.OnShowListener() {
             @Override
             public void onShow(final DialogInterface dialogInterface) {
 
+                if (!mReborn && (mFirstCreation || mShownAt == 0)) {
+                    recordShown();
+                }
+
                 /*
                  * Pass the built dialog to fragment to be used in action asynchronously
                  */
@@ -462,6 +588,19 @@ public class DialogActivity extends AppCompatActivity {
         return intent;
     }
 
+    /**
+     * Params getter, the spilled params are read back on the first call
+     *
+     * @return The params
+     */
+    @Nullable
+    public Bundle getParams() {
+        if (mRehydratedParams == null) {
+            mRehydratedParams = SpilledBundles.peek(mParams);
+        }
+        return mRehydratedParams;
+    }
+
     /**
      * Add responses and/or custom result code to callback intent
      *
@@ -489,10 +628,66 @@ public class DialogActivity extends AppCompatActivity {
              * Reset result code
              */
             int resultCode = dialogCallback.getResultCode();
-            setResult(resultCode, intent);
+            setDialogResult(resultCode, intent);
+        }
+    }
+
+    /**
+     * Set the activity result and remember it, Activity doesn't expose its result
+     *
+     * @param resultCode The result code
+     * @param intent     The result data
+     */
+    private void setDialogResult(int resultCode, Intent intent) {
+        mResultCode = resultCode;
+        mResultData = intent;
+        setResult(resultCode, intent);
+    }
+
+    private void recordShown() {
+        mShownAt = SystemClock.uptimeMillis();
+        DialogPrewarmer.onFirstShown(this, mShownAt - mCreatedAt);
+        if (InteractionRecorder.isEnabled()) {
+            InteractionRecorder.recordShown(mIdentifier, getContentClassName());
         }
     }
 
+    private void recordDecision() {
+        if (!InteractionRecorder.isEnabled() || mShownAt == 0) {
+            return;
+        }
+        int which = mResultData != null ? mResultData.getIntExtra("which", -1) : -1;
+        InteractionRecorder.recordDecision(mIdentifier, getContentClassName(), mResultCode, which,
+                SystemClock.uptimeMillis() - mShownAt);
+    }
+
+    private String getContentClassName() {
+        return mCurrentFragment != null ? mCurrentFragment.getClass().getName() : getClass().getName();
+    }
+
+    /**
+     * Keep the result in the inbox if the dialog has no caller to receive it, like shown from
+     * non-Activity context or the calling activity has finished. The tracked caller is released
+     * in every case, so the inbox doesn't hold an entry per shown dialog
+     *
+     * @return Is the result going to be received, by the caller or from the inbox
+     */
+    private boolean keepUndeliveredResult() {
+        if (mIdentifier == null || mIdentifier.length() == 0) {
+            return getCallingActivity() != null;
+        }
+        boolean callerGone = DialogResultInbox.releaseCaller(mIdentifier);
+        if (getCallingActivity() != null && !callerGone) {
+            return true;
+        }
+        if (!DialogResultInbox.isEnabled() || mResultData == null) {
+            return false;
+        }
+        DialogUtils.log("Keeping Undelivered Result ", mIdentifier);
+        DialogResultInbox.offer(this, mIdentifier, mResultCode, mResultData);
+        return true;
+    }
+
     /**
      * Pass the activity result for nested AutonomousDialog
      */
@@ -532,6 +727,19 @@ public class DialogActivity extends AppCompatActivity {
             if (bundle.containsKey(PARAMS_LABEL)) {
                 mParams = bundle.getBundle(PARAMS_LABEL);
             }
+            if (bundle.containsKey(LOW_LATENCY_LABEL)) {
+                mLowLatency = bundle.getBoolean(LOW_LATENCY_LABEL);
+            }
+            if (bundle.containsKey(SCOPE_TOKEN_LABEL)) {
+                mScopeToken = bundle.getString(SCOPE_TOKEN_LABEL);
+            }
+            if (bundle.containsKey(REGISTRATION_TOKEN_LABEL)) {
+                mRegistrationToken = bundle.getLong(REGISTRATION_TOKEN_LABEL);
+            }
+            if (bundle.containsKey(ANSWER_TTL_LABEL)) {
+                mAnswerVersion = bundle.getInt(ANSWER_VERSION_LABEL);
+                mAnswerTtl = bundle.getLong(ANSWER_TTL_LABEL);
+            }
         }
     }
 
@@ -0,0 +1,319 @@
+package com.mrhabibi.autonomousdialog;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+import android.util.Base64;
+import android.util.Log;
+
+import com.mrhabibi.autonomousdialog.utils.BundleFormat;
+import com.mrhabibi.autonomousdialog.utils.DialogExecutors;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Remembers the answers of dialogs by identifier, like "don't ask again" confirmations, so the
+ * builder can deliver the answer right away instead of starting DialogActivity. Answers have a
+ * content version, a changed dialog content asks again, and a time to live. They're kept in
+ * memory and persisted to SharedPreferences on background thread, written with BundleFormat so
+ * they're still readable after app and platform updates. The preferences are loaded on background
+ * thread too, at the first remembered answer or show, or ahead with preload in Application.onCreate
+ */
+public class DialogAnswerCache {
+
+    /**
+     * Time to live of the answer that never expires
+     */
+    public static final long FOREVER = Long.MAX_VALUE;
+
+    private static final String PREFERENCES_NAME = "autonomous_dialog_answers";
+
+    private static final int MEMORY_CAPACITY = 64;
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private static final LruCache<String, Answer> memoryCache = new LruCache<>(MEMORY_CAPACITY);
+
+    /**
+     * The preferences, set on background thread once they're loaded
+     */
+    private static volatile SharedPreferences preferences;
+
+    /**
+     * Waiting for the preferences to be loaded, guarded by itself, null once loaded
+     */
+    private static ArrayList<Runnable> pendingLoads = new ArrayList<>();
+    private static boolean loading;
+    private static final Object loadLock = new Object();
+
+    /**
+     * Load the remembered answers on background thread, so the first dialog that remembers its
+     * answer doesn't wait for them
+     *
+     * @param context The God object
+     */
+    public static void preload(@NonNull Context context) {
+        final Context applicationContext = context.getApplicationContext();
+        synchronized (loadLock) {
+            if (loading || preferences != null) {
+                return;
+            }
+            loading = true;
+        }
+        DialogExecutors.getIoExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                SharedPreferences loaded = getPreferences(applicationContext);
+
+                /*
+                 * Any read waits until the file is loaded
+                 */
+                loaded.contains(PREFERENCES_NAME);
+
+                final ArrayList<Runnable> loads;
+                synchronized (loadLock) {
+                    preferences = loaded;
+                    loads = pendingLoads;
+                    pendingLoads = null;
+                }
+                for (final Runnable runnable : loads) {
+                    DialogExecutors.runOnMainThread(runnable);
+                }
+            }
+        });
+    }
+
+    static boolean isLoaded() {
+        return preferences != null;
+    }
+
+    /**
+     * Run on the main thread once the preferences are loaded, right away if they're loaded
+     *
+     * @param context  The God object
+     * @param runnable The runnable
+     */
+    static void whenLoaded(@NonNull Context context, @NonNull Runnable runnable) {
+        boolean pending;
+        synchronized (loadLock) {
+            pending = pendingLoads != null;
+            if (pending) {
+                pendingLoads.add(runnable);
+            }
+        }
+        if (pending) {
+            preload(context);
+        } else {
+            DialogExecutors.runOnMainThread(runnable);
+        }
+    }
+
+    /**
+     * Remember the answer, cancellation is never remembered
+     *
+     * @param context        The God object
+     * @param identifier     The identifier
+     * @param contentVersion The dialog content version
+     * @param ttlMillis      The time to live, or FOREVER
+     * @param resultCode     The result code
+     * @param data           The result data
+     */
+    static void put(@NonNull Context context, @NonNull String identifier, int contentVersion, long ttlMillis,
+                    int resultCode, @Nullable Intent data) {
+        if (resultCode == DialogResult.RESULT_DIALOG_CANCELLED || ttlMillis <= 0) {
+            return;
+        }
+
+        Bundle extras = data != null && data.getExtras() != null ? data.getExtras() : new Bundle();
+
+        /*
+         * Blobs are read once, an answer pointing to them can't be delivered again
+         */
+        Bundle responses = extras.getBundle("responses");
+        if (responses != null) {
+            for (String name : responses.keySet()) {
+                if (DialogBlobs.isDescriptor(responses.get(name))) {
+                    return;
+                }
+            }
+        }
+
+        /*
+         * The params belong to the next request, not to the answer. A spilled params file isn't
+         * released here, the delivered result still points to it
+         */
+        extras.remove("params");
+
+        long now = System.currentTimeMillis();
+        final Answer answer = new Answer(contentVersion, resultCode,
+                ttlMillis == FOREVER || now > FOREVER - ttlMillis ? FOREVER : now + ttlMillis, extras);
+        memoryCache.put(identifier, answer);
+        preload(context);
+
+        String unsupportedKey = BundleFormat.findUnsupportedKey(extras);
+        if (unsupportedKey != null) {
+            Log.w(AutonomousDialog.TAG, "Can't persist the answer of " + identifier + ", " + unsupportedKey + " isn't a plain value");
+            return;
+        }
+
+        final Context applicationContext = context.getApplicationContext();
+        final String key = identifier;
+        DialogExecutors.getIoExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                String encoded = answer.encode();
+                if (encoded != null) {
+                    getPreferences(applicationContext).edit().putString(key, encoded).apply();
+                }
+            }
+        });
+    }
+
+    /**
+     * Get the remembered answer, the persisted one is decoded when it's not in memory. The
+     * preferences must be loaded, see whenLoaded
+     *
+     * @param context        The God object
+     * @param identifier     The identifier
+     * @param contentVersion The dialog content version
+     * @param params         The params of the current request
+     * @return The result, null if there's no valid answer
+     */
+    @Nullable
+    static DialogResult get(@NonNull Context context, @NonNull String identifier, int contentVersion, @Nullable Bundle params) {
+        Answer answer = memoryCache.get(identifier);
+        SharedPreferences preferences = DialogAnswerCache.preferences;
+        if (answer == null && preferences != null) {
+            answer = Answer.decode(preferences.getString(identifier, null));
+            if (answer != null) {
+                memoryCache.put(identifier, answer);
+            }
+        }
+        if (answer == null) {
+            return null;
+        }
+
+        if (answer.mContentVersion != contentVersion || answer.mExpiresAt < System.currentTimeMillis()) {
+            forget(context, identifier);
+            return null;
+        }
+
+        Intent data = new Intent();
+        data.putExtras(answer.mExtras);
+        data.putExtra("id", identifier);
+        data.putExtra("params", params != null ? params : new Bundle());
+        return new DialogResult(answer.mResultCode, data);
+    }
+
+    /**
+     * Forget the remembered answer, the dialog will be shown again
+     *
+     * @param context    The God object
+     * @param identifier The identifier
+     */
+    public static void forget(@NonNull Context context, @NonNull final String identifier) {
+        memoryCache.remove(identifier);
+        final Context applicationContext = context.getApplicationContext();
+        DialogExecutors.getIoExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                getPreferences(applicationContext).edit().remove(identifier).apply();
+            }
+        });
+    }
+
+    /**
+     * Forget all remembered answers
+     *
+     * @param context The God object
+     */
+    public static void clear(@NonNull Context context) {
+        memoryCache.evictAll();
+        final Context applicationContext = context.getApplicationContext();
+        DialogExecutors.getIoExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                getPreferences(applicationContext).edit().clear().apply();
+            }
+        });
+    }
+
+    /**
+     * Drop the answers kept in memory, they're loaded again from the preferences when needed
+     *
+     * @return Count of dropped answers
+     */
+    public static int releaseMemory() {
+        int count = memoryCache.snapshot().size();
+        memoryCache.evictAll();
+        return count;
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static class Answer {
+        final int mContentVersion;
+        final int mResultCode;
+        final long mExpiresAt;
+        final Bundle mExtras;
+
+        Answer(int contentVersion, int resultCode, long expiresAt, Bundle extras) {
+            mContentVersion = contentVersion;
+            mResultCode = resultCode;
+            mExpiresAt = expiresAt;
+            mExtras = extras;
+        }
+
+        @Nullable
+        String encode() {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream outputStream = new DataOutputStream(bytes);
+                outputStream.writeByte(FORMAT_VERSION);
+                outputStream.writeInt(mContentVersion);
+                outputStream.writeInt(mResultCode);
+                outputStream.writeLong(mExpiresAt);
+                BundleFormat.writeBundle(outputStream, mExtras);
+                return Base64.encodeToString(bytes.toByteArray(), Base64.NO_WRAP);
+            } catch (IOException e) {
+                Log.w(AutonomousDialog.TAG, "Can't persist the dialog answer", e);
+                return null;
+            }
+        }
+
+        /**
+         * Answers of unknown format version are ignored, they're asked again
+         */
+        @Nullable
+        static Answer decode(@Nullable String encoded) {
+            if (encoded == null) {
+                return null;
+            }
+            try {
+                DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(Base64.decode(encoded, Base64.NO_WRAP)));
+                if (inputStream.readByte() != FORMAT_VERSION) {
+                    return null;
+                }
+                int contentVersion = inputStream.readInt();
+                int resultCode = inputStream.readInt();
+                long expiresAt = inputStream.readLong();
+                Bundle extras = BundleFormat.readBundle(inputStream);
+                return new Answer(contentVersion, resultCode, expiresAt, extras != null ? extras : new Bundle());
+            } catch (IOException | IllegalArgumentException e) {
+                Log.w(AutonomousDialog.TAG, "Can't read the persisted dialog answer", e);
+                return null;
+            }
+        }
+    }
+}
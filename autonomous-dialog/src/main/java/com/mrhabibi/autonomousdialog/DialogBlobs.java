@@ -0,0 +1,211 @@
+package com.mrhabibi.autonomousdialog;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.mrhabibi.autonomousdialog.utils.DialogExecutors;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.UUID;
+
+/**
+ * Large responses like signatures, cropped photos or long texts don't fit the result intent, write
+ * them here in DialogCallback.onBundleResponses instead. The blob is written into a memory mapped
+ * file and only its descriptor goes into the responses, DialogResult.getBlob maps the same file
+ * read only without copying it, and the file is deleted as soon as it's mapped. Blobs that are
+ * never read are deleted by DialogResult.releaseBlobs or swept after a day
+ */
+public class DialogBlobs {
+
+    public static final String PATH_LABEL = "blobPath";
+    public static final String SIZE_LABEL = "blobSize";
+
+    private static final String BLOBS_DIRECTORY = "autonomous-dialog/blobs";
+    private static final String BLOB_EXTENSION = ".blob";
+
+    /**
+     * Blobs older than this are not going to be read anymore
+     */
+    private static final long STALE_BLOB_MILLIS = 24 * 60 * 60 * 1000;
+
+    private static boolean swept;
+
+    /**
+     * Allocate the blob and put its descriptor into the responses, fill the returned buffer
+     * before the responses are sent
+     *
+     * @param context   The God object
+     * @param responses The responses bundle
+     * @param name      The response name
+     * @param size      The blob size in bytes
+     * @return The writable buffer, or null if the blob can't be allocated
+     */
+    @Nullable
+    public static ByteBuffer allocate(@NonNull Context context, @NonNull Bundle responses, @NonNull String name, int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Blob size can't be negative!");
+        }
+
+        File directory = getDirectory(context);
+        sweepOnce(directory);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(AutonomousDialog.TAG, "Can't create the blobs directory");
+            return null;
+        }
+
+        File file = new File(directory, UUID.randomUUID().toString() + BLOB_EXTENSION);
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            randomAccessFile.setLength(size);
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+            Bundle descriptor = new Bundle();
+            descriptor.putString(PATH_LABEL, file.getAbsolutePath());
+            descriptor.putInt(SIZE_LABEL, size);
+            responses.putBundle(name, descriptor);
+            return buffer;
+        } catch (IOException e) {
+            Log.w(AutonomousDialog.TAG, "Can't allocate the blob " + name, e);
+            file.delete();
+            return null;
+        } finally {
+            closeQuietly(randomAccessFile);
+        }
+    }
+
+    /**
+     * Write the bytes as a blob and put its descriptor into the responses
+     *
+     * @param context   The God object
+     * @param responses The responses bundle
+     * @param name      The response name
+     * @param bytes     The blob content
+     * @return Is if written
+     */
+    public static boolean put(@NonNull Context context, @NonNull Bundle responses, @NonNull String name, @NonNull byte[] bytes) {
+        ByteBuffer buffer = allocate(context, responses, name, bytes.length);
+        if (buffer == null) {
+            return false;
+        }
+        buffer.put(bytes);
+        return true;
+    }
+
+    /**
+     * Is if the response is a blob descriptor
+     *
+     * @param response The response value
+     * @return Is if it's a descriptor
+     */
+    public static boolean isDescriptor(@Nullable Object response) {
+        return response instanceof Bundle && ((Bundle) response).containsKey(PATH_LABEL);
+    }
+
+    /**
+     * Map the blob read only and delete its file, the mapping stays valid without the file
+     *
+     * @param descriptor The blob descriptor
+     * @return The read only buffer, null if the blob is already consumed or gone
+     */
+    @Nullable
+    static ByteBuffer consume(@NonNull Bundle descriptor) {
+        String path = descriptor.getString(PATH_LABEL);
+        if (path == null) {
+            return null;
+        }
+        File file = new File(path);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        int size = descriptor.getInt(SIZE_LABEL);
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            if (randomAccessFile.length() < size) {
+                Log.w(AutonomousDialog.TAG, "The blob " + path + " is truncated");
+                return null;
+            }
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } catch (IOException e) {
+            Log.w(AutonomousDialog.TAG, "Can't read the blob " + path, e);
+            return null;
+        } finally {
+            closeQuietly(randomAccessFile);
+            file.delete();
+        }
+    }
+
+    /**
+     * Delete the blob file without reading it
+     *
+     * @param descriptor The blob descriptor
+     */
+    static void release(@NonNull Bundle descriptor) {
+        String path = descriptor.getString(PATH_LABEL);
+        if (path != null) {
+            new File(path).delete();
+        }
+    }
+
+    /**
+     * Delete the blobs that are never read for too long
+     *
+     * @param context   The God object
+     * @param ageMillis The max age
+     * @return Count of deleted blobs
+     */
+    public static int releaseOlderThan(@NonNull Context context, long ageMillis) {
+        return sweep(getDirectory(context), ageMillis);
+    }
+
+    private static File getDirectory(Context context) {
+        return new File(context.getFilesDir(), BLOBS_DIRECTORY);
+    }
+
+    private static synchronized void sweepOnce(final File directory) {
+        if (swept) {
+            return;
+        }
+        swept = true;
+        DialogExecutors.getIoExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                sweep(directory, STALE_BLOB_MILLIS);
+            }
+        });
+    }
+
+    private static int sweep(File directory, long ageMillis) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        long deadline = System.currentTimeMillis() - ageMillis;
+        int deleted = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(BLOB_EXTENSION) && file.lastModified() < deadline && file.delete()) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private static void closeQuietly(RandomAccessFile randomAccessFile) {
+        if (randomAccessFile != null) {
+            try {
+                randomAccessFile.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -11,7 +11,8 @@ import android.widget.ListAdapter;
 /**
  * Created by mrhabibi on 12/5/16.
  * This is actually like Android AlertDialog.Bulder, but this is limited mode of AutonomousDialog,
- * used to pass dialog data from dialog wrapper to activity
+ * used to pass dialog data from dialog wrapper to activity. In headless mode it only records the
+ * dialog data without building any dialog
  */
 
 public class DialogBuilder {
@@ -53,6 +54,19 @@ public class DialogBuilder {
      */
     private DialogInterface.OnDismissListener mDismissOverridingListener;
 
+    /**
+     * Content stuff, kept for headless mode
+     */
+    private CharSequence mTitle;
+    private CharSequence mMessage;
+    private View mView;
+
+    /**
+     * Recording builder for headless mode, it can't create the dialog
+     */
+    DialogBuilder() {
+    }
+
     public DialogBuilder(@NonNull Context context) {
         this.mAlertDialogBuilder = new AlertDialog.Builder(context);
     }
@@ -68,7 +82,9 @@ public class DialogBuilder {
     public DialogBuilder setSingleChoiceItems(CharSequence[] items, int checkedItem) {
         this.mSingleChoiceItems = items;
         this.mSingleChoiceCheckedItem = checkedItem;
-        this.mAlertDialogBuilder.setSingleChoiceItems(items, checkedItem, null);
+        if (this.mAlertDialogBuilder != null) {
+            this.mAlertDialogBuilder.setSingleChoiceItems(items, checkedItem, null);
+        }
         return this;
     }
 
@@ -79,7 +95,9 @@ public class DialogBuilder {
      * @return The Builder
      */
     DialogBuilder setSingleChoiceItemsExpansion(DialogInterface.OnClickListener listener) {
-        this.mAlertDialogBuilder.setSingleChoiceItems(this.mSingleChoiceItems, this.mSingleChoiceCheckedItem, listener);
+        if (this.mAlertDialogBuilder != null) {
+            this.mAlertDialogBuilder.setSingleChoiceItems(this.mSingleChoiceItems, this.mSingleChoiceCheckedItem, listener);
+        }
         return this;
     }
 
@@ -103,7 +121,9 @@ public class DialogBuilder {
     public DialogBuilder setMultiChoiceItems(CharSequence[] items, boolean[] checkedItems) {
         this.mMultiChoiceItems = items;
         this.mMultiChoiceCheckedItems = checkedItems;
-        this.mAlertDialogBuilder.setMultiChoiceItems(items, checkedItems, null);
+        if (this.mAlertDialogBuilder != null) {
+            this.mAlertDialogBuilder.setMultiChoiceItems(items, checkedItems, null);
+        }
         return this;
     }
 
@@ -114,7 +134,9 @@ public class DialogBuilder {
      * @return The Builder
      */
     DialogBuilder setMultiChoiceItemsExpansion(DialogInterface.OnMultiChoiceClickListener listener) {
-        this.mAlertDialogBuilder.setMultiChoiceItems(this.mMultiChoiceItems, this.mMultiChoiceCheckedItems, listener);
+        if (this.mAlertDialogBuilder != null) {
+            this.mAlertDialogBuilder.setMultiChoiceItems(this.mMultiChoiceItems, this.mMultiChoiceCheckedItems, listener);
+        }
         return this;
     }
 
@@ -137,7 +159,9 @@ public class DialogBuilder {
 
     public DialogBuilder setItems(CharSequence[] items) {
         this.mPlainChoiceItems = items;
-        this.mAlertDialogBuilder.setItems(items, null);
+        if (this.mAlertDialogBuilder != null) {
+            this.mAlertDialogBuilder.setItems(items, null);
+        }
         return this;
     }
 
@@ -148,7 +172,9 @@ public class DialogBuilder {
      * @return The Builder
      */
     DialogBuilder setItemsExpansion(DialogInterface.OnClickListener listener) {
-        this.mAlertDialogBuilder.setItems(this.mPlainChoiceItems, listener);
+        if (this.mAlertDialogBuilder != null) {
+            this.mAlertDialogBuilder.setItems(this.mPlainChoiceItems, listener);
+        }
         return this;
     }
 
@@ -171,7 +197,9 @@ public class DialogBuilder {
 
     public DialogBuilder setPositiveButton(CharSequence text) {
         this.mPositiveText = text;
-        this.mAlertDialogBuilder.setPositiveButton(text.toString().toUpperCase(), null);
+        if (this.mAlertDialogBuilder != null) {
+            this.mAlertDialogBuilder.setPositiveButton(text.toString().toUpperCase(), null);
+        }
         return this;
     }
 
@@ -182,7 +210,9 @@ public class DialogBuilder {
      * @return The Builder
      */
     DialogBuilder setPositiveButtonExpansion(DialogInterface.OnClickListener listener) {
-        this.mAlertDialogBuilder.setPositiveButton(this.mPositiveText, listener);
+        if (this.mAlertDialogBuilder != null) {
+            this.mAlertDialogBuilder.setPositiveButton(this.mPositiveText, listener);
+        }
         return this;
     }
 
@@ -205,7 +235,9 @@ public class DialogBuilder {
 
     public DialogBuilder setNegativeButton(CharSequence text) {
         this.mNegativeText = text;
-        this.mAlertDialogBuilder.setNegativeButton(text.toString().toUpperCase(), null);
+        if (this.mAlertDialogBuilder != null) {
+            this.mAlertDialogBuilder.setNegativeButton(text.toString().toUpperCase(), null);
+        }
         return this;
     }
 
@@ -216,7 +248,9 @@ public class DialogBuilder {
      * @return The Builder
      */
     DialogBuilder setNegativeButtonExpansion(DialogInterface.OnClickListener listener) {
-        this.mAlertDialogBuilder.setNegativeButton(this.mNegativeText, listener);
+        if (this.mAlertDialogBuilder != null) {
+            this.mAlertDialogBuilder.setNegativeButton(this.mNegativeText, listener);
+        }
         return this;
     }
 
@@ -239,7 +273,9 @@ public class DialogBuilder {
 
     public DialogBuilder setNeutralButton(CharSequence text) {
         this.mNeutralText = text;
-        this.mAlertDialogBuilder.setNeutralButton(text.toString().toUpperCase(), null);
+        if (this.mAlertDialogBuilder != null) {
+            this.mAlertDialogBuilder.setNeutralButton(text.toString().toUpperCase(), null);
+        }
         return this;
     }
 
@@ -250,7 +286,9 @@ public class DialogBuilder {
      * @return The Builder
      */
     DialogBuilder setNeutralButtonExpansion(DialogInterface.OnClickListener listener) {
-        this.mAlertDialogBuilder.setNeutralButton(this.mNeutralText, listener);
+        if (this.mAlertDialogBuilder != null) {
+            this.mAlertDialogBuilder.setNeutralButton(this.mNeutralText, listener);
+        }
         return this;
     }
 
@@ -273,7 +311,9 @@ public class DialogBuilder {
 
     public DialogBuilder setOnDismissOverridingListener(DialogInterface.OnDismissListener listener) {
         this.mDismissOverridingListener = listener;
-        this.mAlertDialogBuilder.setOnDismissListener(listener);
+        if (this.mAlertDialogBuilder != null) {
+            this.mAlertDialogBuilder.setOnDismissListener(listener);
+        }
         return this;
     }
 
@@ -284,7 +324,9 @@ public class DialogBuilder {
      * @return The Builder
      */
     DialogBuilder setOnDismissListenerExpansion(DialogInterface.OnDismissListener listener) {
-        this.mAlertDialogBuilder.setOnDismissListener(listener);
+        if (this.mAlertDialogBuilder != null) {
+            this.mAlertDialogBuilder.setOnDismissListener(listener);
+        }
         return this;
     }
 
@@ -297,31 +339,61 @@ public class DialogBuilder {
      */
 
     public DialogBuilder setTitle(CharSequence title) {
-        this.mAlertDialogBuilder.setTitle(title);
+        this.mTitle = title;
+        if (this.mAlertDialogBuilder != null) {
+            this.mAlertDialogBuilder.setTitle(title);
+        }
         return this;
     }
 
     public DialogBuilder setMessage(CharSequence message) {
-        this.mAlertDialogBuilder.setMessage(message);
+        this.mMessage = message;
+        if (this.mAlertDialogBuilder != null) {
+            this.mAlertDialogBuilder.setMessage(message);
+        }
         return this;
     }
 
     public DialogBuilder setView(View view) {
-        this.mAlertDialogBuilder.setView(view);
+        this.mView = view;
+        if (this.mAlertDialogBuilder != null) {
+            this.mAlertDialogBuilder.setView(view);
+        }
         return this;
     }
 
     public DialogBuilder setAdapter(ListAdapter adapter) {
-        this.mAlertDialogBuilder.setAdapter(adapter, null);
+        if (this.mAlertDialogBuilder != null) {
+            this.mAlertDialogBuilder.setAdapter(adapter, null);
+        }
         return this;
     }
 
+    CharSequence getTitle() {
+        return mTitle;
+    }
+
+    CharSequence getMessage() {
+        return mMessage;
+    }
+
+    View getView() {
+        return mView;
+    }
+
+    boolean[] getMultiChoiceCheckedItems() {
+        return mMultiChoiceCheckedItems;
+    }
+
     /**
      * Final touch of building dialog
      *
      * @return Built dialog
      */
     AlertDialog create() {
+        if (this.mAlertDialogBuilder == null) {
+            throw new IllegalStateException("Recording builder can't create the dialog!");
+        }
         return this.mAlertDialogBuilder.create();
     }
 
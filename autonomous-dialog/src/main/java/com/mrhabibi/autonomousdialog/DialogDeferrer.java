@@ -0,0 +1,221 @@
+package com.mrhabibi.autonomousdialog;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.mrhabibi.autonomousdialog.utils.DialogExecutors;
+import com.mrhabibi.autonomousdialog.utils.DialogUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+
+/**
+ * Holds the dialogs requested from non-Activity context while the app is in background, and shows
+ * them when the app comes back to foreground instead of popping over other apps. The queue is
+ * bounded, a newer request replaces the waiting one with the same identifier, the stale ones are
+ * dropped by their time to live, and the rest are shown by priority.
+ * Enable it in Application.onCreate, it needs API 14 to know the foreground
+ */
+public class DialogDeferrer {
+
+    public static final long DEFAULT_TTL_MILLIS = 5 * 60 * 1000;
+
+    private static final int CAPACITY = 16;
+
+    /**
+     * Main thread only
+     */
+    private static final ArrayList<Deferred> queue = new ArrayList<>();
+    private static int startedActivityCount;
+    private static boolean enabled;
+    private static long sequence;
+
+    /**
+     * Start tracking the app foreground, does nothing below API 14
+     *
+     * @param context The God object
+     */
+    public static void enable(@NonNull Context context) {
+        if (enabled) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            Log.w(AutonomousDialog.TAG, "Foreground aware dialogs need API 14");
+            return;
+        }
+        enabled = true;
+        registerCallbacks((Application) context.getApplicationContext());
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static boolean isForeground() {
+        return startedActivityCount > 0;
+    }
+
+    /**
+     * Count of dialogs waiting for the foreground
+     *
+     * @return The count
+     */
+    public static int size() {
+        return queue.size();
+    }
+
+    /**
+     * Keep the builder until the app comes to foreground, called on the main thread
+     *
+     * @param builder The builder, with application context
+     */
+    static void defer(@NonNull AutonomousDialog.Builder builder) {
+        String identifier = builder.mIdentifier;
+        if (identifier != null && identifier.length() > 0) {
+            for (Iterator<Deferred> iterator = queue.iterator(); iterator.hasNext(); ) {
+                if (identifier.equals(iterator.next().mBuilder.mIdentifier)) {
+                    iterator.remove();
+                    DialogUtils.log("Coalescing Deferred", identifier);
+                }
+            }
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        long expiresAt = builder.mDeferTtl > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + builder.mDeferTtl;
+        Deferred deferred = new Deferred(builder, sequence++, expiresAt);
+        queue.add(deferred);
+
+        if (queue.size() > CAPACITY) {
+            /*
+             * Drop the least important, the oldest one among the lowest priority
+             */
+            Deferred dropped = Collections.min(queue, PRESENTING_ORDER);
+            queue.remove(dropped);
+            DialogUtils.log("Dropping Deferred due to Full Queue", dropped.mBuilder.mIdentifier);
+        }
+
+        DialogUtils.log("Deferring until Foreground", identifier);
+    }
+
+    /**
+     * Forget the waiting dialog, called on the main thread
+     *
+     * @param identifier The identifier
+     * @return True if there was one waiting
+     */
+    static boolean cancel(@NonNull String identifier) {
+        boolean cancelled = false;
+        for (Iterator<Deferred> iterator = queue.iterator(); iterator.hasNext(); ) {
+            if (identifier.equals(iterator.next().mBuilder.mIdentifier)) {
+                iterator.remove();
+                cancelled = true;
+            }
+        }
+        return cancelled;
+    }
+
+    private static void present() {
+        if (queue.isEmpty() || !isForeground()) {
+            return;
+        }
+
+        ArrayList<Deferred> presented = new ArrayList<>(queue);
+        queue.clear();
+
+        /*
+         * Each dialog is an activity on top of the previous one, so the highest priority goes last
+         * to be on top
+         */
+        Collections.sort(presented, PRESENTING_ORDER);
+        long now = SystemClock.elapsedRealtime();
+        for (Deferred deferred : presented) {
+            if (deferred.mExpiresAt < now) {
+                DialogUtils.log("Dropping Stale Deferred", deferred.mBuilder.mIdentifier);
+                continue;
+            }
+            DialogUtils.log("Presenting Deferred", deferred.mBuilder.mIdentifier);
+            deferred.mBuilder.show();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private static void registerCallbacks(Application application) {
+        application.registerActivityLifecycleCallbacks(new Application.ActivityLifecycleCallbacks() {
+            @Override
+            public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+            }
+
+            @Override
+            public void onActivityStarted(Activity activity) {
+                startedActivityCount++;
+                if (startedActivityCount == 1 && !queue.isEmpty()) {
+
+                    /*
+                     * Let the activity finish coming up first
+                     */
+                    DialogExecutors.getMainThreadExecutor().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            present();
+                        }
+                    });
+                }
+            }
+
+            @Override
+            public void onActivityResumed(Activity activity) {
+            }
+
+            @Override
+            public void onActivityPaused(Activity activity) {
+            }
+
+            @Override
+            public void onActivityStopped(Activity activity) {
+                startedActivityCount = Math.max(0, startedActivityCount - 1);
+            }
+
+            @Override
+            public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+            }
+
+            @Override
+            public void onActivityDestroyed(Activity activity) {
+            }
+        });
+    }
+
+    /**
+     * Lowest priority first, then the oldest first
+     */
+    private static final Comparator<Deferred> PRESENTING_ORDER = new Comparator<Deferred>() {
+        @Override
+        public int compare(Deferred lhs, Deferred rhs) {
+            if (lhs.mBuilder.mPriority != rhs.mBuilder.mPriority) {
+                return lhs.mBuilder.mPriority < rhs.mBuilder.mPriority ? -1 : 1;
+            }
+            return lhs.mSequence < rhs.mSequence ? -1 : (lhs.mSequence == rhs.mSequence ? 0 : 1);
+        }
+    };
+
+    private static class Deferred {
+        final AutonomousDialog.Builder mBuilder;
+        final long mSequence;
+        final long mExpiresAt;
+
+        Deferred(AutonomousDialog.Builder builder, long sequence, long expiresAt) {
+            mBuilder = builder;
+            mSequence = sequence;
+            mExpiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.mrhabibi.autonomousdialog;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.util.HashMap;
+
+/**
+ * Keeps the verdict whether the activity of an intent can host AutonomousDialog, so the host class
+ * is resolved and checked once per component instead of on every dialog shown. Register the hosts
+ * explicitly to check them against the manifest up front, otherwise they're resolved at first use
+ */
+public class DialogHostRegistry {
+
+    private static final HashMap<String, Boolean> verdicts = new HashMap<>();
+
+    /**
+     * Register custom DialogActivity and check if it's declared in the manifest
+     *
+     * @param context       The God object
+     * @param activityClass The activity class extended from DialogActivity
+     */
+    public static void register(@NonNull Context context, @NonNull Class<? extends DialogActivity> activityClass) {
+        try {
+            context.getPackageManager().getActivityInfo(new ComponentName(context, activityClass), 0);
+        } catch (PackageManager.NameNotFoundException e) {
+            throw new IllegalStateException(activityClass.getName() + " is not declared in the AndroidManifest!", e);
+        }
+        synchronized (verdicts) {
+            verdicts.put(activityClass.getName(), true);
+        }
+    }
+
+    /**
+     * Check the intent activity, throws if it doesn't inherit DialogActivity
+     *
+     * @param intent The intent that has activity class extended from DialogActivity
+     */
+    static void validate(@NonNull Intent intent) {
+        ComponentName component = intent.getComponent();
+        if (component == null) {
+            throw new IllegalStateException("Intent for AutonomousDialog must have explicit DialogActivity component!");
+        }
+        if (!isValidHost(component.getClassName())) {
+            throw new IllegalStateException("Intent class for AutonomousDialog must inherit DialogActivity class!");
+        }
+    }
+
+    /**
+     * Mark the class as valid host, used when the class is already known at compile time
+     *
+     * @param activityClass The activity class extended from DialogActivity
+     */
+    static void markValid(@NonNull Class<? extends DialogActivity> activityClass) {
+        synchronized (verdicts) {
+            verdicts.put(activityClass.getName(), true);
+        }
+    }
+
+    private static boolean isValidHost(String className) {
+        synchronized (verdicts) {
+            Boolean verdict = verdicts.get(className);
+            if (verdict != null) {
+                return verdict;
+            }
+        }
+
+        /*
+         * Resolve without initializing the class, the activity will do it anyway when it's started
+         */
+        boolean valid;
+        try {
+            Class<?> hostClass = Class.forName(className, false, DialogHostRegistry.class.getClassLoader());
+            valid = DialogActivity.class.isAssignableFrom(hostClass);
+        } catch (ClassNotFoundException e) {
+            Log.w(AutonomousDialog.TAG, "Can't resolve dialog host " + className, e);
+            valid = true;
+        }
+
+        synchronized (verdicts) {
+            verdicts.put(className, valid);
+        }
+        return valid;
+    }
+}
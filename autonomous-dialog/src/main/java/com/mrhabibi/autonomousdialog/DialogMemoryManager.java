@@ -0,0 +1,209 @@
+package com.mrhabibi.autonomousdialog;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.mrhabibi.autonomousdialog.instrumentation.DialogInstrumentation;
+import com.mrhabibi.autonomousdialog.utils.FragmentPasser;
+import com.mrhabibi.autonomousdialog.utils.ImageLoader;
+import com.mrhabibi.autonomousdialog.utils.SpilledBundles;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Releases the memory the library retains when the system asks the app to trim memory, tier by
+ * tier. The lightest tier drops what is only made ahead, like prefetched flow steps, then half of
+ * the images and the spilled bundles kept in memory, then all images and the answers kept in
+ * memory, and at last the handoffs that their host never took. What is freed is logged and
+ * reported to DialogInstrumentation listener
+ */
+public class DialogMemoryManager {
+
+    /**
+     * Things made ahead of time
+     */
+    public static final int TIER_PREPARED = 1;
+    /**
+     * Caches that are cheap to make again
+     */
+    public static final int TIER_CACHES = 2;
+    /**
+     * Caches that are expensive to make again
+     */
+    public static final int TIER_DECODED = 3;
+    /**
+     * Everything that isn't needed by the dialogs on screen
+     */
+    public static final int TIER_RETAINED = 4;
+
+    /**
+     * Handoffs older than this are not going to be taken by their host anymore
+     */
+    private static final long STALE_HANDOFF_MILLIS = 60 * 1000;
+
+    private static final ArrayList<Entry> trimmables = new ArrayList<>();
+    private static boolean registered;
+
+    static {
+        register("ImageLoader", new Trimmable() {
+            @Override
+            public int onTrimMemory(int tier) {
+                if (tier >= TIER_DECODED) {
+                    return ImageLoader.trimToFraction(0);
+                }
+                return tier >= TIER_CACHES ? ImageLoader.trimToFraction(0.5f) : 0;
+            }
+        });
+        register("DialogAnswerCache", new Trimmable() {
+            @Override
+            public int onTrimMemory(int tier) {
+                return tier >= TIER_DECODED ? DialogAnswerCache.releaseMemory() : 0;
+            }
+        });
+        register("SpilledBundles", new Trimmable() {
+            @Override
+            public int onTrimMemory(int tier) {
+                return tier >= TIER_CACHES ? SpilledBundles.releaseMemory() : 0;
+            }
+        });
+        register("FragmentPasser", new Trimmable() {
+            @Override
+            public int onTrimMemory(int tier) {
+                return tier >= TIER_RETAINED ? FragmentPasser.releaseOlderThan(STALE_HANDOFF_MILLIS) : 0;
+            }
+        });
+    }
+
+    /**
+     * Start listening to the system memory pressure, does nothing below API 14, call trim
+     * manually there
+     *
+     * @param context The God object
+     */
+    public static void enable(@NonNull Context context) {
+        if (registered) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            Log.w(AutonomousDialog.TAG, "Memory pressure callbacks need API 14");
+            return;
+        }
+        registered = true;
+        registerCallbacks(context.getApplicationContext());
+    }
+
+    /**
+     * Register the trimmable, its released entries are reported under the name
+     *
+     * @param name      The reported name
+     * @param trimmable The trimmable
+     */
+    public static void register(@NonNull String name, @NonNull Trimmable trimmable) {
+        synchronized (trimmables) {
+            trimmables.add(new Entry(name, trimmable));
+        }
+    }
+
+    public static void unregister(@NonNull Trimmable trimmable) {
+        synchronized (trimmables) {
+            for (int i = trimmables.size() - 1; i >= 0; i--) {
+                if (trimmables.get(i).mTrimmable == trimmable) {
+                    trimmables.remove(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Release the memory up to the tier, called on the main thread
+     *
+     * @param tier One of TIER_*
+     * @return Count of released entries by name, only the ones that released something
+     */
+    @NonNull
+    public static Map<String, Integer> trim(int tier) {
+        ArrayList<Entry> entries;
+        synchronized (trimmables) {
+            entries = new ArrayList<>(trimmables);
+        }
+
+        LinkedHashMap<String, Integer> released = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            int count = entry.mTrimmable.onTrimMemory(tier);
+            if (count > 0) {
+                Integer previous = released.get(entry.mName);
+                released.put(entry.mName, previous != null ? previous + count : count);
+            }
+        }
+
+        if (!released.isEmpty()) {
+            Log.d(AutonomousDialog.TAG, "Trimmed memory at tier " + tier + " | " + released);
+        }
+        DialogInstrumentation.Listener listener = DialogInstrumentation.getListener();
+        if (listener != null) {
+            listener.onMemoryTrimmed(tier, released);
+        }
+        return released;
+    }
+
+    /**
+     * Map the system trim level to the tier
+     *
+     * @param level The ComponentCallbacks2 level
+     * @return One of TIER_*, 0 for nothing
+     */
+    public static int toTier(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            return TIER_RETAINED;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return TIER_DECODED;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return TIER_CACHES;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            return TIER_PREPARED;
+        }
+        return 0;
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private static void registerCallbacks(Context applicationContext) {
+        applicationContext.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                int tier = toTier(level);
+                if (tier > 0) {
+                    trim(tier);
+                }
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                trim(TIER_RETAINED);
+            }
+        });
+    }
+
+    private static class Entry {
+        final String mName;
+        final Trimmable mTrimmable;
+
+        Entry(String name, Trimmable trimmable) {
+            mName = name;
+            mTrimmable = trimmable;
+        }
+    }
+}
@@ -2,6 +2,15 @@ package com.mrhabibi.autonomousdialog;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mrhabibi.autonomousdialog.codec.BundleCodec;
+import com.mrhabibi.autonomousdialog.codec.BundleCodecs;
+import com.mrhabibi.autonomousdialog.utils.SpilledBundles;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
 
 /**
  * Created by mrhabibi on 12/7/16.
@@ -20,18 +29,21 @@ public class DialogResult {
     /**
      * Dialog activity result
      */
-    public final static int RESULT_DIALOG_SINGLE_CHOICE = 8801;
-    public final static int RESULT_DIALOG_MULTI_CHOICES = 8802;
-    public final static int RESULT_DIALOG_PLAIN_CHOICE = 8803;
+    public final static int RESULT_DIALOG_SINGLE_CHOICE = DialogOutcome.RESULT_DIALOG_SINGLE_CHOICE;
+    public final static int RESULT_DIALOG_MULTI_CHOICES = DialogOutcome.RESULT_DIALOG_MULTI_CHOICES;
+    public final static int RESULT_DIALOG_PLAIN_CHOICE = DialogOutcome.RESULT_DIALOG_PLAIN_CHOICE;
 
-    public final static int RESULT_DIALOG_POSITIVE_BUTTON = 8804;
-    public final static int RESULT_DIALOG_NEGATIVE_BUTTON = 8805;
-    public final static int RESULT_DIALOG_NEUTRAL_BUTTON = 8806;
+    public final static int RESULT_DIALOG_POSITIVE_BUTTON = DialogOutcome.RESULT_DIALOG_POSITIVE_BUTTON;
+    public final static int RESULT_DIALOG_NEGATIVE_BUTTON = DialogOutcome.RESULT_DIALOG_NEGATIVE_BUTTON;
+    public final static int RESULT_DIALOG_NEUTRAL_BUTTON = DialogOutcome.RESULT_DIALOG_NEUTRAL_BUTTON;
 
-    public final static int RESULT_DIALOG_CANCELLED = 0;
+    public final static int RESULT_DIALOG_CANCELLED = DialogOutcome.RESULT_DIALOG_CANCELLED;
 
     private Intent mData;
     private int mResultCode;
+    private HashMap<String, ByteBuffer> mBlobs;
+    private Bundle mParams;
+    private DialogOutcome mOutcome;
 
     /**
      * DialogResult's constructor
@@ -51,7 +63,7 @@ public class DialogResult {
      * @return Is if clicked
      */
     public boolean isPositive(String identifier) {
-        return isValid(identifier) && mResultCode == RESULT_DIALOG_POSITIVE_BUTTON;
+        return getOutcome().isPositive(identifier);
     }
 
     /**
@@ -61,7 +73,7 @@ public class DialogResult {
      * @return Is if clicked
      */
     public boolean isNegative(String identifier) {
-        return isValid(identifier) && mResultCode == RESULT_DIALOG_NEGATIVE_BUTTON;
+        return getOutcome().isNegative(identifier);
     }
 
     /**
@@ -71,7 +83,7 @@ public class DialogResult {
      * @return Is if clicked
      */
     public boolean isNeutral(String identifier) {
-        return isValid(identifier) && mResultCode == RESULT_DIALOG_NEUTRAL_BUTTON;
+        return getOutcome().isNeutral(identifier);
     }
 
     /**
@@ -81,7 +93,7 @@ public class DialogResult {
      * @return Is if clicked
      */
     public boolean isPlainChoice(String identifier) {
-        return isValid(identifier) && mResultCode == RESULT_DIALOG_PLAIN_CHOICE;
+        return getOutcome().isPlainChoice(identifier);
     }
 
     /**
@@ -91,7 +103,7 @@ public class DialogResult {
      * @return Is if clicked
      */
     public boolean isSingleChoice(String identifier) {
-        return isValid(identifier) && mResultCode == RESULT_DIALOG_SINGLE_CHOICE;
+        return getOutcome().isSingleChoice(identifier);
     }
 
     /**
@@ -101,7 +113,7 @@ public class DialogResult {
      * @return Is if clicked
      */
     public boolean isMultiChoices(String identifier) {
-        return isValid(identifier) && mResultCode == RESULT_DIALOG_MULTI_CHOICES;
+        return getOutcome().isMultiChoices(identifier);
     }
 
     /**
@@ -111,7 +123,7 @@ public class DialogResult {
      * @return Is if cancelled
      */
     public boolean isCancelled(String identifier) {
-        return isValid(identifier) && mResultCode == RESULT_DIALOG_CANCELLED;
+        return getOutcome().isCancelled(identifier);
     }
 
     /**
@@ -121,7 +133,7 @@ public class DialogResult {
      * @return Is if valid
      */
     public boolean isValid(String identifier) {
-        return mData != null && mData.getStringExtra("id") != null && mData.getStringExtra("id").equals(identifier);
+        return getOutcome().isValid(identifier);
     }
 
     /**
@@ -132,17 +144,32 @@ public class DialogResult {
      * @return Is if valid
      */
     public boolean isValid(String identifier, int resultCode) {
-        return isValid(identifier) && this.mResultCode == resultCode;
+        return getOutcome().isValid(identifier, resultCode);
     }
 
     /**
-     * Params getter from data intent
+     * Params getter from data intent, the spilled params are read back and released on the first
+     * call
      *
      * @return bundle of params
      */
     public Bundle getParams() {
         if (mData == null) return null;
-        return mData.getBundleExtra("params");
+        if (mParams == null) {
+            mParams = SpilledBundles.take(mData.getBundleExtra("params"));
+        }
+        return mParams;
+    }
+
+    /**
+     * Typed params getter from data intent
+     *
+     * @param codec The params codec
+     * @return decoded params
+     */
+    @Nullable
+    public <T> T getParams(@NonNull BundleCodec<T> codec) {
+        return BundleCodecs.fromBundle(getParams(), codec);
     }
 
     /**
@@ -155,14 +182,68 @@ public class DialogResult {
         return mData.getBundleExtra("responses");
     }
 
+    /**
+     * Typed responses getter from data intent
+     *
+     * @param codec The responses codec
+     * @return decoded responses
+     */
+    @Nullable
+    public <T> T getResponses(@NonNull BundleCodec<T> codec) {
+        return BundleCodecs.fromBundle(getResponses(), codec);
+    }
+
+    /**
+     * Blob response getter, the blob is mapped read only without copying it and its file is
+     * deleted, so the next calls return the same mapping
+     *
+     * @param name The response name
+     * @return The read only blob, or null if there's no such blob
+     */
+    @Nullable
+    public ByteBuffer getBlob(@NonNull String name) {
+        if (mBlobs != null && mBlobs.containsKey(name)) {
+            ByteBuffer blob = mBlobs.get(name);
+            return blob != null ? blob.duplicate() : null;
+        }
+
+        Bundle responses = getResponses();
+        Object descriptor = responses != null ? responses.get(name) : null;
+        if (!DialogBlobs.isDescriptor(descriptor)) {
+            return null;
+        }
+
+        ByteBuffer blob = DialogBlobs.consume((Bundle) descriptor);
+        if (mBlobs == null) {
+            mBlobs = new HashMap<>();
+        }
+        mBlobs.put(name, blob);
+        return blob != null ? blob.duplicate() : null;
+    }
+
+    /**
+     * Delete the blob responses that are never read, call it when the result is dropped
+     */
+    public void releaseBlobs() {
+        Bundle responses = getResponses();
+        if (responses == null) {
+            return;
+        }
+        for (String name : responses.keySet()) {
+            Object descriptor = responses.get(name);
+            if (DialogBlobs.isDescriptor(descriptor) && (mBlobs == null || !mBlobs.containsKey(name))) {
+                DialogBlobs.release((Bundle) descriptor);
+            }
+        }
+    }
+
     /**
      * `which` getter from data intent, `which` is index of a list
      *
      * @return `which` index
      */
     public int getWhich() {
-        if (mData == null) return 0;
-        return mData.getIntExtra("which", 0);
+        return getOutcome().getWhich();
     }
 
     /**
@@ -171,7 +252,24 @@ public class DialogResult {
      * @return `checked` value
      */
     public boolean getChecked() {
-        return mData != null && mData.getBooleanExtra("checked", false);
+        return getOutcome().getChecked();
+    }
+
+    /**
+     * Decode the identifier, result code and chosen item once, the result is usually checked
+     * against every dialog identifier of the activity
+     *
+     * @return The decoded outcome
+     */
+    @NonNull
+    public DialogOutcome getOutcome() {
+        if (mOutcome == null) {
+            mOutcome = mData == null
+                    ? new DialogOutcome(null, mResultCode, 0, false)
+                    : new DialogOutcome(mData.getStringExtra("id"), mResultCode,
+                    mData.getIntExtra("which", 0), mData.getBooleanExtra("checked", false));
+        }
+        return mOutcome;
     }
 
     /**
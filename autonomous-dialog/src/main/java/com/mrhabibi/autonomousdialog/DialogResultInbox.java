@@ -0,0 +1,527 @@
+package com.mrhabibi.autonomousdialog;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+import com.mrhabibi.autonomousdialog.utils.BundleFormat;
+import com.mrhabibi.autonomousdialog.utils.DialogExecutors;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Opt-in inbox for dialog results that can't be delivered, because the dialog was shown from
+ * non-Activity context or the calling activity has finished. The results are appended to a small
+ * journal file on background thread, batched with one fsync per batch, and can be drained by
+ * identifier later, like on the next start of the calling screen. Draining appends a tombstone,
+ * and the journal is compacted once it's mostly consumed records.
+ * The result extras are written with BundleFormat, so the journal stays readable after app and
+ * platform updates, results holding Parcelable or other unsupported values can't be kept.
+ * Enable it in Application.onCreate, because the dialog host may run in a new process
+ */
+public class DialogResultInbox {
+
+    private static final String JOURNAL_DIR = "autonomous-dialog";
+    private static final String JOURNAL_FILE = "result-inbox.journal";
+
+    private static final byte RECORD_RESULT = 1;
+    private static final byte RECORD_CONSUMED = 2;
+
+    private static final byte FORMAT_VERSION = 1;
+
+    /**
+     * Compaction is done when the journal is bigger than this and half of it is consumed
+     */
+    private static final long COMPACTION_THRESHOLD_BYTES = 16 * 1024;
+
+    private static volatile boolean enabled;
+
+    /**
+     * The calling activities by identifier, to know whether the result still has a receiver,
+     * guarded by itself
+     */
+    private static final HashMap<String, TrackedCaller> callers = new HashMap<>();
+    private static boolean callersWatched;
+
+    /**
+     * Records waiting for the next batch, guarded by itself
+     */
+    private static final ArrayList<byte[]> pendingRecords = new ArrayList<>();
+    private static final ArrayList<Byte> pendingTypes = new ArrayList<>();
+    private static boolean flushScheduled;
+
+    private static final Object fileLock = new Object();
+
+    public static void setEnabled(boolean enabled) {
+        DialogResultInbox.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Used by the builder to remember the calling activity of the dialog
+     *
+     * @param identifier The identifier
+     * @param caller     The calling activity, null if shown from non-Activity context
+     */
+    static void trackCaller(@NonNull String identifier, @Nullable Activity caller) {
+        synchronized (callers) {
+            if (caller != null && !callersWatched && caller.getApplication() != null
+                    && Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+                callersWatched = true;
+                registerCallbacks(caller.getApplication());
+            }
+            callers.put(identifier, caller != null ? new TrackedCaller(caller) : null);
+        }
+    }
+
+    /**
+     * Used by the host when it finishes to forget the calling activity and check if the result
+     * has no receiver. The calling activity is gone when it was destroyed for good, one that was
+     * destroyed for recreation has a new instance that still gets the result from the platform.
+     * Below API 14 the destroy isn't known, only a calling activity still finishing is gone
+     *
+     * @param identifier The identifier
+     * @return Is the calling activity gone
+     */
+    static boolean releaseCaller(@NonNull String identifier) {
+        TrackedCaller caller;
+        synchronized (callers) {
+            caller = callers.remove(identifier);
+        }
+        if (caller == null) {
+            return false;
+        }
+        if (caller.mGone) {
+            return true;
+        }
+        Activity activity = caller.mActivity.get();
+        return activity != null && activity.isFinishing();
+    }
+
+    /**
+     * Record the verdict while the destroyed activity is still there, a weak reference read
+     * later may be cleared by then
+     */
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private static void registerCallbacks(Application application) {
+        application.registerActivityLifecycleCallbacks(new Application.ActivityLifecycleCallbacks() {
+            @Override
+            public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+            }
+
+            @Override
+            public void onActivityStarted(Activity activity) {
+            }
+
+            @Override
+            public void onActivityResumed(Activity activity) {
+            }
+
+            @Override
+            public void onActivityPaused(Activity activity) {
+            }
+
+            @Override
+            public void onActivityStopped(Activity activity) {
+            }
+
+            @Override
+            public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+            }
+
+            @Override
+            public void onActivityDestroyed(Activity activity) {
+                if (!activity.isFinishing()) {
+                    return;
+                }
+                synchronized (callers) {
+                    for (TrackedCaller caller : callers.values()) {
+                        if (caller != null && caller.mActivity.get() == activity) {
+                            caller.mGone = true;
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Keep the undelivered result, written to the journal on background thread
+     *
+     * @param context    The God object
+     * @param identifier The identifier
+     * @param resultCode The result code
+     * @param data       The result data
+     */
+    static void offer(@NonNull Context context, @NonNull String identifier, int resultCode, @Nullable Intent data) {
+        Bundle extras = data != null ? data.getExtras() : null;
+        String unsupportedKey = BundleFormat.findUnsupportedKey(extras);
+        if (unsupportedKey != null) {
+            Log.w(AutonomousDialog.TAG, "Can't keep result of " + identifier + " in the inbox, " + unsupportedKey + " isn't a plain value");
+            return;
+        }
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            DataOutputStream outputStream = new DataOutputStream(payload);
+            outputStream.writeByte(FORMAT_VERSION);
+            BundleFormat.writeString(outputStream, identifier);
+            outputStream.writeInt(resultCode);
+            outputStream.writeLong(System.currentTimeMillis());
+            BundleFormat.writeBundle(outputStream, extras);
+            enqueue(context, RECORD_RESULT, payload.toByteArray());
+        } catch (IOException e) {
+            Log.w(AutonomousDialog.TAG, "Can't keep result of " + identifier + " in the inbox", e);
+        }
+    }
+
+    /**
+     * Take all the kept results of the identifier, the oldest first
+     *
+     * @param context    The God object
+     * @param identifier The identifier
+     * @return The results
+     */
+    @WorkerThread
+    @NonNull
+    public static List<DialogResult> drain(@NonNull Context context, @NonNull String identifier) {
+        File journal = getJournal(context);
+        ArrayList<DialogResult> results = new ArrayList<>();
+        synchronized (fileLock) {
+            flush(journal);
+
+            List<Record> records = readRecords(journal);
+            int consumedCount = 0;
+            for (Record record : records) {
+                if (record.consumed) {
+                    consumedCount++;
+                } else if (identifier.equals(record.identifier)) {
+                    results.add(record.toResult());
+                    consumedCount++;
+                }
+            }
+
+            if (!results.isEmpty()) {
+                append(journal, new byte[]{RECORD_CONSUMED}, new byte[][]{tombstone(identifier)}, 1);
+            }
+
+            if (journal.length() > COMPACTION_THRESHOLD_BYTES && consumedCount * 2 >= records.size()) {
+                compact(journal, records, identifier);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Take all the kept results of the identifier on background thread
+     *
+     * @param context    The God object
+     * @param identifier The identifier
+     * @param callback   Called on the main thread with the results
+     */
+    public static void drain(@NonNull Context context, @NonNull final String identifier, @NonNull final DrainCallback callback) {
+        final Context applicationContext = context.getApplicationContext();
+        DialogExecutors.getIoExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<DialogResult> results = drain(applicationContext, identifier);
+                DialogExecutors.getMainThreadExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onDrained(identifier, results);
+                    }
+                });
+            }
+        });
+    }
+
+    private static byte[] tombstone(String identifier) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream outputStream = new DataOutputStream(payload);
+        try {
+            outputStream.writeByte(FORMAT_VERSION);
+            BundleFormat.writeString(outputStream, identifier);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return payload.toByteArray();
+    }
+
+    private static void enqueue(Context context, byte type, byte[] payload) {
+        final File journal = getJournal(context);
+        synchronized (pendingRecords) {
+            pendingRecords.add(payload);
+            pendingTypes.add(type);
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        DialogExecutors.getIoExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (fileLock) {
+                    flush(journal);
+                }
+            }
+        });
+    }
+
+    /**
+     * Write all pending records as one batch, must hold the file lock
+     */
+    private static void flush(File journal) {
+        byte[] types;
+        byte[][] payloads;
+        synchronized (pendingRecords) {
+            flushScheduled = false;
+            int count = pendingRecords.size();
+            if (count == 0) {
+                return;
+            }
+            types = new byte[count];
+            payloads = new byte[count][];
+            for (int i = 0; i < count; i++) {
+                types[i] = pendingTypes.get(i);
+                payloads[i] = pendingRecords.get(i);
+            }
+            pendingRecords.clear();
+            pendingTypes.clear();
+        }
+        append(journal, types, payloads, types.length);
+    }
+
+    /**
+     * Record layout is type, payload length, payload and payload checksum, a torn record at the
+     * end of the journal is detected by the checksum and ignored
+     */
+    private static void append(File journal, byte[] types, byte[][] payloads, int count) {
+        FileOutputStream fileOutputStream = null;
+        try {
+            fileOutputStream = new FileOutputStream(journal, true);
+            DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+            for (int i = 0; i < count; i++) {
+                writeRecord(outputStream, types[i], payloads[i]);
+            }
+            outputStream.flush();
+            fileOutputStream.getFD().sync();
+        } catch (IOException e) {
+            Log.w(AutonomousDialog.TAG, "Failed to write result inbox", e);
+        } finally {
+            closeQuietly(fileOutputStream);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream outputStream, byte type, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        outputStream.writeByte(type);
+        outputStream.writeInt(payload.length);
+        outputStream.write(payload);
+        outputStream.writeInt((int) crc.getValue());
+    }
+
+    private static List<Record> readRecords(File journal) {
+        ArrayList<Record> records = new ArrayList<>();
+        if (!journal.exists()) {
+            return records;
+        }
+        FileInputStream fileInputStream = null;
+        try {
+            fileInputStream = new FileInputStream(journal);
+            DataInputStream inputStream = new DataInputStream(new BufferedInputStream(fileInputStream));
+            while (true) {
+                byte type = inputStream.readByte();
+                int length = inputStream.readInt();
+                if (length < 0 || length > journal.length()) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                inputStream.readFully(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (inputStream.readInt() != (int) crc.getValue()) {
+                    break;
+                }
+
+                Record record = Record.read(type, payload);
+                if (record == null) {
+                    continue;
+                }
+                if (record.consumed) {
+                    /*
+                     * Tombstone consumes every earlier result of the identifier
+                     */
+                    for (Record earlier : records) {
+                        if (!earlier.consumed && record.identifier.equals(earlier.identifier)) {
+                            earlier.consumed = true;
+                        }
+                    }
+                } else {
+                    records.add(record);
+                }
+            }
+        } catch (EOFException ignored) {
+            /*
+             * End of the journal, or torn record from interrupted write
+             */
+        } catch (IOException e) {
+            Log.w(AutonomousDialog.TAG, "Failed to read result inbox", e);
+        } finally {
+            closeQuietly(fileInputStream);
+        }
+        return records;
+    }
+
+    /**
+     * Rewrite the journal with only the records that are still not consumed
+     */
+    private static void compact(File journal, List<Record> records, String drainedIdentifier) {
+        File compacted = new File(journal.getParentFile(), JOURNAL_FILE + ".tmp");
+        FileOutputStream fileOutputStream = null;
+        try {
+            fileOutputStream = new FileOutputStream(compacted);
+            DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+            for (Record record : records) {
+                if (!record.consumed && !drainedIdentifier.equals(record.identifier)) {
+                    writeRecord(outputStream, RECORD_RESULT, record.payload);
+                }
+            }
+            outputStream.flush();
+            fileOutputStream.getFD().sync();
+            closeQuietly(fileOutputStream);
+            fileOutputStream = null;
+            if (!compacted.renameTo(journal)) {
+                Log.w(AutonomousDialog.TAG, "Failed to compact result inbox");
+            }
+        } catch (IOException e) {
+            Log.w(AutonomousDialog.TAG, "Failed to compact result inbox", e);
+        } finally {
+            closeQuietly(fileOutputStream);
+            if (compacted.exists()) {
+                compacted.delete();
+            }
+        }
+    }
+
+    private static File getJournal(Context context) {
+        File directory = new File(context.getFilesDir(), JOURNAL_DIR);
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        return new File(directory, JOURNAL_FILE);
+    }
+
+    private static void closeQuietly(@Nullable FileInputStream stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static void closeQuietly(@Nullable FileOutputStream stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static class Record {
+        String identifier;
+        int resultCode;
+        byte[] payload;
+        boolean consumed;
+
+        /**
+         * Records of unknown format version are skipped, like the ones of a newer library
+         */
+        @Nullable
+        static Record read(byte type, byte[] payload) {
+            try {
+                DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(payload));
+                if (inputStream.readByte() != FORMAT_VERSION) {
+                    return null;
+                }
+                Record record = new Record();
+                record.identifier = BundleFormat.readString(inputStream);
+                if (record.identifier == null) {
+                    return null;
+                }
+                if (type == RECORD_CONSUMED) {
+                    record.consumed = true;
+                } else if (type == RECORD_RESULT) {
+                    record.resultCode = inputStream.readInt();
+                    record.payload = payload;
+                } else {
+                    return null;
+                }
+                return record;
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        DialogResult toResult() {
+            Intent data = new Intent();
+            try {
+                DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(payload));
+                inputStream.readByte();
+                BundleFormat.readString(inputStream);
+                inputStream.readInt();
+                inputStream.readLong();
+                Bundle extras = BundleFormat.readBundle(inputStream);
+                if (extras != null) {
+                    data.putExtras(extras);
+                }
+            } catch (IOException e) {
+                Log.w(AutonomousDialog.TAG, "Failed to read result of " + identifier + " from inbox", e);
+            }
+            return new DialogResult(resultCode, data);
+        }
+    }
+
+    public interface DrainCallback {
+        void onDrained(String identifier, List<DialogResult> results);
+    }
+
+    /**
+     * The calling activity of a shown dialog, gone once it's destroyed for good
+     */
+    private static class TrackedCaller {
+        final WeakReference<Activity> mActivity;
+        boolean mGone;
+
+        TrackedCaller(Activity activity) {
+            mActivity = new WeakReference<>(activity);
+        }
+    }
+}
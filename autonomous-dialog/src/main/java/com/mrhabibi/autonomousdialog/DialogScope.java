@@ -0,0 +1,368 @@
+package com.mrhabibi.autonomousdialog;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.os.Build;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.app.Fragment;
+import android.support.v4.app.FragmentActivity;
+import android.support.v4.app.FragmentManager;
+import android.util.Log;
+
+import com.mrhabibi.autonomousdialog.utils.FragmentPasser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.WeakHashMap;
+
+/**
+ * The owner of dialogs, when the scope is closed, its dialogs are dismissed and the fragments still
+ * waiting for their host are released in one pass. Scope of an activity or a fragment closes itself
+ * when its owner is destroyed for good, a screen that's only recreated keeps its dialogs running:
+ * the scope key is put in the owner saved state and the recreated owner takes the scope back. An
+ * owner destroyed without saving its state, like a fragment removed with its parent, closes the
+ * scope. Custom scope is closed by calling close(). Main thread only
+ */
+public class DialogScope {
+
+    /**
+     * Bound dialogs by their token, so a finished dialog unbinds itself from its scope
+     */
+    private static final HashMap<String, DialogScope> boundScopes = new HashMap<>();
+
+    private static final String SCOPE_KEY_LABEL = "com.mrhabibi.autonomousdialog.scopeKey";
+
+    private static final WeakHashMap<Activity, DialogScope> activityScopes = new WeakHashMap<>();
+    private static final WeakHashMap<Fragment, DialogScope> fragmentScopes = new WeakHashMap<>();
+    private static final WeakHashMap<FragmentManager, Boolean> observedFragmentManagers = new WeakHashMap<>();
+    private static boolean activityCallbacksRegistered;
+
+    /**
+     * Scopes of the owners destroyed for recreation by their key, taken back by the recreated owner
+     */
+    private static final HashMap<String, DialogScope> retainedScopes = new HashMap<>();
+
+    private static final FragmentManager.FragmentLifecycleCallbacks fragmentCallbacks = new FragmentManager.FragmentLifecycleCallbacks() {
+        @Override
+        public void onFragmentCreated(FragmentManager fm, Fragment f, Bundle savedInstanceState) {
+            DialogScope retained = takeRetained(savedInstanceState);
+            if (retained != null) {
+                DialogScope scope = fragmentScopes.get(f);
+                if (scope == null) {
+                    fragmentScopes.put(f, retained);
+                } else {
+                    scope.adopt(retained);
+                }
+            }
+        }
+
+        @Override
+        public void onFragmentResumed(FragmentManager fm, Fragment f) {
+            DialogScope scope = fragmentScopes.get(f);
+            if (scope != null) {
+                scope.mKey = null;
+            }
+        }
+
+        @Override
+        public void onFragmentSaveInstanceState(FragmentManager fm, Fragment f, Bundle outState) {
+            DialogScope scope = fragmentScopes.get(f);
+            if (scope != null) {
+                scope.saveKey(outState);
+            }
+        }
+
+        @Override
+        public void onFragmentDestroyed(FragmentManager fm, Fragment f) {
+            boolean removed = f.getActivity() == null || f.getActivity().isFinishing();
+            for (Fragment owner = f; owner != null && !removed; owner = owner.getParentFragment()) {
+                removed = owner.isRemoving();
+            }
+            release(fragmentScopes.remove(f), removed);
+        }
+    };
+
+    private final HashMap<String, Binding> mBindings = new HashMap<>();
+    private Context mContext;
+    private boolean mClosed;
+
+    /**
+     * The key put in the saved state of the owner, valid until the owner resumes again
+     */
+    private String mKey;
+
+    /**
+     * Scope that closes when the activity is destroyed for good, needs API 14 to know it
+     *
+     * @param activity The owner
+     * @return The scope of the activity
+     */
+    @NonNull
+    public static DialogScope of(@NonNull Activity activity) {
+        DialogScope scope = activityScopes.get(activity);
+        if (scope == null) {
+            scope = new DialogScope();
+            activityScopes.put(activity, scope);
+            if (!activityCallbacksRegistered) {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+                    activityCallbacksRegistered = true;
+                    registerActivityCallbacks(activity.getApplication());
+                } else {
+                    Log.w(AutonomousDialog.TAG, "Activity bound dialogs need API 14, close the scope manually");
+                }
+            }
+        }
+        return scope;
+    }
+
+    /**
+     * Scope that closes when the fragment is destroyed for good, the fragment must be added
+     *
+     * @param fragment The owner
+     * @return The scope of the fragment
+     */
+    @NonNull
+    public static DialogScope of(@NonNull Fragment fragment) {
+        FragmentActivity activity = fragment.getActivity();
+        if (fragment.getFragmentManager() == null || activity == null) {
+            throw new IllegalStateException("Fragment must be added to bind dialogs!");
+        }
+
+        /*
+         * One recursive callback on the activity fragment manager watches every fragment, the
+         * recreated activities are watched as soon as they're created
+         */
+        observe(activity);
+        if (!activityCallbacksRegistered && Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            activityCallbacksRegistered = true;
+            registerActivityCallbacks(activity.getApplication());
+        }
+
+        DialogScope scope = fragmentScopes.get(fragment);
+        if (scope == null) {
+            scope = new DialogScope();
+            fragmentScopes.put(fragment, scope);
+        }
+        return scope;
+    }
+
+    /**
+     * Keep the dialog in this scope, called by the builder when the dialog is shown
+     *
+     * @param context          The God object
+     * @param identifier       The identifier
+     * @param fragmentGetterId The passed fragment id, null if there's no fragment
+     * @return The token of the binding, passed to the host
+     */
+    @Nullable
+    String bind(@NonNull Context context, @NonNull String identifier, @Nullable String fragmentGetterId) {
+        if (mClosed) {
+            return null;
+        }
+        if (mContext == null) {
+            mContext = context.getApplicationContext();
+        }
+        String token = UUID.randomUUID().toString();
+        mBindings.put(token, new Binding(identifier, fragmentGetterId));
+        boundScopes.put(token, this);
+        return token;
+    }
+
+    /**
+     * Called by the host when the bound dialog is finished
+     *
+     * @param token The token of the binding
+     */
+    static void unbind(@Nullable String token) {
+        if (token == null) {
+            return;
+        }
+        DialogScope scope = boundScopes.remove(token);
+        if (scope != null) {
+            scope.mBindings.remove(token);
+        }
+    }
+
+    public boolean isClosed() {
+        return mClosed;
+    }
+
+    /**
+     * Count of dialogs still running in this scope
+     *
+     * @return The count
+     */
+    public int size() {
+        return mBindings.size();
+    }
+
+    /**
+     * Dismiss all dialogs of this scope and release what they hold, the next dialogs bound to a
+     * closed scope are shown unbound
+     */
+    public void close() {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        if (mKey != null) {
+            retainedScopes.remove(mKey);
+        }
+
+        for (Map.Entry<String, Binding> entry : new ArrayList<>(mBindings.entrySet())) {
+            boundScopes.remove(entry.getKey());
+            Binding binding = entry.getValue();
+
+            /*
+             * The fragment not taken by its host yet is dropped, the host will finish as expired
+             */
+            if (binding.mFragmentGetterId != null) {
+                FragmentPasser.release(binding.mFragmentGetterId);
+            }
+
+            /*
+             * The registry entry is released by the host when it finishes, or it's dismissed as
+             * soon as it comes up
+             */
+            AutonomousDialog.dismiss(mContext, binding.mIdentifier);
+        }
+        mBindings.clear();
+    }
+
+    /**
+     * Take over the bindings of the retained scope, when the recreated owner made its scope before
+     * taking the retained one back
+     */
+    private void adopt(DialogScope retained) {
+        if (mClosed) {
+            retained.close();
+            return;
+        }
+        for (Map.Entry<String, Binding> entry : retained.mBindings.entrySet()) {
+            mBindings.put(entry.getKey(), entry.getValue());
+            boundScopes.put(entry.getKey(), this);
+        }
+        retained.mBindings.clear();
+        if (mContext == null) {
+            mContext = retained.mContext;
+        }
+    }
+
+    private void saveKey(Bundle outState) {
+        if (mClosed) {
+            return;
+        }
+        if (mKey == null) {
+            mKey = UUID.randomUUID().toString();
+        }
+        outState.putString(SCOPE_KEY_LABEL, mKey);
+    }
+
+    /**
+     * Take the retained scope back, its key is spent, the recreated owner saves a new one
+     */
+    @Nullable
+    private static DialogScope takeRetained(@Nullable Bundle savedInstanceState) {
+        String key = savedInstanceState != null ? savedInstanceState.getString(SCOPE_KEY_LABEL) : null;
+        DialogScope scope = key != null ? retainedScopes.remove(key) : null;
+        if (scope != null) {
+            scope.mKey = null;
+        }
+        return scope;
+    }
+
+    /**
+     * Keep the scope of the owner destroyed for recreation until the recreated owner takes it,
+     * otherwise close it
+     */
+    private static void release(@Nullable DialogScope scope, boolean forGood) {
+        if (scope == null) {
+            return;
+        }
+        if (forGood || scope.mKey == null) {
+            scope.close();
+        } else {
+            retainedScopes.put(scope.mKey, scope);
+        }
+    }
+
+    private static void observe(Activity activity) {
+        if (!(activity instanceof FragmentActivity)) {
+            return;
+        }
+        FragmentManager fragmentManager = ((FragmentActivity) activity).getSupportFragmentManager();
+        if (observedFragmentManagers.put(fragmentManager, Boolean.TRUE) == null) {
+            fragmentManager.registerFragmentLifecycleCallbacks(fragmentCallbacks, true);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private static void registerActivityCallbacks(Application application) {
+        application.registerActivityLifecycleCallbacks(new Application.ActivityLifecycleCallbacks() {
+            @Override
+            public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+                if (!fragmentScopes.isEmpty() || !retainedScopes.isEmpty()) {
+                    observe(activity);
+                }
+                DialogScope retained = takeRetained(savedInstanceState);
+                if (retained != null) {
+                    DialogScope scope = activityScopes.get(activity);
+                    if (scope == null) {
+                        activityScopes.put(activity, retained);
+                    } else {
+                        scope.adopt(retained);
+                    }
+                }
+            }
+
+            @Override
+            public void onActivityStarted(Activity activity) {
+            }
+
+            @Override
+            public void onActivityResumed(Activity activity) {
+                DialogScope scope = activityScopes.get(activity);
+                if (scope != null) {
+                    scope.mKey = null;
+                }
+            }
+
+            @Override
+            public void onActivityPaused(Activity activity) {
+            }
+
+            @Override
+            public void onActivityStopped(Activity activity) {
+            }
+
+            @Override
+            public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+                DialogScope scope = activityScopes.get(activity);
+                if (scope != null) {
+                    scope.saveKey(outState);
+                }
+            }
+
+            @Override
+            public void onActivityDestroyed(Activity activity) {
+                release(activityScopes.remove(activity), activity.isFinishing());
+            }
+        });
+    }
+
+    private static class Binding {
+        final String mIdentifier;
+        final String mFragmentGetterId;
+
+        Binding(String identifier, String fragmentGetterId) {
+            mIdentifier = identifier;
+            mFragmentGetterId = fragmentGetterId;
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package com.mrhabibi.autonomousdialog;
+
+import android.content.Context;
+import android.content.DialogInterface;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.StyleRes;
+import android.support.v4.app.Fragment;
+import android.support.v4.app.FragmentController;
+import android.support.v4.app.FragmentHostCallback;
+import android.view.ContextThemeWrapper;
+
+import com.mrhabibi.autonomousdialog.utils.DialogUtils;
+import com.mrhabibi.autonomousdialog.wrapper.DialogWrapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Answers the dialogs from a script instead of showing them, for automated tests. Set it with
+ * AutonomousDialog.setHeadlessResponder, then every shown dialog wrapper is created in a fragment
+ * host without activity, built into a recording DialogBuilder and answered by the answer scripted
+ * for its identifier. The result goes to OnDialogResultListener right away and every answered
+ * dialog is recorded, so the tests can check what would have been shown. Main thread only
+ */
+public class HeadlessResponder {
+
+    private static final String HEADLESS_FRAGMENT_TAG = "headlessDialog";
+
+    private final HashMap<String, LinkedList<Answer>> mAnswers = new HashMap<>();
+    private final ArrayList<Record> mRecords = new ArrayList<>();
+    private Answer mDefaultAnswer;
+
+    /**
+     * Script the answers of the dialog, they're used one by one for each show and the last one is
+     * kept for the next shows
+     *
+     * @param identifier The identifier
+     * @param answers    The answers
+     * @return The responder
+     */
+    public HeadlessResponder on(@NonNull String identifier, @NonNull Answer... answers) {
+        if (answers.length == 0) {
+            throw new IllegalArgumentException("At least one answer must be given!");
+        }
+        mAnswers.put(identifier, new LinkedList<>(Arrays.asList(answers)));
+        return this;
+    }
+
+    /**
+     * Setter for the answer of the dialogs that aren't scripted, without it they throw
+     *
+     * @param answer The answer
+     * @return The responder
+     */
+    public HeadlessResponder otherwise(@Nullable Answer answer) {
+        mDefaultAnswer = answer;
+        return this;
+    }
+
+    /**
+     * Answered dialogs, in order
+     *
+     * @return The records
+     */
+    @NonNull
+    public List<Record> getRecords() {
+        return new ArrayList<>(mRecords);
+    }
+
+    public void clearRecords() {
+        mRecords.clear();
+    }
+
+    /**
+     * Answer the dialog as if it was shown and the user did the scripted answer
+     *
+     * @param context    The God object
+     * @param identifier The identifier
+     * @param fragment   The content, null for custom activity
+     * @param params     The params
+     * @param cancelable Is if cancelable
+     * @param themeRes   The theme, 0 for the default one
+     * @return The result
+     */
+    @NonNull
+    DialogResult respond(@NonNull Context context, @Nullable String identifier, @Nullable Fragment fragment,
+                         @Nullable Bundle params, boolean cancelable, @StyleRes int themeRes) {
+        Answer answer = nextAnswer(identifier);
+
+        Intent intent = new Intent();
+        intent.putExtra("id", identifier);
+        intent.putExtra("params", params != null ? params : new Bundle());
+
+        DialogBuilder builder = null;
+        int resultCode;
+        if (fragment instanceof DialogWrapper) {
+            builder = new DialogBuilder();
+            resultCode = respond(context, themeRes, (DialogWrapper) fragment, builder, answer, cancelable, intent);
+        } else {
+
+            /*
+             * Dialog fragment and custom activity can't be driven, the answer is taken as is
+             */
+            resultCode = answer.mAction == Answer.ACTION_RESULT_CODE ? answer.mResultCode : answer.getButtonResultCode();
+            intent.putExtra("responses", answer.mResponses != null ? new Bundle(answer.mResponses) : new Bundle());
+        }
+
+        DialogUtils.log("Answering Headlessly", identifier);
+
+        DialogResult result = new DialogResult(resultCode, intent);
+        mRecords.add(new Record(identifier, fragment != null ? fragment.getClass().getName() : null, builder, result));
+        return result;
+    }
+
+    private int respond(Context context, @StyleRes int themeRes, DialogWrapper wrapper, DialogBuilder builder,
+                        Answer answer, boolean cancelable, Intent intent) {
+        Context themedContext = new ContextThemeWrapper(context, themeRes > 0 ? themeRes : R.style.AutonomousAlertDialog);
+        FragmentController controller = FragmentController.createController(new HeadlessHost(themedContext));
+        controller.attachHost(null);
+        controller.dispatchCreate();
+        try {
+            controller.getSupportFragmentManager()
+                    .beginTransaction()
+                    .add(wrapper, HEADLESS_FRAGMENT_TAG)
+                    .commitNow();
+            controller.dispatchActivityCreated();
+            controller.dispatchStart();
+
+            /*
+             * Collect dialog datas, the same way DialogActivity does
+             */
+            wrapper.onBuildDialog(builder);
+
+            DialogInterface dialogInterface = new HeadlessDialogInterface();
+            for (int which : answer.mSelections) {
+                select(builder, wrapper, dialogInterface, which, intent);
+            }
+
+            switch (answer.mAction) {
+                case Answer.ACTION_POSITIVE:
+                    press(builder.getPositiveText() != null || builder.getPositiveOverridingListener() != null,
+                            "positive", DialogInterface.BUTTON_POSITIVE, DialogResult.RESULT_DIALOG_POSITIVE_BUTTON, wrapper, intent);
+                    break;
+                case Answer.ACTION_NEGATIVE:
+                    press(builder.getNegativeText() != null || builder.getNegativeOverridingListener() != null,
+                            "negative", DialogInterface.BUTTON_NEGATIVE, DialogResult.RESULT_DIALOG_NEGATIVE_BUTTON, wrapper, intent);
+                    break;
+                case Answer.ACTION_NEUTRAL:
+                    press(builder.getNeutralText() != null || builder.getNeutralOverridingListener() != null,
+                            "neutral", DialogInterface.BUTTON_NEUTRAL, DialogResult.RESULT_DIALOG_NEUTRAL_BUTTON, wrapper, intent);
+                    break;
+                case Answer.ACTION_PLAIN_CHOICE:
+                    checkItem(builder.getPlainChoiceItems(), answer.mWhich, "plain choice");
+                    intent.putExtra("which", answer.mWhich);
+                    wrapper.setResultCode(DialogResult.RESULT_DIALOG_PLAIN_CHOICE);
+                    if (builder.getPlainChoiceOverridingListener() != null) {
+                        builder.getPlainChoiceOverridingListener().onClick(dialogInterface, answer.mWhich);
+                    }
+                    break;
+                case Answer.ACTION_RESULT_CODE:
+                    wrapper.setResultCode(answer.mResultCode);
+                    break;
+                case Answer.ACTION_CANCEL:
+                    if (!cancelable) {
+                        throw new IllegalStateException("Dialog isn't cancelable!");
+                    }
+                    wrapper.setResultCode(DialogResult.RESULT_DIALOG_CANCELLED);
+                    break;
+                default:
+                    break;
+            }
+
+            /*
+             * Bundling the responses like the dialog is dismissed
+             */
+            Bundle responses = new Bundle();
+            wrapper.onBundleResponses(responses);
+            if (answer.mResponses != null) {
+                responses.putAll(answer.mResponses);
+            }
+            intent.putExtra("responses", responses);
+            return wrapper.getResultCode();
+        } finally {
+            controller.dispatchStop();
+            controller.dispatchDestroy();
+        }
+    }
+
+    private void select(DialogBuilder builder, DialogWrapper wrapper, DialogInterface dialogInterface, int which, Intent intent) {
+        if (builder.getSingleChoiceItems() != null) {
+            checkItem(builder.getSingleChoiceItems(), which, "single choice");
+            intent.putExtra("which", which);
+            wrapper.setResultCode(DialogResult.RESULT_DIALOG_SINGLE_CHOICE);
+            if (builder.getSingleChoiceOverridingListener() != null) {
+                builder.getSingleChoiceOverridingListener().onClick(dialogInterface, which);
+            }
+        } else if (builder.getMultiChoiceItems() != null) {
+            checkItem(builder.getMultiChoiceItems(), which, "multi choice");
+            boolean[] checkedItems = builder.getMultiChoiceCheckedItems();
+            boolean checked = checkedItems == null || which >= checkedItems.length || !checkedItems[which];
+            intent.putExtra("which", which);
+            intent.putExtra("checked", checked);
+            wrapper.setResultCode(DialogResult.RESULT_DIALOG_MULTI_CHOICES);
+            if (builder.getMultiChoiceOverridingListener() != null) {
+                builder.getMultiChoiceOverridingListener().onClick(dialogInterface, which, checked);
+            }
+        } else {
+            throw new IllegalStateException("Dialog has no choices to select!");
+        }
+    }
+
+    private void press(boolean exists, String name, int which, int resultCode, DialogWrapper wrapper, Intent intent) {
+        if (!exists) {
+            throw new IllegalStateException("Dialog has no " + name + " button!");
+        }
+        intent.putExtra("which", which);
+        wrapper.setResultCode(resultCode);
+    }
+
+    private void checkItem(@Nullable CharSequence[] items, int which, String name) {
+        if (items == null || which < 0 || which >= items.length) {
+            throw new IllegalStateException("Dialog has no " + name + " item " + which + "!");
+        }
+    }
+
+    private Answer nextAnswer(@Nullable String identifier) {
+        LinkedList<Answer> answers = identifier != null ? mAnswers.get(identifier) : null;
+        if (answers != null) {
+            return answers.size() > 1 ? answers.removeFirst() : answers.getFirst();
+        }
+        if (mDefaultAnswer == null) {
+            throw new IllegalStateException("No headless answer for dialog " + identifier + "!");
+        }
+        return mDefaultAnswer;
+    }
+
+    /**
+     * The scripted user action
+     */
+    public static class Answer {
+
+        static final int ACTION_NONE = 0;
+        static final int ACTION_POSITIVE = 1;
+        static final int ACTION_NEGATIVE = 2;
+        static final int ACTION_NEUTRAL = 3;
+        static final int ACTION_PLAIN_CHOICE = 4;
+        static final int ACTION_RESULT_CODE = 5;
+        static final int ACTION_CANCEL = 6;
+
+        final int mAction;
+        int mWhich;
+        int mResultCode;
+        int[] mSelections = new int[0];
+        Bundle mResponses;
+
+        private Answer(int action) {
+            mAction = action;
+        }
+
+        public static Answer positive() {
+            return new Answer(ACTION_POSITIVE);
+        }
+
+        public static Answer negative() {
+            return new Answer(ACTION_NEGATIVE);
+        }
+
+        public static Answer neutral() {
+            return new Answer(ACTION_NEUTRAL);
+        }
+
+        public static Answer cancel() {
+            return new Answer(ACTION_CANCEL);
+        }
+
+        /**
+         * Tap the single choice item and leave the dialog
+         *
+         * @param which The item index
+         * @return The answer
+         */
+        public static Answer singleChoice(int which) {
+            return new Answer(ACTION_NONE).selecting(which);
+        }
+
+        /**
+         * Toggle the multi choice items and leave the dialog
+         *
+         * @param which The item indexes
+         * @return The answer
+         */
+        public static Answer multiChoices(int... which) {
+            return new Answer(ACTION_NONE).selecting(which);
+        }
+
+        /**
+         * Tap the plain choice item
+         *
+         * @param which The item index
+         * @return The answer
+         */
+        public static Answer plainChoice(int which) {
+            Answer answer = new Answer(ACTION_PLAIN_CHOICE);
+            answer.mWhich = which;
+            return answer;
+        }
+
+        /**
+         * Leave the dialog with the custom result code, like the custom view does
+         *
+         * @param resultCode The result code
+         * @return The answer
+         */
+        public static Answer resultCode(int resultCode) {
+            Answer answer = new Answer(ACTION_RESULT_CODE);
+            answer.mResultCode = resultCode;
+            return answer;
+        }
+
+        /**
+         * Tap the choice items before the action, single choice or multi choice alike
+         *
+         * @param which The item indexes
+         * @return The answer
+         */
+        public Answer selecting(int... which) {
+            mSelections = which;
+            return this;
+        }
+
+        /**
+         * Add the responses that the dialog can't make without the user, like typed texts
+         *
+         * @param responses The responses
+         * @return The answer
+         */
+        public Answer withResponses(@Nullable Bundle responses) {
+            mResponses = responses;
+            return this;
+        }
+
+        int getButtonResultCode() {
+            switch (mAction) {
+                case ACTION_POSITIVE:
+                    return DialogResult.RESULT_DIALOG_POSITIVE_BUTTON;
+                case ACTION_NEGATIVE:
+                    return DialogResult.RESULT_DIALOG_NEGATIVE_BUTTON;
+                case ACTION_NEUTRAL:
+                    return DialogResult.RESULT_DIALOG_NEUTRAL_BUTTON;
+                case ACTION_PLAIN_CHOICE:
+                    return DialogResult.RESULT_DIALOG_PLAIN_CHOICE;
+                default:
+                    return DialogResult.RESULT_DIALOG_CANCELLED;
+            }
+        }
+    }
+
+    /**
+     * What would have been shown, and how it's answered
+     */
+    public static class Record {
+        private final String mIdentifier;
+        private final String mContentClassName;
+        private final DialogBuilder mBuilder;
+        private final DialogResult mResult;
+
+        Record(String identifier, String contentClassName, DialogBuilder builder, DialogResult result) {
+            mIdentifier = identifier;
+            mContentClassName = contentClassName;
+            mBuilder = builder;
+            mResult = result;
+        }
+
+        @Nullable
+        public String getIdentifier() {
+            return mIdentifier;
+        }
+
+        @Nullable
+        public String getContentClassName() {
+            return mContentClassName;
+        }
+
+        @Nullable
+        public CharSequence getTitle() {
+            return mBuilder != null ? mBuilder.getTitle() : null;
+        }
+
+        @Nullable
+        public CharSequence getMessage() {
+            return mBuilder != null ? mBuilder.getMessage() : null;
+        }
+
+        @Nullable
+        public CharSequence getPositiveText() {
+            return mBuilder != null ? mBuilder.getPositiveText() : null;
+        }
+
+        @Nullable
+        public CharSequence getNegativeText() {
+            return mBuilder != null ? mBuilder.getNegativeText() : null;
+        }
+
+        @Nullable
+        public CharSequence getNeutralText() {
+            return mBuilder != null ? mBuilder.getNeutralText() : null;
+        }
+
+        /**
+         * The single, multi or plain choice items, whichever is shown
+         *
+         * @return The items
+         */
+        @Nullable
+        public CharSequence[] getItems() {
+            if (mBuilder == null) {
+                return null;
+            }
+            if (mBuilder.getSingleChoiceItems() != null) {
+                return mBuilder.getSingleChoiceItems();
+            }
+            if (mBuilder.getMultiChoiceItems() != null) {
+                return mBuilder.getMultiChoiceItems();
+            }
+            return mBuilder.getPlainChoiceItems();
+        }
+
+        public boolean hasView() {
+            return mBuilder != null && mBuilder.getView() != null;
+        }
+
+        @NonNull
+        public DialogResult getResult() {
+            return mResult;
+        }
+    }
+
+    /**
+     * Fragment host without activity, the wrapper gets the themed context only
+     */
+    private static class HeadlessHost extends FragmentHostCallback<Object> {
+
+        HeadlessHost(Context context) {
+            super(context, new Handler(Looper.getMainLooper()), 0);
+        }
+
+        @Override
+        public Object onGetHost() {
+            return null;
+        }
+    }
+
+    /**
+     * The dialog the wrapper sees, there's nothing to dismiss
+     */
+    private static class HeadlessDialogInterface implements DialogInterface {
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public void dismiss() {
+        }
+    }
+}
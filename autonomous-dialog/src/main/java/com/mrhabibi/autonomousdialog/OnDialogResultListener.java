@@ -0,0 +1,17 @@
+package com.mrhabibi.autonomousdialog;
+
+/**
+ * This interface receives the dialog results that are answered without showing the dialog, like
+ * the remembered answers, set it to the builder or implement it in the calling activity
+ */
+
+public interface OnDialogResultListener {
+
+    /**
+     * Called on the main thread with the answered result
+     *
+     * @param result The dialog result
+     */
+    void onDialogResult(DialogResult result);
+
+}
@@ -0,0 +1,18 @@
+package com.mrhabibi.autonomousdialog;
+
+/**
+ * This interface used for releasing retained memory under memory pressure, register it to
+ * DialogMemoryManager
+ */
+
+public interface Trimmable {
+
+    /**
+     * Called on the main thread when the app is asked to trim memory
+     *
+     * @param tier One of DialogMemoryManager.TIER_*, release everything up to this tier
+     * @return Count of released entries
+     */
+    int onTrimMemory(int tier);
+
+}
@@ -0,0 +1,20 @@
+package com.mrhabibi.autonomousdialog.codec;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Mark params or responses class with this annotation, and autonomous-dialog-compiler will
+ * generate BundleCodec named after the class with Codec suffix, like UserParams to UserParamsCodec.
+ * The class needs no-argument constructor, and every non-private, non-static and non-transient
+ * field is written field by field, so there is no reflection at all. Inherited fields from
+ * superclass in other package must be public, the codec can't reach the protected ones.
+ * Supported fields are primitives, String, CharSequence, their arrays, ArrayList of String or
+ * Integer, Bundle, Parcelable, enum, and other BundleCodable classes
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface BundleCodable {
+}
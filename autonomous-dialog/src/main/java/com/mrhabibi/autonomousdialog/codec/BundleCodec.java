@@ -0,0 +1,49 @@
+package com.mrhabibi.autonomousdialog.codec;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Typed converter between an object and Bundle or Parcel, implemented by the generated codecs of
+ * BundleCodable classes, but can be written by hand too
+ *
+ * @param <T> The converted type
+ */
+public interface BundleCodec<T> {
+
+    /**
+     * Write the object fields into the bundle, one entry per field
+     *
+     * @param value  The object
+     * @param bundle The target bundle
+     */
+    void writeToBundle(@NonNull T value, @NonNull Bundle bundle);
+
+    /**
+     * Read new object from the bundle, absent fields are left default
+     *
+     * @param bundle The source bundle
+     * @return The object
+     */
+    @NonNull
+    T readFromBundle(@NonNull Bundle bundle);
+
+    /**
+     * Write the object fields into the parcel in declaration order
+     *
+     * @param value  The object, can be null
+     * @param parcel The target parcel
+     */
+    void writeToParcel(@Nullable T value, @NonNull Parcel parcel);
+
+    /**
+     * Read new object from the parcel
+     *
+     * @param parcel The source parcel
+     * @return The object, null if null was written
+     */
+    @Nullable
+    T readFromParcel(@NonNull Parcel parcel);
+}
@@ -0,0 +1,29 @@
+package com.mrhabibi.autonomousdialog.codec;
+
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Just Utility class for writing and reading objects with codecs
+ */
+public class BundleCodecs {
+
+    @Nullable
+    public static <T> Bundle toBundle(@Nullable T value, @NonNull BundleCodec<T> codec) {
+        if (value == null) {
+            return null;
+        }
+        Bundle bundle = new Bundle();
+        codec.writeToBundle(value, bundle);
+        return bundle;
+    }
+
+    @Nullable
+    public static <T> T fromBundle(@Nullable Bundle bundle, @NonNull BundleCodec<T> codec) {
+        if (bundle == null) {
+            return null;
+        }
+        return codec.readFromBundle(bundle);
+    }
+}
@@ -0,0 +1,76 @@
+package com.mrhabibi.autonomousdialog.instrumentation;
+
+import android.support.annotation.Nullable;
+
+import java.util.Map;
+
+/**
+ * The one place to receive measurements from AutonomousDialog, set a listener to forward them to
+ * your own reporting. The listener is called on the thread that measured, keep it cheap
+ */
+public class DialogInstrumentation {
+
+    private static volatile Listener listener;
+
+    /**
+     * Setter for the listener
+     *
+     * @param listener The listener, null to stop listening
+     */
+    public static void setListener(@Nullable Listener listener) {
+        DialogInstrumentation.listener = listener;
+    }
+
+    @Nullable
+    public static Listener getListener() {
+        return listener;
+    }
+
+    /**
+     * Override only the measurements you need
+     */
+    public static abstract class Listener {
+
+        /**
+         * Called when a payload of dialog is parcelled for measurement
+         *
+         * @param payload      One of ParcelSizeProfiler.PAYLOAD_*
+         * @param identifier   The identifier, null if the dialog has none
+         * @param wrapperClass The content class name
+         * @param bytes        The parcelled size
+         */
+        public void onPayloadMeasured(int payload, @Nullable String identifier, String wrapperClass, int bytes) {
+        }
+
+        /**
+         * Called when a payload is over its budget and the policy reports it
+         *
+         * @param payload      One of ParcelSizeProfiler.PAYLOAD_*
+         * @param identifier   The identifier, null if the dialog has none
+         * @param wrapperClass The content class name
+         * @param bytes        The parcelled size
+         * @param budget       The budget of the payload
+         */
+        public void onBudgetExceeded(int payload, @Nullable String identifier, String wrapperClass, int bytes, int budget) {
+        }
+
+        /**
+         * Called on the main thread when the first dialog of a prewarmed process is shown
+         *
+         * @param spentMillis The time spent on class loading, theme resolution and inflation
+         * @param savedMillis The first show time of a process that wasn't prewarmed minus this
+         *                    one, or DialogPrewarmer.UNKNOWN until such process is measured
+         */
+        public void onPrewarmed(long spentMillis, long savedMillis) {
+        }
+
+        /**
+         * Called on the main thread when DialogMemoryManager has trimmed memory
+         *
+         * @param tier     One of DialogMemoryManager.TIER_*
+         * @param released Count of released entries by name
+         */
+        public void onMemoryTrimmed(int tier, Map<String, Integer> released) {
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package com.mrhabibi.autonomousdialog.instrumentation;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+import com.mrhabibi.autonomousdialog.AutonomousDialog;
+import com.mrhabibi.autonomousdialog.DialogResult;
+import com.mrhabibi.autonomousdialog.utils.DialogExecutors;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records dialog interactions, shown, decided and cancelled, with the time to decision. Events are
+ * kept in a preallocated ring, so recording on the main thread is just a few array stores, and
+ * flushed in batches to a local binary file on background thread. A batch is written when the ring
+ * fills up and when the app UI is hidden, so a killed process only loses the events recorded since
+ * the app was last in foreground. Disabled until enabled
+ */
+public class InteractionRecorder {
+
+    public static final int EVENT_SHOWN = 1;
+    public static final int EVENT_DECIDED = 2;
+    public static final int EVENT_CANCELLED = 3;
+
+    private static final String JOURNAL_DIR = "autonomous-dialog";
+    private static final String JOURNAL_FILE = "interactions.journal";
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int CAPACITY = 256;
+
+    /**
+     * Flush is scheduled when the ring is filled up to this
+     */
+    private static final int FLUSH_THRESHOLD = CAPACITY / 4;
+
+    /*
+     * The ring, column per field so there's no event object allocated per record
+     */
+    private static final int[] types = new int[CAPACITY];
+    private static final long[] timestamps = new long[CAPACITY];
+    private static final String[] identifiers = new String[CAPACITY];
+    private static final String[] wrapperClasses = new String[CAPACITY];
+    private static final int[] resultCodes = new int[CAPACITY];
+    private static final int[] choices = new int[CAPACITY];
+    private static final long[] durations = new long[CAPACITY];
+
+    private static int head;
+    private static int count;
+    private static int droppedCount;
+    private static boolean flushScheduled;
+
+    private static final Object fileLock = new Object();
+
+    private static volatile Context applicationContext;
+
+    /**
+     * Flushes the ring when the app goes to background, the process may be killed after that. Only
+     * created on API 14 and above
+     */
+    private static ComponentCallbacks trimCallbacks;
+
+    /**
+     * Start recording interactions to the app files directory. Below API 14 nothing is told when
+     * the app goes to background, call flush manually there
+     *
+     * @param context The God object
+     */
+    public static synchronized void enable(@NonNull Context context) {
+        disable();
+        applicationContext = context.getApplicationContext();
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            Log.w(AutonomousDialog.TAG, "Flushing dialog interactions in background needs API 14");
+            return;
+        }
+        registerCallbacks(applicationContext);
+    }
+
+    public static synchronized void disable() {
+        if (applicationContext != null) {
+            if (trimCallbacks != null) {
+                unregisterCallbacks(applicationContext);
+            }
+            applicationContext = null;
+        }
+    }
+
+    public static boolean isEnabled() {
+        return applicationContext != null;
+    }
+
+    /**
+     * Record that the dialog is shown
+     *
+     * @param identifier   The identifier
+     * @param wrapperClass The content class name, null if there's no content
+     */
+    public static void recordShown(@Nullable String identifier, @Nullable String wrapperClass) {
+        record(EVENT_SHOWN, identifier, wrapperClass, 0, -1, 0);
+    }
+
+    /**
+     * Record the decision of the dialog, result code cancelled is recorded as cancel
+     *
+     * @param identifier     The identifier
+     * @param wrapperClass   The content class name, null if there's no content
+     * @param resultCode     The dialog result code
+     * @param which          The chosen button or option, -1 if none
+     * @param timeToDecision Millis since the dialog is shown
+     */
+    public static void recordDecision(@Nullable String identifier, @Nullable String wrapperClass,
+                                      int resultCode, int which, long timeToDecision) {
+        int type = resultCode == DialogResult.RESULT_DIALOG_CANCELLED ? EVENT_CANCELLED : EVENT_DECIDED;
+        record(type, identifier, wrapperClass, resultCode, which, timeToDecision);
+    }
+
+    private static void record(int type, String identifier, String wrapperClass, int resultCode, int which, long duration) {
+        if (applicationContext == null) {
+            return;
+        }
+
+        boolean scheduleFlush = false;
+        synchronized (types) {
+            int index = (head + count) % CAPACITY;
+            if (count == CAPACITY) {
+                /*
+                 * The writer is behind, overwrite the oldest
+                 */
+                head = (head + 1) % CAPACITY;
+                droppedCount++;
+            } else {
+                count++;
+            }
+            types[index] = type;
+            timestamps[index] = System.currentTimeMillis();
+            identifiers[index] = identifier;
+            wrapperClasses[index] = wrapperClass;
+            resultCodes[index] = resultCode;
+            choices[index] = which;
+            durations[index] = duration;
+
+            if (count >= FLUSH_THRESHOLD && !flushScheduled) {
+                flushScheduled = true;
+                scheduleFlush = true;
+            }
+        }
+
+        if (scheduleFlush) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Write the recorded events now on background thread, it's done by the library when the ring
+     * fills up and when the app goes to background
+     */
+    public static void flush() {
+        synchronized (types) {
+            if (count == 0 || flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Flush when the app UI is hidden or memory is low
+     *
+     * @param level The ComponentCallbacks2 level
+     */
+    static void trim(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            flush();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private static void registerCallbacks(Context applicationContext) {
+        trimCallbacks = new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                trim(level);
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                flush();
+            }
+        };
+        applicationContext.registerComponentCallbacks(trimCallbacks);
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private static void unregisterCallbacks(Context applicationContext) {
+        applicationContext.unregisterComponentCallbacks(trimCallbacks);
+        trimCallbacks = null;
+    }
+
+    private static void scheduleFlush() {
+        DialogExecutors.getBackgroundExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                Context context = applicationContext;
+                synchronized (fileLock) {
+                    if (context != null) {
+                        writeBatch(getJournal(context));
+                    } else {
+                        synchronized (types) {
+                            flushScheduled = false;
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Take the events out of the ring and append them, must hold the file lock
+     */
+    private static void writeBatch(File journal) {
+        int batchCount;
+        int[] batchTypes;
+        long[] batchTimestamps;
+        String[] batchIdentifiers;
+        String[] batchWrapperClasses;
+        int[] batchResultCodes;
+        int[] batchChoices;
+        long[] batchDurations;
+        int batchDroppedCount;
+
+        synchronized (types) {
+            flushScheduled = false;
+            batchCount = count;
+            batchTypes = new int[batchCount];
+            batchTimestamps = new long[batchCount];
+            batchIdentifiers = new String[batchCount];
+            batchWrapperClasses = new String[batchCount];
+            batchResultCodes = new int[batchCount];
+            batchChoices = new int[batchCount];
+            batchDurations = new long[batchCount];
+            for (int i = 0; i < batchCount; i++) {
+                int index = (head + i) % CAPACITY;
+                batchTypes[i] = types[index];
+                batchTimestamps[i] = timestamps[index];
+                batchIdentifiers[i] = identifiers[index];
+                batchWrapperClasses[i] = wrapperClasses[index];
+                batchResultCodes[i] = resultCodes[index];
+                batchChoices[i] = choices[index];
+                batchDurations[i] = durations[index];
+                identifiers[index] = null;
+                wrapperClasses[index] = null;
+            }
+            head = (head + batchCount) % CAPACITY;
+            count = 0;
+            batchDroppedCount = droppedCount;
+            droppedCount = 0;
+        }
+
+        if (batchDroppedCount > 0) {
+            Log.w(AutonomousDialog.TAG, batchDroppedCount + " dialog interactions dropped before written");
+        }
+        if (batchCount == 0) {
+            return;
+        }
+
+        FileOutputStream fileOutputStream = null;
+        try {
+            fileOutputStream = new FileOutputStream(journal, true);
+            DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+            for (int i = 0; i < batchCount; i++) {
+                outputStream.writeByte(FORMAT_VERSION);
+                outputStream.writeByte(batchTypes[i]);
+                outputStream.writeLong(batchTimestamps[i]);
+                outputStream.writeUTF(batchIdentifiers[i] != null ? batchIdentifiers[i] : "");
+                outputStream.writeUTF(batchWrapperClasses[i] != null ? batchWrapperClasses[i] : "");
+                outputStream.writeInt(batchResultCodes[i]);
+                outputStream.writeInt(batchChoices[i]);
+                outputStream.writeLong(batchDurations[i]);
+            }
+            outputStream.flush();
+        } catch (IOException e) {
+            Log.w(AutonomousDialog.TAG, "Failed to write dialog interactions", e);
+        } finally {
+            if (fileOutputStream != null) {
+                try {
+                    fileOutputStream.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Read all the written interactions, the events still in the ring are written first
+     *
+     * @param context The God object
+     * @return The interactions, the oldest first
+     */
+    @WorkerThread
+    @NonNull
+    public static List<Interaction> read(@NonNull Context context) {
+        ArrayList<Interaction> interactions = new ArrayList<>();
+        File journal = getJournal(context);
+        synchronized (fileLock) {
+            writeBatch(journal);
+            if (!journal.exists()) {
+                return interactions;
+            }
+
+            FileInputStream fileInputStream = null;
+            try {
+                fileInputStream = new FileInputStream(journal);
+                DataInputStream inputStream = new DataInputStream(new BufferedInputStream(fileInputStream));
+                while (true) {
+                    int version = inputStream.readByte();
+                    if (version != FORMAT_VERSION) {
+                        Log.w(AutonomousDialog.TAG, "Unknown dialog interactions format " + version);
+                        break;
+                    }
+                    Interaction interaction = new Interaction();
+                    interaction.mType = inputStream.readByte();
+                    interaction.mTimestamp = inputStream.readLong();
+                    interaction.mIdentifier = inputStream.readUTF();
+                    interaction.mWrapperClass = inputStream.readUTF();
+                    interaction.mResultCode = inputStream.readInt();
+                    interaction.mWhich = inputStream.readInt();
+                    interaction.mTimeToDecision = inputStream.readLong();
+                    interactions.add(interaction);
+                }
+            } catch (EOFException ignored) {
+                /*
+                 * End of the journal, or torn event from interrupted write
+                 */
+            } catch (IOException e) {
+                Log.w(AutonomousDialog.TAG, "Failed to read dialog interactions", e);
+            } finally {
+                if (fileInputStream != null) {
+                    try {
+                        fileInputStream.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+        return interactions;
+    }
+
+    /**
+     * Delete the written interactions, like after they're uploaded
+     *
+     * @param context The God object
+     */
+    @WorkerThread
+    public static void clear(@NonNull Context context) {
+        synchronized (fileLock) {
+            File journal = getJournal(context);
+            if (journal.exists() && !journal.delete()) {
+                Log.w(AutonomousDialog.TAG, "Failed to clear dialog interactions");
+            }
+        }
+    }
+
+    private static File getJournal(Context context) {
+        File directory = new File(context.getFilesDir(), JOURNAL_DIR);
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        return new File(directory, JOURNAL_FILE);
+    }
+
+    /**
+     * One recorded interaction
+     */
+    public static class Interaction {
+        private int mType;
+        private long mTimestamp;
+        private String mIdentifier;
+        private String mWrapperClass;
+        private int mResultCode;
+        private int mWhich;
+        private long mTimeToDecision;
+
+        /**
+         * @return One of EVENT_SHOWN, EVENT_DECIDED and EVENT_CANCELLED
+         */
+        public int getType() {
+            return mType;
+        }
+
+        public long getTimestamp() {
+            return mTimestamp;
+        }
+
+        /**
+         * @return The identifier, empty if the dialog has none
+         */
+        public String getIdentifier() {
+            return mIdentifier;
+        }
+
+        /**
+         * @return The content class name, empty if the dialog has none
+         */
+        public String getWrapperClass() {
+            return mWrapperClass;
+        }
+
+        public int getResultCode() {
+            return mResultCode;
+        }
+
+        /**
+         * @return The chosen button or option, -1 if none
+         */
+        public int getWhich() {
+            return mWhich;
+        }
+
+        /**
+         * @return Millis from shown to decision, 0 for shown event
+         */
+        public long getTimeToDecision() {
+            return mTimeToDecision;
+        }
+    }
+}
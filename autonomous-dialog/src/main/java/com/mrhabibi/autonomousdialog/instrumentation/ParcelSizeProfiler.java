@@ -0,0 +1,286 @@
+package com.mrhabibi.autonomousdialog.instrumentation;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.os.Bundle;
+import android.os.Parcel;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.mrhabibi.autonomousdialog.AutonomousDialog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Measures the parcelled size of what every dialog moves through binder, the intent extras, the
+ * content arguments, the saved state and the result, per identifier and content class. It helps to
+ * find which dialog causes TransactionTooLargeException. Measuring parcels the bundle once more, so
+ * it's disabled until enabled
+ */
+public class ParcelSizeProfiler {
+
+    public static final int PAYLOAD_INTENT_EXTRAS = 0;
+    public static final int PAYLOAD_ARGUMENTS = 1;
+    public static final int PAYLOAD_SAVED_STATE = 2;
+    public static final int PAYLOAD_RESULT = 3;
+
+    private static final int PAYLOAD_COUNT = 4;
+
+    /**
+     * Only log the payload over budget
+     */
+    public static final int POLICY_WARN = 0;
+    /**
+     * Throw in debuggable app, report in release app
+     */
+    public static final int POLICY_THROW_IN_DEBUG = 1;
+    /**
+     * Log and report the payload over budget to DialogInstrumentation listener
+     */
+    public static final int POLICY_REPORT = 2;
+
+    /**
+     * The binder buffer is 1MB shared by the whole process, a single payload should be far below
+     */
+    public static final int DEFAULT_BUDGET_BYTES = 100 * 1024;
+
+    private static final int[] budgets = {DEFAULT_BUDGET_BYTES, DEFAULT_BUDGET_BYTES, DEFAULT_BUDGET_BYTES, DEFAULT_BUDGET_BYTES};
+    private static volatile int policy = POLICY_WARN;
+
+    private static volatile boolean enabled;
+    private static volatile boolean debuggable;
+
+    private static final HashMap<String, PayloadStats> stats = new HashMap<>();
+
+    /**
+     * Start measuring the dialog payloads
+     *
+     * @param context The God object, to know whether the app is debuggable
+     */
+    public static void enable(@NonNull Context context) {
+        debuggable = (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        enabled = true;
+    }
+
+    public static void disable() {
+        enabled = false;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Setter for the budget of a payload
+     *
+     * @param payload  One of PAYLOAD_*
+     * @param maxBytes The max parcelled size
+     */
+    public static void setBudget(int payload, int maxBytes) {
+        synchronized (budgets) {
+            budgets[payload] = maxBytes;
+        }
+    }
+
+    /**
+     * Setter for the budget of all payloads
+     *
+     * @param maxBytes The max parcelled size
+     */
+    public static void setBudget(int maxBytes) {
+        synchronized (budgets) {
+            for (int i = 0; i < PAYLOAD_COUNT; i++) {
+                budgets[i] = maxBytes;
+            }
+        }
+    }
+
+    public static int getBudget(int payload) {
+        synchronized (budgets) {
+            return budgets[payload];
+        }
+    }
+
+    /**
+     * Setter for what to do when a payload is over its budget
+     *
+     * @param policy One of POLICY_*
+     */
+    public static void setPolicy(int policy) {
+        ParcelSizeProfiler.policy = policy;
+    }
+
+    /**
+     * Measure the payload and apply the budget, does nothing when disabled
+     *
+     * @param payload      One of PAYLOAD_*
+     * @param identifier   The identifier, null if the dialog has none
+     * @param wrapperClass The content class name
+     * @param bundle       The payload
+     * @return The parcelled size, -1 if not measured
+     */
+    public static int measure(int payload, @Nullable String identifier, @NonNull String wrapperClass, @Nullable Bundle bundle) {
+        if (!enabled || bundle == null) {
+            return -1;
+        }
+
+        int bytes;
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeBundle(bundle);
+            bytes = parcel.dataSize();
+        } catch (RuntimeException e) {
+            Log.w(AutonomousDialog.TAG, "Can't measure " + getPayloadName(payload) + " of " + identifier, e);
+            return -1;
+        } finally {
+            parcel.recycle();
+        }
+
+        String key = identifier + "|" + wrapperClass + "|" + payload;
+        synchronized (stats) {
+            PayloadStats payloadStats = stats.get(key);
+            if (payloadStats == null) {
+                payloadStats = new PayloadStats(payload, identifier, wrapperClass);
+                stats.put(key, payloadStats);
+            }
+            payloadStats.add(bytes);
+        }
+
+        DialogInstrumentation.Listener listener = DialogInstrumentation.getListener();
+        if (listener != null) {
+            listener.onPayloadMeasured(payload, identifier, wrapperClass, bytes);
+        }
+
+        int budget = getBudget(payload);
+        if (bytes > budget) {
+            onBudgetExceeded(payload, identifier, wrapperClass, bytes, budget);
+        }
+        return bytes;
+    }
+
+    private static void onBudgetExceeded(int payload, String identifier, String wrapperClass, int bytes, int budget) {
+        String message = getPayloadName(payload) + " of " + wrapperClass + " (" + identifier + ") is "
+                + bytes + " bytes, over the budget of " + budget + " bytes";
+
+        int currentPolicy = policy;
+        if (currentPolicy == POLICY_THROW_IN_DEBUG && debuggable) {
+            throw new IllegalStateException(message);
+        }
+
+        Log.w(AutonomousDialog.TAG, message);
+        if (currentPolicy != POLICY_WARN) {
+            DialogInstrumentation.Listener listener = DialogInstrumentation.getListener();
+            if (listener != null) {
+                listener.onBudgetExceeded(payload, identifier, wrapperClass, bytes, budget);
+            }
+        }
+    }
+
+    /**
+     * Getter for the aggregated sizes since enabled or reset
+     *
+     * @return Copy of stats per identifier, content class and payload
+     */
+    @NonNull
+    public static List<PayloadStats> getStats() {
+        synchronized (stats) {
+            ArrayList<PayloadStats> copies = new ArrayList<>(stats.size());
+            for (PayloadStats payloadStats : stats.values()) {
+                copies.add(payloadStats.copy());
+            }
+            return copies;
+        }
+    }
+
+    public static void reset() {
+        synchronized (stats) {
+            stats.clear();
+        }
+    }
+
+    public static String getPayloadName(int payload) {
+        switch (payload) {
+            case PAYLOAD_INTENT_EXTRAS:
+                return "Intent extras";
+            case PAYLOAD_ARGUMENTS:
+                return "Arguments";
+            case PAYLOAD_SAVED_STATE:
+                return "Saved state";
+            case PAYLOAD_RESULT:
+                return "Result";
+            default:
+                return "Payload " + payload;
+        }
+    }
+
+    /**
+     * Aggregated sizes of one payload of one dialog
+     */
+    public static class PayloadStats {
+        private final int mPayload;
+        private final String mIdentifier;
+        private final String mWrapperClass;
+        private int mCount;
+        private long mTotalBytes;
+        private int mMaxBytes;
+        private int mLastBytes;
+
+        PayloadStats(int payload, String identifier, String wrapperClass) {
+            mPayload = payload;
+            mIdentifier = identifier;
+            mWrapperClass = wrapperClass;
+        }
+
+        void add(int bytes) {
+            mCount++;
+            mTotalBytes += bytes;
+            mMaxBytes = Math.max(mMaxBytes, bytes);
+            mLastBytes = bytes;
+        }
+
+        PayloadStats copy() {
+            PayloadStats copy = new PayloadStats(mPayload, mIdentifier, mWrapperClass);
+            copy.mCount = mCount;
+            copy.mTotalBytes = mTotalBytes;
+            copy.mMaxBytes = mMaxBytes;
+            copy.mLastBytes = mLastBytes;
+            return copy;
+        }
+
+        public int getPayload() {
+            return mPayload;
+        }
+
+        @Nullable
+        public String getIdentifier() {
+            return mIdentifier;
+        }
+
+        public String getWrapperClass() {
+            return mWrapperClass;
+        }
+
+        public int getCount() {
+            return mCount;
+        }
+
+        public long getTotalBytes() {
+            return mTotalBytes;
+        }
+
+        public int getAverageBytes() {
+            return mCount > 0 ? (int) (mTotalBytes / mCount) : 0;
+        }
+
+        public int getMaxBytes() {
+            return mMaxBytes;
+        }
+
+        public int getLastBytes() {
+            return mLastBytes;
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package com.mrhabibi.autonomousdialog.utils;
+
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+/**
+ * Stable binary format for bundles kept on disk across app updates, unlike Parcel.marshall whose
+ * bytes are only meant for the same platform build. Every value is written with its own type tag,
+ * so only plain values are supported: primitives, String, their arrays, ArrayList of String or
+ * Integer and nested bundles. CharSequence is kept as String, without its spans. Anything else,
+ * like Parcelable or Serializable, can't be written and the whole bundle is refused
+ */
+public class BundleFormat {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_BOOLEAN = 2;
+    private static final byte TYPE_BYTE = 3;
+    private static final byte TYPE_CHAR = 4;
+    private static final byte TYPE_SHORT = 5;
+    private static final byte TYPE_INT = 6;
+    private static final byte TYPE_LONG = 7;
+    private static final byte TYPE_FLOAT = 8;
+    private static final byte TYPE_DOUBLE = 9;
+    private static final byte TYPE_BUNDLE = 10;
+    private static final byte TYPE_STRING_ARRAY = 11;
+    private static final byte TYPE_BOOLEAN_ARRAY = 12;
+    private static final byte TYPE_BYTE_ARRAY = 13;
+    private static final byte TYPE_CHAR_ARRAY = 14;
+    private static final byte TYPE_SHORT_ARRAY = 15;
+    private static final byte TYPE_INT_ARRAY = 16;
+    private static final byte TYPE_LONG_ARRAY = 17;
+    private static final byte TYPE_FLOAT_ARRAY = 18;
+    private static final byte TYPE_DOUBLE_ARRAY = 19;
+    private static final byte TYPE_STRING_LIST = 20;
+    private static final byte TYPE_INTEGER_LIST = 21;
+
+    /**
+     * Check if the bundle can be written, before anything is written
+     *
+     * @param bundle The bundle
+     * @return The first unsupported key, or null if every value is supported
+     */
+    @Nullable
+    public static String findUnsupportedKey(@Nullable Bundle bundle) {
+        if (bundle == null) {
+            return null;
+        }
+        for (String key : bundle.keySet()) {
+            Object value = bundle.get(key);
+            if (value instanceof Bundle) {
+                String nestedKey = findUnsupportedKey((Bundle) value);
+                if (nestedKey != null) {
+                    return key + "." + nestedKey;
+                }
+            } else if (typeOf(value) < 0) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Write the bundle
+     *
+     * @param output The output
+     * @param bundle The bundle, can be null
+     * @throws IOException              If the output fails
+     * @throws IllegalArgumentException If the bundle holds unsupported value
+     */
+    public static void writeBundle(@NonNull DataOutput output, @Nullable Bundle bundle) throws IOException {
+        if (bundle == null) {
+            output.writeInt(-1);
+            return;
+        }
+        output.writeInt(bundle.size());
+        for (String key : bundle.keySet()) {
+            writeString(output, key);
+            writeValue(output, key, bundle.get(key));
+        }
+    }
+
+    /**
+     * Read the bundle
+     *
+     * @param input The input
+     * @return The bundle, null if null was written
+     * @throws IOException If the input fails or it isn't a written bundle
+     */
+    @Nullable
+    public static Bundle readBundle(@NonNull DataInput input) throws IOException {
+        int size = input.readInt();
+        if (size < 0) {
+            return null;
+        }
+        Bundle bundle = new Bundle();
+        for (int i = 0; i < size; i++) {
+            String key = readString(input);
+            readValue(input, bundle, key);
+        }
+        return bundle;
+    }
+
+    /**
+     * Write nullable string without the 64KB limit of writeUTF
+     */
+    public static void writeString(@NonNull DataOutput output, @Nullable String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    @Nullable
+    public static String readString(@NonNull DataInput input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static int typeOf(Object value) {
+        if (value == null) return TYPE_NULL;
+        if (value instanceof CharSequence) return TYPE_STRING;
+        if (value instanceof Boolean) return TYPE_BOOLEAN;
+        if (value instanceof Byte) return TYPE_BYTE;
+        if (value instanceof Character) return TYPE_CHAR;
+        if (value instanceof Short) return TYPE_SHORT;
+        if (value instanceof Integer) return TYPE_INT;
+        if (value instanceof Long) return TYPE_LONG;
+        if (value instanceof Float) return TYPE_FLOAT;
+        if (value instanceof Double) return TYPE_DOUBLE;
+        if (value instanceof Bundle) return TYPE_BUNDLE;
+        if (value instanceof CharSequence[]) return TYPE_STRING_ARRAY;
+        if (value instanceof boolean[]) return TYPE_BOOLEAN_ARRAY;
+        if (value instanceof byte[]) return TYPE_BYTE_ARRAY;
+        if (value instanceof char[]) return TYPE_CHAR_ARRAY;
+        if (value instanceof short[]) return TYPE_SHORT_ARRAY;
+        if (value instanceof int[]) return TYPE_INT_ARRAY;
+        if (value instanceof long[]) return TYPE_LONG_ARRAY;
+        if (value instanceof float[]) return TYPE_FLOAT_ARRAY;
+        if (value instanceof double[]) return TYPE_DOUBLE_ARRAY;
+        if (value instanceof ArrayList) return listTypeOf((ArrayList<?>) value);
+        return -1;
+    }
+
+    /**
+     * Empty and all-null lists are written as String list, they're read the same by both getters
+     */
+    private static int listTypeOf(ArrayList<?> list) {
+        int type = TYPE_STRING_LIST;
+        boolean typed = false;
+        for (Object item : list) {
+            if (item == null) {
+                continue;
+            }
+            int itemType = item instanceof String ? TYPE_STRING_LIST : item instanceof Integer ? TYPE_INTEGER_LIST : -1;
+            if (itemType < 0 || (typed && itemType != type)) {
+                return -1;
+            }
+            type = itemType;
+            typed = true;
+        }
+        return type;
+    }
+
+    private static void writeValue(DataOutput output, String key, Object value) throws IOException {
+        int type = typeOf(value);
+        if (type < 0) {
+            throw new IllegalArgumentException("Can't write " + value.getClass().getName() + " of " + key);
+        }
+        output.writeByte(type);
+        switch (type) {
+            case TYPE_NULL:
+                break;
+            case TYPE_STRING:
+                writeString(output, value.toString());
+                break;
+            case TYPE_BOOLEAN:
+                output.writeBoolean((Boolean) value);
+                break;
+            case TYPE_BYTE:
+                output.writeByte((Byte) value);
+                break;
+            case TYPE_CHAR:
+                output.writeChar((Character) value);
+                break;
+            case TYPE_SHORT:
+                output.writeShort((Short) value);
+                break;
+            case TYPE_INT:
+                output.writeInt((Integer) value);
+                break;
+            case TYPE_LONG:
+                output.writeLong((Long) value);
+                break;
+            case TYPE_FLOAT:
+                output.writeFloat((Float) value);
+                break;
+            case TYPE_DOUBLE:
+                output.writeDouble((Double) value);
+                break;
+            case TYPE_BUNDLE:
+                writeBundle(output, (Bundle) value);
+                break;
+            case TYPE_STRING_ARRAY: {
+                CharSequence[] array = (CharSequence[]) value;
+                output.writeInt(array.length);
+                for (CharSequence item : array) {
+                    writeString(output, item != null ? item.toString() : null);
+                }
+                break;
+            }
+            case TYPE_BOOLEAN_ARRAY: {
+                boolean[] array = (boolean[]) value;
+                output.writeInt(array.length);
+                for (boolean item : array) {
+                    output.writeBoolean(item);
+                }
+                break;
+            }
+            case TYPE_BYTE_ARRAY: {
+                byte[] array = (byte[]) value;
+                output.writeInt(array.length);
+                output.write(array);
+                break;
+            }
+            case TYPE_CHAR_ARRAY: {
+                char[] array = (char[]) value;
+                output.writeInt(array.length);
+                for (char item : array) {
+                    output.writeChar(item);
+                }
+                break;
+            }
+            case TYPE_SHORT_ARRAY: {
+                short[] array = (short[]) value;
+                output.writeInt(array.length);
+                for (short item : array) {
+                    output.writeShort(item);
+                }
+                break;
+            }
+            case TYPE_INT_ARRAY: {
+                int[] array = (int[]) value;
+                output.writeInt(array.length);
+                for (int item : array) {
+                    output.writeInt(item);
+                }
+                break;
+            }
+            case TYPE_LONG_ARRAY: {
+                long[] array = (long[]) value;
+                output.writeInt(array.length);
+                for (long item : array) {
+                    output.writeLong(item);
+                }
+                break;
+            }
+            case TYPE_FLOAT_ARRAY: {
+                float[] array = (float[]) value;
+                output.writeInt(array.length);
+                for (float item : array) {
+                    output.writeFloat(item);
+                }
+                break;
+            }
+            case TYPE_DOUBLE_ARRAY: {
+                double[] array = (double[]) value;
+                output.writeInt(array.length);
+                for (double item : array) {
+                    output.writeDouble(item);
+                }
+                break;
+            }
+            case TYPE_STRING_LIST: {
+                ArrayList<?> list = (ArrayList<?>) value;
+                output.writeInt(list.size());
+                for (Object item : list) {
+                    writeString(output, (String) item);
+                }
+                break;
+            }
+            case TYPE_INTEGER_LIST: {
+                ArrayList<?> list = (ArrayList<?>) value;
+                output.writeInt(list.size());
+                for (Object item : list) {
+                    output.writeBoolean(item != null);
+                    if (item != null) {
+                        output.writeInt((Integer) item);
+                    }
+                }
+                break;
+            }
+        }
+    }
+
+    private static void readValue(DataInput input, Bundle bundle, String key) throws IOException {
+        byte type = input.readByte();
+        switch (type) {
+            case TYPE_NULL:
+                bundle.putString(key, null);
+                break;
+            case TYPE_STRING:
+                bundle.putString(key, readString(input));
+                break;
+            case TYPE_BOOLEAN:
+                bundle.putBoolean(key, input.readBoolean());
+                break;
+            case TYPE_BYTE:
+                bundle.putByte(key, input.readByte());
+                break;
+            case TYPE_CHAR:
+                bundle.putChar(key, input.readChar());
+                break;
+            case TYPE_SHORT:
+                bundle.putShort(key, input.readShort());
+                break;
+            case TYPE_INT:
+                bundle.putInt(key, input.readInt());
+                break;
+            case TYPE_LONG:
+                bundle.putLong(key, input.readLong());
+                break;
+            case TYPE_FLOAT:
+                bundle.putFloat(key, input.readFloat());
+                break;
+            case TYPE_DOUBLE:
+                bundle.putDouble(key, input.readDouble());
+                break;
+            case TYPE_BUNDLE:
+                bundle.putBundle(key, readBundle(input));
+                break;
+            case TYPE_STRING_ARRAY: {
+                String[] array = new String[readLength(input)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = readString(input);
+                }
+                bundle.putStringArray(key, array);
+                break;
+            }
+            case TYPE_BOOLEAN_ARRAY: {
+                boolean[] array = new boolean[readLength(input)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = input.readBoolean();
+                }
+                bundle.putBooleanArray(key, array);
+                break;
+            }
+            case TYPE_BYTE_ARRAY: {
+                byte[] array = new byte[readLength(input)];
+                input.readFully(array);
+                bundle.putByteArray(key, array);
+                break;
+            }
+            case TYPE_CHAR_ARRAY: {
+                char[] array = new char[readLength(input)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = input.readChar();
+                }
+                bundle.putCharArray(key, array);
+                break;
+            }
+            case TYPE_SHORT_ARRAY: {
+                short[] array = new short[readLength(input)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = input.readShort();
+                }
+                bundle.putShortArray(key, array);
+                break;
+            }
+            case TYPE_INT_ARRAY: {
+                int[] array = new int[readLength(input)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = input.readInt();
+                }
+                bundle.putIntArray(key, array);
+                break;
+            }
+            case TYPE_LONG_ARRAY: {
+                long[] array = new long[readLength(input)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = input.readLong();
+                }
+                bundle.putLongArray(key, array);
+                break;
+            }
+            case TYPE_FLOAT_ARRAY: {
+                float[] array = new float[readLength(input)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = input.readFloat();
+                }
+                bundle.putFloatArray(key, array);
+                break;
+            }
+            case TYPE_DOUBLE_ARRAY: {
+                double[] array = new double[readLength(input)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = input.readDouble();
+                }
+                bundle.putDoubleArray(key, array);
+                break;
+            }
+            case TYPE_STRING_LIST: {
+                int size = readLength(input);
+                ArrayList<String> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readString(input));
+                }
+                bundle.putStringArrayList(key, list);
+                break;
+            }
+            case TYPE_INTEGER_LIST: {
+                int size = readLength(input);
+                ArrayList<Integer> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(input.readBoolean() ? input.readInt() : null);
+                }
+                bundle.putIntegerArrayList(key, list);
+                break;
+            }
+            default:
+                throw new IOException("Unknown value type " + type + " of " + key);
+        }
+    }
+
+    private static int readLength(DataInput input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            throw new IOException("Negative length " + length);
+        }
+        return length;
+    }
+}
@@ -0,0 +1,149 @@
+package com.mrhabibi.autonomousdialog.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The one place where AutonomousDialog gets its threads, every async feature and callback goes
+ * through these executors. Set your own executors before showing any dialog if you want the
+ * library to share your app thread pools instead of creating its own threads
+ */
+public class DialogExecutors {
+
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    private static Executor backgroundExecutor;
+    private static Executor ioExecutor;
+    private static Executor mainThreadExecutor;
+
+    /**
+     * Set while a runnable dispatched by runOnMainThread is running, so the dispatcher thread is
+     * recognized even when it isn't the looper main thread, like an inline test dispatcher
+     */
+    private static final ThreadLocal<Boolean> dispatching = new ThreadLocal<>();
+
+    /**
+     * Setter for the executor for computation works like text layout, null to use the default one
+     *
+     * @param executor The executor
+     */
+    public static synchronized void setBackgroundExecutor(@Nullable Executor executor) {
+        backgroundExecutor = executor;
+    }
+
+    /**
+     * Setter for the executor for disk works like image decoding and file writing, null to use the
+     * background executor
+     *
+     * @param executor The bounded I/O executor
+     */
+    public static synchronized void setIoExecutor(@Nullable Executor executor) {
+        ioExecutor = executor;
+    }
+
+    /**
+     * Setter for the dispatcher to the main thread, null to use the default main looper handler
+     *
+     * @param executor The main thread dispatcher
+     */
+    public static synchronized void setMainThreadExecutor(@Nullable Executor executor) {
+        mainThreadExecutor = executor;
+    }
+
+    @NonNull
+    public static synchronized Executor getBackgroundExecutor() {
+        if (backgroundExecutor == null) {
+            /*
+             * Threads are only created when needed and die after idle for a while
+             */
+            int threadCount = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1));
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new BackgroundThreadFactory());
+            executor.allowCoreThreadTimeOut(true);
+            backgroundExecutor = executor;
+        }
+        return backgroundExecutor;
+    }
+
+    @NonNull
+    public static synchronized Executor getIoExecutor() {
+        if (ioExecutor == null) {
+            return getBackgroundExecutor();
+        }
+        return ioExecutor;
+    }
+
+    @NonNull
+    public static synchronized Executor getMainThreadExecutor() {
+        if (mainThreadExecutor == null) {
+            mainThreadExecutor = new Executor() {
+                private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+                @Override
+                public void execute(@NonNull Runnable runnable) {
+                    mHandler.post(runnable);
+                }
+            };
+        }
+        return mainThreadExecutor;
+    }
+
+    /**
+     * Run immediately if it's already on the main thread or inside the main thread dispatcher,
+     * otherwise dispatch it, it runs later unless the dispatcher runs it inline
+     *
+     * @param runnable The runnable
+     */
+    public static void runOnMainThread(@NonNull final Runnable runnable) {
+        if (isMainThread() || Boolean.TRUE.equals(dispatching.get())) {
+            runnable.run();
+            return;
+        }
+        getMainThreadExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                Boolean previous = dispatching.get();
+                dispatching.set(Boolean.TRUE);
+                try {
+                    runnable.run();
+                } finally {
+                    if (previous == null) {
+                        dispatching.remove();
+                    } else {
+                        dispatching.set(previous);
+                    }
+                }
+            }
+        });
+    }
+
+    public static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    private static class BackgroundThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NonNull final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "AutonomousDialog-" + mCount.incrementAndGet());
+        }
+    }
+}
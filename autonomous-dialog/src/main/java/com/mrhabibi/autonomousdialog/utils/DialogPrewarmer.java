@@ -0,0 +1,186 @@
+package com.mrhabibi.autonomousdialog.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+
+import com.mrhabibi.autonomousdialog.AutonomousDialog;
+import com.mrhabibi.autonomousdialog.instrumentation.DialogInstrumentation;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Does the one time work of the first dialog in a process ahead of time, the classes are loaded
+ * on background thread, then the alert theme is resolved and the alert layout is inflated once
+ * when the main thread is idle. The first dialog of a process that isn't prewarmed is measured and
+ * kept as the baseline, and the first dialog of a prewarmed process is measured against it, the
+ * difference is reported to DialogInstrumentation listener as the time saved
+ */
+public class DialogPrewarmer {
+
+    /**
+     * Classes the first dialog loads, the ones missing in this support library version are skipped
+     */
+    private static final String[] WARM_CLASSES = {
+            "com.mrhabibi.autonomousdialog.DialogActivity",
+            "com.mrhabibi.autonomousdialog.DialogBuilder",
+            "com.mrhabibi.autonomousdialog.DialogResult",
+            "com.mrhabibi.autonomousdialog.wrapper.BasicDialogWrapper",
+            "android.support.v7.app.AlertDialog",
+            "android.support.v7.app.AlertDialog$Builder",
+            "android.support.v7.app.AlertController",
+            "android.support.v7.app.AlertController$AlertParams",
+            "android.support.v7.app.AppCompatDelegate",
+            "android.support.v7.app.AppCompatDialog",
+            "android.support.v7.widget.AlertDialogLayout",
+            "android.support.v7.widget.ButtonBarLayout",
+            "android.support.v7.widget.DialogTitle"
+    };
+
+    private static final String PREFERENCES_NAME = "autonomous-dialog-prewarm";
+    private static final String BASELINE_KEY = "coldFirstShowMillis";
+
+    /**
+     * Saved time reported when there's no baseline measured yet
+     */
+    public static final long UNKNOWN = -1;
+
+    private static final AtomicBoolean started = new AtomicBoolean();
+    private static final AtomicBoolean firstShown = new AtomicBoolean();
+
+    private static volatile boolean warm;
+    private static volatile long spentMillis;
+
+    /**
+     * The first show time of a process that isn't prewarmed, read on background thread while
+     * prewarming
+     */
+    private static volatile long baselineMillis = UNKNOWN;
+
+    /**
+     * Prewarm once per process, the next calls do nothing
+     *
+     * @param context The God object
+     */
+    public static void prewarm(@NonNull Context context) {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+
+        final Context applicationContext = context.getApplicationContext();
+        DialogExecutors.getBackgroundExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                baselineMillis = getPreferences(applicationContext).getLong(BASELINE_KEY, UNKNOWN);
+                final long classLoadingMillis = loadClasses();
+                DialogExecutors.runOnMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        whenIdle(new Runnable() {
+                            @Override
+                            public void run() {
+                                inflate(applicationContext, classLoadingMillis);
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    public static boolean isWarm() {
+        return warm;
+    }
+
+    /**
+     * Used by the host when the first dialog of the process is shown, it's kept as the baseline
+     * when the process isn't prewarmed, otherwise the prewarm is reported with the time saved.
+     * A dialog shown while prewarming is neither
+     *
+     * @param context         The God object
+     * @param firstShowMillis Millis from the host creation to the dialog shown
+     */
+    public static void onFirstShown(@NonNull Context context, final long firstShowMillis) {
+        if (!firstShown.compareAndSet(false, true)) {
+            return;
+        }
+        if (warm) {
+            long baseline = baselineMillis;
+            report(spentMillis, baseline != UNKNOWN ? Math.max(0, baseline - firstShowMillis) : UNKNOWN);
+        } else if (!started.get()) {
+            final Context applicationContext = context.getApplicationContext();
+            DialogExecutors.getIoExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    getPreferences(applicationContext).edit().putLong(BASELINE_KEY, firstShowMillis).apply();
+                }
+            });
+        }
+    }
+
+    private static long loadClasses() {
+        long start = SystemClock.uptimeMillis();
+        ClassLoader classLoader = DialogPrewarmer.class.getClassLoader();
+        for (String className : WARM_CLASSES) {
+            try {
+                Class.forName(className, true, classLoader);
+            } catch (ClassNotFoundException | LinkageError ignored) {
+            }
+        }
+        return SystemClock.uptimeMillis() - start;
+    }
+
+    private static void whenIdle(final Runnable runnable) {
+        if (!DialogExecutors.isMainThread()) {
+            /*
+             * Custom main thread executor that isn't on the looper, there's no idle to wait for
+             */
+            runnable.run();
+            return;
+        }
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                runnable.run();
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Resolve the theme and inflate the alert layout once, the layout is dropped, what's kept is
+     * the loaded classes, the parsed layout and the resolved theme
+     */
+    private static void inflate(Context applicationContext, long classLoadingMillis) {
+        try {
+            long start = SystemClock.uptimeMillis();
+            ContextThemeWrapper themedContext = new ContextThemeWrapper(applicationContext,
+                    com.mrhabibi.autonomousdialog.R.style.AutonomousAlertDialog);
+            themedContext.getTheme();
+            LayoutInflater.from(themedContext).inflate(com.mrhabibi.autonomousdialog.R.layout.abc_alert_dialog_material, null, false);
+            spentMillis = classLoadingMillis + SystemClock.uptimeMillis() - start;
+            warm = true;
+            DialogUtils.log("Prewarmed in " + spentMillis + "ms", null);
+        } catch (RuntimeException e) {
+            Log.w(AutonomousDialog.TAG, "Failed to prewarm dialog", e);
+        }
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static void report(long spentMillis, long savedMillis) {
+        DialogUtils.log("First dialog shown after prewarm of " + spentMillis + "ms, saved " + savedMillis + "ms", null);
+        DialogInstrumentation.Listener listener = DialogInstrumentation.getListener();
+        if (listener != null) {
+            listener.onPrewarmed(spentMillis, savedMillis);
+        }
+    }
+}
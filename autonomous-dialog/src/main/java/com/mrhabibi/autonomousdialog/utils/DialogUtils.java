@@ -1,8 +1,11 @@
 package com.mrhabibi.autonomousdialog.utils;
 
+import android.app.ActivityManager;
 import android.content.Context;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v4.app.ActivityManagerCompat;
+import android.util.DisplayMetrics;
 import android.util.Log;
 import android.util.TypedValue;
 
@@ -15,6 +18,12 @@ import com.mrhabibi.autonomousdialog.AutonomousDialog;
 
 public class DialogUtils {
 
+    /**
+     * Maximum width of AppCompat alert dialog and its content padding
+     */
+    private static final int DIALOG_MAX_WIDTH_DP = 560;
+    private static final int DIALOG_CONTENT_PADDING_DP = 24;
+
     public static int dpToPx(@NonNull Context context, int dp) {
         return (int) dpToPx(context, (float) dp);
     }
@@ -23,6 +32,42 @@ public class DialogUtils {
         return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, dp, context.getResources().getDisplayMetrics());
     }
 
+    /**
+     * Estimate the alert dialog width, the display width capped by dialog maximum width
+     *
+     * @param context The God object
+     * @return The estimated width
+     */
+    public static int estimateDialogWidth(@NonNull Context context) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        return Math.min(metrics.widthPixels, dpToPx(context, DIALOG_MAX_WIDTH_DP));
+    }
+
+    /**
+     * Estimate the alert dialog content width, the dialog width without the content padding
+     *
+     * @param context The God object
+     * @return The estimated width
+     */
+    public static int estimateDialogContentWidth(@NonNull Context context) {
+        return estimateDialogWidth(context) - 2 * dpToPx(context, DIALOG_CONTENT_PADDING_DP);
+    }
+
+    /**
+     * Resolve the presentation profile of the dialog
+     *
+     * @param context      The God object
+     * @param presentation One of AutonomousDialog.PRESENTATION_*
+     * @return Should the dialog use the low latency profile
+     */
+    public static boolean isLowLatency(@NonNull Context context, int presentation) {
+        if (presentation == AutonomousDialog.PRESENTATION_AUTO) {
+            ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+            return activityManager != null && ActivityManagerCompat.isLowRamDevice(activityManager);
+        }
+        return presentation == AutonomousDialog.PRESENTATION_LOW_LATENCY;
+    }
+
     public static void log(String activity, @Nullable String identifier) {
         Log.d(AutonomousDialog.TAG, activity + " | " + (identifier != null ? identifier : "no identifier"));
     }
@@ -6,9 +6,6 @@ import android.support.v4.app.Fragment;
 
 import com.mrhabibi.autonomousdialog.wrapper.DialogWrapper;
 
-import java.util.HashMap;
-import java.util.UUID;
-
 import static com.mrhabibi.autonomousdialog.DialogActivity.ALERTDIALOG_ID_PREFIX;
 import static com.mrhabibi.autonomousdialog.DialogActivity.DIALOGFRAGMENT_ID_PREFIX;
 
@@ -21,24 +18,37 @@ import static com.mrhabibi.autonomousdialog.DialogActivity.DIALOGFRAGMENT_ID_PRE
  */
 public class FragmentPasser {
 
-    private static final HashMap<String, Fragment> passedFragment = new HashMap<>();
+    private static final HandoffStore<Fragment> passedFragment = new HandoffStore<>();
 
     @Nullable
     public static Fragment getFragment(String getterId) {
-        if (getterId != null && passedFragment.containsKey(getterId)) {
-            Fragment fragment = passedFragment.get(getterId);
-            passedFragment.remove(getterId);
-            return fragment;
-        }
-        return null;
+        return passedFragment.take(getterId);
     }
 
     public static String setFragment(@NonNull Fragment fragment) {
         String prefix = fragment instanceof DialogWrapper ? ALERTDIALOG_ID_PREFIX : DIALOGFRAGMENT_ID_PREFIX;
-        String fragmentGetterId = prefix + UUID.randomUUID().toString();
-        passedFragment.put(fragmentGetterId, fragment);
+        return passedFragment.put(prefix, fragment);
+    }
+
+    /**
+     * Drop the fragment that's never taken, like when its dialog is dismissed before its host
+     * came up
+     *
+     * @param getterId The id
+     * @return True if the fragment was still kept
+     */
+    public static boolean release(String getterId) {
+        return passedFragment.take(getterId) != null;
+    }
 
-        return fragmentGetterId;
+    /**
+     * Drop the fragments that are never taken for too long, like when the host failed to start
+     *
+     * @param ageMillis The max age
+     * @return Count of dropped fragments
+     */
+    public static int releaseOlderThan(long ageMillis) {
+        return passedFragment.releaseOlderThan(ageMillis);
     }
 
 }
@@ -0,0 +1,191 @@
+package com.mrhabibi.autonomousdialog.utils;
+
+import android.app.ActivityManager;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.support.annotation.DrawableRes;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+import android.widget.ImageView;
+
+import com.mrhabibi.autonomousdialog.AutonomousDialog;
+import com.mrhabibi.autonomousdialog.R;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Utility class that used to load dialog images, the image is decoded on background thread and
+ * downsampled to the target size, then kept in the shared memory cache, so showing the same
+ * dialog again or rotating it won't decode the image again
+ */
+public class ImageLoader {
+
+    /**
+     * The cache takes this fraction of the app memory class
+     */
+    private static final int CACHE_MEMORY_DIVIDER = 8;
+
+    private static LruCache<String, Bitmap> bitmaps;
+
+    /**
+     * Make uri from drawable resource, so it can be loaded like other images
+     *
+     * @param context The God object
+     * @param resId   The drawable resource id
+     * @return The uri
+     */
+    public static Uri toUri(@NonNull Context context, @DrawableRes int resId) {
+        return new Uri.Builder()
+                .scheme(ContentResolver.SCHEME_ANDROID_RESOURCE)
+                .authority(context.getPackageName())
+                .appendPath(String.valueOf(resId))
+                .build();
+    }
+
+    public static Uri toUri(@NonNull File file) {
+        return Uri.fromFile(file);
+    }
+
+    /**
+     * Load the image into image view, set immediately if it's already cached, otherwise decoded on
+     * background thread. If the view is bound to another image before decoding finished, the
+     * result is only cached
+     *
+     * @param imageView    The image view
+     * @param uri          The image uri
+     * @param targetWidth  The target width
+     * @param targetHeight The target height, 0 to follow the width
+     */
+    public static void load(@NonNull ImageView imageView, @NonNull final Uri uri, final int targetWidth, final int targetHeight) {
+        final Context context = imageView.getContext().getApplicationContext();
+        final String key = makeKey(uri, targetWidth, targetHeight);
+
+        Bitmap cached = getCache(context).get(key);
+        imageView.setTag(R.id.image_loader_key, key);
+        if (cached != null) {
+            imageView.setImageBitmap(cached);
+            return;
+        }
+        imageView.setImageDrawable(null);
+
+        final ImageView target = imageView;
+        DialogExecutors.getIoExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap = decode(context, uri, targetWidth, targetHeight);
+                if (bitmap == null) {
+                    return;
+                }
+                getCache(context).put(key, bitmap);
+                DialogExecutors.getMainThreadExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (key.equals(target.getTag(R.id.image_loader_key))) {
+                            target.setImageBitmap(bitmap);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Remove all cached images
+     */
+    public static synchronized void clear() {
+        if (bitmaps != null) {
+            bitmaps.evictAll();
+        }
+    }
+
+    /**
+     * Shrink the cache to the fraction of its max size, the least recently used images go first
+     *
+     * @param fraction 0 to remove all, 0.5 to keep the half
+     * @return Count of removed images
+     */
+    public static synchronized int trimToFraction(float fraction) {
+        if (bitmaps == null) {
+            return 0;
+        }
+        int count = bitmaps.snapshot().size();
+        bitmaps.trimToSize((int) (bitmaps.maxSize() * fraction));
+        return count - bitmaps.snapshot().size();
+    }
+
+    /**
+     * Decode the image with the nearest power of two sample size that is still bigger than the
+     * target size
+     */
+    @Nullable
+    private static Bitmap decode(Context context, Uri uri, int targetWidth, int targetHeight) {
+        ContentResolver resolver = context.getContentResolver();
+        InputStream inputStream = null;
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            inputStream = resolver.openInputStream(uri);
+            BitmapFactory.decodeStream(inputStream, null, options);
+            closeQuietly(inputStream);
+
+            options.inSampleSize = calculateSampleSize(options.outWidth, options.outHeight, targetWidth, targetHeight);
+            options.inJustDecodeBounds = false;
+            inputStream = resolver.openInputStream(uri);
+            return BitmapFactory.decodeStream(inputStream, null, options);
+        } catch (IOException | SecurityException e) {
+            Log.w(AutonomousDialog.TAG, "Failed to load image " + uri, e);
+            return null;
+        } finally {
+            closeQuietly(inputStream);
+        }
+    }
+
+    private static int calculateSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int sampleSize = 1;
+        if (width <= 0 || height <= 0 || targetWidth <= 0) {
+            return sampleSize;
+        }
+        while (width / (sampleSize * 2) >= targetWidth
+                && (targetHeight <= 0 || height / (sampleSize * 2) >= targetHeight)) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static String makeKey(Uri uri, int targetWidth, int targetHeight) {
+        return uri.toString() + '@' + targetWidth + 'x' + targetHeight;
+    }
+
+    private static void closeQuietly(@Nullable InputStream inputStream) {
+        if (inputStream != null) {
+            try {
+                inputStream.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Size the cache from the device memory class, so low memory devices keep less images
+     */
+    private static synchronized LruCache<String, Bitmap> getCache(Context context) {
+        if (bitmaps == null) {
+            ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+            int maxBytes = activityManager.getMemoryClass() * 1024 * 1024 / CACHE_MEMORY_DIVIDER;
+            bitmaps = new LruCache<String, Bitmap>(maxBytes) {
+                @Override
+                protected int sizeOf(String key, Bitmap bitmap) {
+                    return bitmap.getRowBytes() * bitmap.getHeight();
+                }
+            };
+        }
+        return bitmaps;
+    }
+}
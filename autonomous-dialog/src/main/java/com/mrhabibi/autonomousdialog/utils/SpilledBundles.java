@@ -0,0 +1,363 @@
+package com.mrhabibi.autonomousdialog.utils;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Parcel;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.mrhabibi.autonomousdialog.AutonomousDialog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.UUID;
+
+/**
+ * Keeps the oversized params and arguments out of the intent and the saved state, they can't cross
+ * the binder. The bundle is kept in memory and written to a memory mapped file for the process
+ * death before its stub is handed out, and only the small stub with its token travels instead. The
+ * stub is read back lazily by DialogActivity.getParams, DialogWrapper.getDialogArguments and
+ * DialogResult.getParams.
+ * The files hold raw Parcel bytes, only readable by the same app build on the same platform build,
+ * so they must not outlive them. The stubs don't, the saved states are dropped on app and system
+ * updates, and the files are kept in a directory of the app and platform build, the directories of
+ * other builds are deleted at the first spill of the process.
+ * A params file is released by DialogResult.getParams, or by the host when its result has no
+ * receiver, the ones never read are swept when they're older than a day
+ */
+public class SpilledBundles {
+
+    public static final String SPILL_TOKEN_LABEL = "spillToken";
+    public static final String SPILL_PATH_LABEL = "spillPath";
+    public static final String SPILL_SIZE_LABEL = "spillSize";
+
+    /**
+     * Bundles bigger than this are spilled. Spilling runs on the main thread in Builder.show(),
+     * every bundle is parcelled once just to be sized, and a spilled one is marshalled and written
+     * synchronously, so a lower threshold costs a copy and a file write per show
+     */
+    public static final int DEFAULT_THRESHOLD_BYTES = 100 * 1024;
+
+    /**
+     * Spilled files older than this are not going to be read anymore
+     */
+    private static final long STALE_SPILL_MILLIS = 24 * 60 * 60 * 1000;
+
+    private static final String SPILL_DIRECTORY = "autonomous-dialog/spill";
+    private static final String SPILL_EXTENSION = ".bundle";
+
+    /**
+     * The memory copies of the bundles spilled by this process
+     */
+    private static final HashMap<String, Bundle> entries = new HashMap<>();
+    private static int threshold = DEFAULT_THRESHOLD_BYTES;
+    private static File buildDirectory;
+
+    /**
+     * Setter for the size from which bundles are spilled, Integer.MAX_VALUE to never spill
+     *
+     * @param maxBytes The max parcelled size that stays inline
+     */
+    public static void setThreshold(int maxBytes) {
+        threshold = maxBytes;
+    }
+
+    public static int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Spill the bundle if it's oversized
+     *
+     * @param context The God object
+     * @param bundle  The bundle
+     * @return The stub to pass instead, or the bundle itself if it's small enough or can't be
+     * written, like when it holds file descriptors
+     */
+    @Nullable
+    public static Bundle spill(@NonNull Context context, @Nullable Bundle bundle) {
+        if (bundle == null || isSpilled(bundle)) {
+            return bundle;
+        }
+
+        byte[] bytes;
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeBundle(bundle);
+            if (parcel.dataSize() <= threshold) {
+                return bundle;
+            }
+            bytes = parcel.marshall();
+        } catch (RuntimeException e) {
+            Log.w(AutonomousDialog.TAG, "Can't spill the oversized bundle", e);
+            return bundle;
+        } finally {
+            parcel.recycle();
+        }
+
+        /*
+         * Written before the stub is handed out, the stub may be all that's left after the
+         * process death
+         */
+        String token = UUID.randomUUID().toString();
+        File file = new File(getBuildDirectory(context), token + SPILL_EXTENSION);
+        if (!write(file, bytes)) {
+            return bundle;
+        }
+        synchronized (entries) {
+            entries.put(token, bundle);
+        }
+
+        DialogUtils.log("Spilling " + bytes.length + " Bytes Bundle", token);
+
+        Bundle stub = new Bundle();
+        stub.putString(SPILL_TOKEN_LABEL, token);
+        stub.putString(SPILL_PATH_LABEL, file.getAbsolutePath());
+        stub.putInt(SPILL_SIZE_LABEL, bytes.length);
+        return stub;
+    }
+
+    /**
+     * Is if the bundle is a stub of a spilled bundle
+     *
+     * @param bundle The bundle
+     * @return Is if spilled
+     */
+    public static boolean isSpilled(@Nullable Bundle bundle) {
+        return bundle != null && bundle.containsKey(SPILL_TOKEN_LABEL);
+    }
+
+    /**
+     * Read the spilled bundle, the memory copy if this process still has it, otherwise the file,
+     * which isn't kept in memory, the reader keeps what it has read
+     *
+     * @param bundle The stub, or a bundle that isn't spilled
+     * @return The spilled bundle, the bundle itself if it isn't a stub, or null if it's gone
+     */
+    @Nullable
+    public static Bundle peek(@Nullable Bundle bundle) {
+        if (!isSpilled(bundle)) {
+            return bundle;
+        }
+
+        Bundle spilled;
+        synchronized (entries) {
+            spilled = entries.get(bundle.getString(SPILL_TOKEN_LABEL));
+        }
+        return spilled != null ? spilled : read(bundle);
+    }
+
+    /**
+     * Read the spilled bundle and release it, for the last reader
+     *
+     * @param bundle The stub, or a bundle that isn't spilled
+     * @return The spilled bundle, the bundle itself if it isn't a stub, or null if it's gone
+     */
+    @Nullable
+    public static Bundle take(@Nullable Bundle bundle) {
+        if (!isSpilled(bundle)) {
+            return bundle;
+        }
+
+        Bundle rehydrated = peek(bundle);
+        release(bundle);
+        return rehydrated;
+    }
+
+    /**
+     * Drop the memory copy, the file is kept for the next reader
+     *
+     * @param bundle The stub
+     */
+    public static void evict(@Nullable Bundle bundle) {
+        if (!isSpilled(bundle)) {
+            return;
+        }
+        synchronized (entries) {
+            entries.remove(bundle.getString(SPILL_TOKEN_LABEL));
+        }
+    }
+
+    /**
+     * Drop the spilled bundle and its file
+     *
+     * @param bundle The stub
+     */
+    public static void release(@Nullable Bundle bundle) {
+        if (!isSpilled(bundle)) {
+            return;
+        }
+        synchronized (entries) {
+            entries.remove(bundle.getString(SPILL_TOKEN_LABEL));
+        }
+        final String path = bundle.getString(SPILL_PATH_LABEL);
+        if (path == null) {
+            return;
+        }
+        DialogExecutors.getIoExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                new File(path).delete();
+            }
+        });
+    }
+
+    /**
+     * Drop the memory copies, they're read again from the files when needed
+     *
+     * @return Count of dropped bundles
+     */
+    public static int releaseMemory() {
+        synchronized (entries) {
+            int released = entries.size();
+            entries.clear();
+            return released;
+        }
+    }
+
+    /**
+     * Delete the spilled files that are never read for too long, the memory copies are kept
+     *
+     * @param context   The God object
+     * @param ageMillis The max age
+     * @return Count of deleted files
+     */
+    public static int releaseOlderThan(@NonNull Context context, long ageMillis) {
+        return sweep(getBuildDirectory(context), ageMillis);
+    }
+
+    private static boolean write(File file, byte[] bytes) {
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(AutonomousDialog.TAG, "Can't create the spill directory");
+            return false;
+        }
+
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            randomAccessFile.setLength(bytes.length);
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, bytes.length);
+            buffer.put(bytes);
+
+            /*
+             * No force, the page cache survives the process death, which is all the file is for
+             */
+            return true;
+        } catch (IOException e) {
+            Log.w(AutonomousDialog.TAG, "Can't write the spilled bundle", e);
+            file.delete();
+            return false;
+        } finally {
+            closeQuietly(randomAccessFile);
+        }
+    }
+
+    @Nullable
+    private static Bundle read(Bundle stub) {
+        String path = stub.getString(SPILL_PATH_LABEL);
+        int size = stub.getInt(SPILL_SIZE_LABEL);
+        File file = path != null ? new File(path) : null;
+        if (file == null || !file.isFile()) {
+            Log.w(AutonomousDialog.TAG, "The spilled bundle " + stub.getString(SPILL_TOKEN_LABEL) + " is gone");
+            return null;
+        }
+
+        RandomAccessFile randomAccessFile = null;
+        Parcel parcel = Parcel.obtain();
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+            byte[] bytes = new byte[size];
+            buffer.get(bytes);
+            parcel.unmarshall(bytes, 0, size);
+            parcel.setDataPosition(0);
+            return parcel.readBundle(SpilledBundles.class.getClassLoader());
+        } catch (IOException | RuntimeException e) {
+            Log.w(AutonomousDialog.TAG, "Can't read the spilled bundle " + path, e);
+            return null;
+        } finally {
+            parcel.recycle();
+            closeQuietly(randomAccessFile);
+        }
+    }
+
+    /**
+     * The spill directory of this app and platform build, the directories of other builds and the
+     * stale files of this one are deleted on the first call of the process
+     */
+    private static synchronized File getBuildDirectory(Context context) {
+        if (buildDirectory != null) {
+            return buildDirectory;
+        }
+
+        long lastUpdateTime = 0;
+        try {
+            lastUpdateTime = context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException | RuntimeException e) {
+            Log.w(AutonomousDialog.TAG, "Can't tell the app build of the spilled bundles", e);
+        }
+        final String build = Integer.toHexString((Build.FINGERPRINT + "/" + lastUpdateTime).hashCode());
+        final File spillDirectory = new File(context.getFilesDir(), SPILL_DIRECTORY);
+        final File directory = new File(spillDirectory, build);
+        buildDirectory = directory;
+
+        DialogExecutors.getIoExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                File[] files = spillDirectory.listFiles();
+                if (files == null) {
+                    return;
+                }
+                for (File file : files) {
+                    if (!file.getName().equals(build)) {
+                        delete(file);
+                    }
+                }
+                sweep(directory, STALE_SPILL_MILLIS);
+            }
+        });
+        return directory;
+    }
+
+    private static int sweep(File directory, long ageMillis) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        long deadline = System.currentTimeMillis() - ageMillis;
+        int deleted = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(SPILL_EXTENSION) && file.lastModified() < deadline && file.delete()) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static void closeQuietly(RandomAccessFile randomAccessFile) {
+        if (randomAccessFile != null) {
+            try {
+                randomAccessFile.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
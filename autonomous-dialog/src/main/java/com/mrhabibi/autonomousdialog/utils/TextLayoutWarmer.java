@@ -0,0 +1,206 @@
+package com.mrhabibi.autonomousdialog.utils;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Typeface;
+import android.support.annotation.NonNull;
+import android.support.annotation.StyleRes;
+import android.support.v4.util.LruCache;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+import android.view.ContextThemeWrapper;
+
+import com.mrhabibi.autonomousdialog.R;
+
+/**
+ * Utility class that used to warm the framework's shared text layout cache with long dialog texts
+ * on background thread before the dialog is built. The text is measured once with the paint of the
+ * alert dialog text appearance and the layout is thrown away, so when the dialog's TextView lays
+ * out the same text on the main thread, the expensive measurement is already cached by the
+ * framework. It's best effort, a theme that changes the alert text appearance gets nothing warmed
+ */
+public class TextLayoutWarmer {
+
+    /**
+     * Text appearances of AppCompat alert dialog title and message
+     */
+    public static final int TITLE_TEXT_APPEARANCE = R.style.TextAppearance_AppCompat_Title;
+    public static final int MESSAGE_TEXT_APPEARANCE = R.style.TextAppearance_AppCompat_Subhead;
+
+    /**
+     * Width is rounded down to this step, so slightly different widths are warmed once
+     */
+    private static final int WIDTH_BUCKET_DP = 32;
+
+    private static final int DEFAULT_TEXT_SIZE_SP = 16;
+
+    /**
+     * Sorted by id as obtainStyledAttributes needs, the font family attribute is only there since
+     * Jelly Bean and simply isn't resolved below it, like TextView does
+     */
+    private static final int[] TEXT_APPEARANCE_ATTRS = {android.R.attr.textSize, android.R.attr.typeface,
+            android.R.attr.textStyle, android.R.attr.fontFamily};
+
+    /**
+     * Values of the typeface attribute
+     */
+    private static final int TYPEFACE_SANS = 1;
+    private static final int TYPEFACE_SERIF = 2;
+    private static final int TYPEFACE_MONOSPACE = 3;
+
+    /**
+     * Texts that are already warmed, only their hashes are kept
+     */
+    private static final LruCache<Key, Boolean> warmedTexts = new LruCache<>(64);
+
+    /**
+     * Warm the text with dialog content width estimated from the display
+     *
+     * @param context        The God object
+     * @param text           The text
+     * @param textAppearance The text appearance it's shown with
+     */
+    public static void warm(@NonNull Context context, @NonNull CharSequence text, @StyleRes int textAppearance) {
+        warm(context, text, textAppearance, DialogUtils.estimateDialogContentWidth(context));
+    }
+
+    /**
+     * Measure the text on background thread, does nothing if it's already warmed
+     *
+     * @param context        The God object
+     * @param text           The text
+     * @param textAppearance The text appearance it's shown with
+     * @param widthPx        The available width
+     */
+    public static void warm(@NonNull Context context, @NonNull final CharSequence text, @StyleRes int textAppearance, int widthPx) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        final int bucketWidth = toBucket(metrics, widthPx);
+        if (text.length() == 0 || bucketWidth <= 0) {
+            return;
+        }
+
+        final TextPaint paint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+        Key key = resolvePaint(context, textAppearance, metrics, paint, text, bucketWidth);
+        if (warmedTexts.get(key) != null) {
+            return;
+        }
+        warmedTexts.put(key, Boolean.TRUE);
+
+        DialogExecutors.getBackgroundExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                new StaticLayout(text, paint, bucketWidth, Layout.Alignment.ALIGN_NORMAL, 1f, 0f, true);
+            }
+        });
+    }
+
+    /**
+     * Forget the warmed texts, they're measured again on the next warm
+     *
+     * @return Count of forgotten texts
+     */
+    public static int clear() {
+        int count = warmedTexts.snapshot().size();
+        warmedTexts.evictAll();
+        return count;
+    }
+
+    /**
+     * Set up the paint from the text appearance resolved with the alert dialog theme, the typeface
+     * is picked the same way TextView does, so the measured glyphs are the ones shown
+     *
+     * @return Key of the text measured with the paint
+     */
+    private static Key resolvePaint(Context context, @StyleRes int textAppearance, DisplayMetrics metrics,
+                                    TextPaint paint, CharSequence text, int width) {
+        Context themedContext = new ContextThemeWrapper(context, R.style.AutonomousAlertDialog);
+        TypedArray attributes = themedContext.obtainStyledAttributes(textAppearance, TEXT_APPEARANCE_ATTRS);
+        float textSize;
+        int typefaceIndex;
+        int textStyle;
+        String fontFamily;
+        try {
+            textSize = attributes.getDimension(0,
+                    TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, DEFAULT_TEXT_SIZE_SP, metrics));
+            typefaceIndex = attributes.getInt(1, 0);
+            textStyle = attributes.getInt(2, Typeface.NORMAL);
+            fontFamily = attributes.getString(3);
+        } finally {
+            attributes.recycle();
+        }
+        paint.density = metrics.density;
+        paint.setTextSize(textSize);
+        paint.setTypeface(resolveTypeface(fontFamily, typefaceIndex, textStyle));
+        return new Key(text, textSize, fontFamily, typefaceIndex, textStyle, width);
+    }
+
+    private static Typeface resolveTypeface(String fontFamily, int typefaceIndex, int textStyle) {
+        if (fontFamily != null) {
+            Typeface typeface = Typeface.create(fontFamily, textStyle);
+            if (typeface != null) {
+                return typeface;
+            }
+        }
+        switch (typefaceIndex) {
+            case TYPEFACE_SANS:
+                return Typeface.create(Typeface.SANS_SERIF, textStyle);
+            case TYPEFACE_SERIF:
+                return Typeface.create(Typeface.SERIF, textStyle);
+            case TYPEFACE_MONOSPACE:
+                return Typeface.create(Typeface.MONOSPACE, textStyle);
+            default:
+                return Typeface.defaultFromStyle(textStyle);
+        }
+    }
+
+    private static int toBucket(DisplayMetrics metrics, int widthPx) {
+        int bucket = Math.max(1, (int) (WIDTH_BUCKET_DP * metrics.density));
+        return widthPx / bucket * bucket;
+    }
+
+    private static class Key {
+        final int textHash;
+        final int textLength;
+        final float textSize;
+        final String fontFamily;
+        final int typefaceIndex;
+        final int textStyle;
+        final int width;
+
+        Key(CharSequence text, float textSize, String fontFamily, int typefaceIndex, int textStyle, int width) {
+            this.textHash = text.toString().hashCode();
+            this.textLength = text.length();
+            this.textSize = textSize;
+            this.fontFamily = fontFamily;
+            this.typefaceIndex = typefaceIndex;
+            this.textStyle = textStyle;
+            this.width = width;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return textHash == key.textHash && textLength == key.textLength && width == key.width
+                    && textStyle == key.textStyle && typefaceIndex == key.typefaceIndex
+                    && Float.compare(key.textSize, textSize) == 0
+                    && (fontFamily != null ? fontFamily.equals(key.fontFamily) : key.fontFamily == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = textHash;
+            result = 31 * result + textLength;
+            result = 31 * result + Float.floatToIntBits(textSize);
+            result = 31 * result + (fontFamily != null ? fontFamily.hashCode() : 0);
+            result = 31 * result + typefaceIndex;
+            result = 31 * result + textStyle;
+            result = 31 * result + width;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.mrhabibi.autonomousdialog.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.UUID;
+
+/**
+ * Bounded line buffer for streaming text into a dialog, like sync logs or command output.
+ * Lines can be appended from any thread, they are collected into a pending queue and moved into
+ * the ring buffer on the main thread in batches, so the ring itself is only touched by the main
+ * thread and the adapter reading it never sees a half-updated state. Both the pending queue and
+ * the ring are capped by the capacity, so memory stays constant no matter how much is streamed.
+ * Streams are kept staticly by id just like FragmentPasser, because they can't be passed via
+ * intent either, so don't forget to close it when it's not used anymore
+ */
+public class TextStream {
+
+    public static final int DEFAULT_CAPACITY = 500;
+
+    private static final HashMap<String, TextStream> openedStreams = new HashMap<>();
+
+    private final String mStreamId;
+    private final int mCapacity;
+
+    /**
+     * Lines appended from any thread waiting to be drained on the main thread, guarded by itself
+     */
+    private final ArrayDeque<CharSequence> mPendingLines = new ArrayDeque<>();
+    private boolean mDrainScheduled;
+
+    /**
+     * The ring is wiped by the next drain, before it moves the lines appended after the clear
+     */
+    private boolean mClearPending;
+
+    /**
+     * The ring buffer, main thread only
+     */
+    private final CharSequence[] mLines;
+    private int mHead;
+    private int mSize;
+
+    private final ArrayList<OnStreamChangedListener> mListeners = new ArrayList<>();
+
+    private final Runnable mDrainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    private TextStream(String streamId, int capacity) {
+        this.mStreamId = streamId;
+        this.mCapacity = capacity;
+        this.mLines = new CharSequence[capacity];
+    }
+
+    /**
+     * Open new stream with default capacity
+     *
+     * @return The stream
+     */
+    public static TextStream open() {
+        return open(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Open new stream that keeps only the last lines as much as the capacity
+     *
+     * @param capacity Maximum kept lines
+     * @return The stream
+     */
+    public static TextStream open(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("TextStream capacity must be greater than zero!");
+        }
+        TextStream stream = new TextStream(UUID.randomUUID().toString(), capacity);
+        synchronized (openedStreams) {
+            openedStreams.put(stream.mStreamId, stream);
+        }
+        return stream;
+    }
+
+    @Nullable
+    public static TextStream get(String streamId) {
+        if (streamId == null) {
+            return null;
+        }
+        synchronized (openedStreams) {
+            return openedStreams.get(streamId);
+        }
+    }
+
+    public String getStreamId() {
+        return mStreamId;
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * Append text to the stream, multi line text will be split per line, can be called from any
+     * thread
+     *
+     * @param text The text
+     */
+    public void append(@NonNull CharSequence text) {
+        synchronized (mPendingLines) {
+            int start = 0;
+            int length = text.length();
+            for (int i = 0; i < length; i++) {
+                if (text.charAt(i) == '\n') {
+                    offerPendingLine(text.subSequence(start, i));
+                    start = i + 1;
+                }
+            }
+            if (start < length || length == 0) {
+                offerPendingLine(text.subSequence(start, length));
+            }
+
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Remove all lines, can be called from any thread
+     */
+    public void clear() {
+        synchronized (mPendingLines) {
+            mPendingLines.clear();
+            mClearPending = true;
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Close the stream and remove it from the kept streams
+     */
+    public void close() {
+        synchronized (openedStreams) {
+            openedStreams.remove(mStreamId);
+        }
+        synchronized (mPendingLines) {
+            mPendingLines.clear();
+        }
+    }
+
+    /**
+     * Count of lines in the ring, main thread only
+     *
+     * @return The count
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Get line from the ring, the oldest line is at position 0, main thread only
+     *
+     * @param position The line position
+     * @return The line
+     */
+    public CharSequence getLine(int position) {
+        return mLines[(mHead + position) % mCapacity];
+    }
+
+    /**
+     * Listeners are notified on the main thread once per drained batch
+     */
+    public void addOnStreamChangedListener(@NonNull OnStreamChangedListener listener) {
+        if (!mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+    }
+
+    public void removeOnStreamChangedListener(@NonNull OnStreamChangedListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Keep the pending queue bounded too, the older lines will be evicted from ring anyway
+     *
+     * @param line The line
+     */
+    private void offerPendingLine(CharSequence line) {
+        if (mPendingLines.size() == mCapacity) {
+            mPendingLines.pollFirst();
+        }
+        mPendingLines.offerLast(line);
+    }
+
+    /**
+     * Must be called while holding the pending lines
+     */
+    private void scheduleDrain() {
+        if (!mDrainScheduled) {
+            mDrainScheduled = true;
+            DialogExecutors.getMainThreadExecutor().execute(mDrainRunnable);
+        }
+    }
+
+    /**
+     * Move the pending lines into the ring, main thread only
+     */
+    private void drain() {
+        synchronized (mPendingLines) {
+            mDrainScheduled = false;
+            boolean cleared = mClearPending;
+            if (cleared) {
+                mClearPending = false;
+                for (int i = 0; i < mCapacity; i++) {
+                    mLines[i] = null;
+                }
+                mHead = 0;
+                mSize = 0;
+            }
+            if (mPendingLines.isEmpty()) {
+                if (cleared) {
+                    notifyListeners();
+                }
+                return;
+            }
+            CharSequence line;
+            while ((line = mPendingLines.pollFirst()) != null) {
+                if (mSize < mCapacity) {
+                    mLines[(mHead + mSize) % mCapacity] = line;
+                    mSize++;
+                } else {
+                    /*
+                     * Ring is full, overwrite the oldest line
+                     */
+                    mLines[mHead] = line;
+                    mHead = (mHead + 1) % mCapacity;
+                }
+            }
+        }
+        notifyListeners();
+    }
+
+    private void notifyListeners() {
+        for (int i = 0; i < mListeners.size(); i++) {
+            mListeners.get(i).onStreamChanged(this);
+        }
+    }
+
+    public interface OnStreamChangedListener {
+        void onStreamChanged(TextStream stream);
+    }
+}
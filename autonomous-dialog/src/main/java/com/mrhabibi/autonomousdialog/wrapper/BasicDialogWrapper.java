@@ -1,10 +1,14 @@
 package com.mrhabibi.autonomousdialog.wrapper;
 
+import android.content.Context;
 import android.content.DialogInterface;
 import android.os.Bundle;
+import android.support.annotation.ArrayRes;
 import android.support.annotation.Nullable;
+import android.support.annotation.StringRes;
 
 import com.mrhabibi.autonomousdialog.DialogBuilder;
+import com.mrhabibi.autonomousdialog.utils.TextLayoutWarmer;
 
 /**
  * Created by mrhabibi on 12/12/16.
@@ -31,6 +35,15 @@ public class BasicDialogWrapper extends DialogWrapper {
     public static final String MULTI_CHOICE_SELECTED_OPTIONS_LABEL = "multiChoiceSelectedOptions";
     public static final String PLAIN_CHOICE_OPTIONS_LABEL = "plainChoiceOptions";
 
+    public static final String TITLE_RES_LABEL = "titleRes";
+    public static final String MESSAGE_RES_LABEL = "messageRes";
+    public static final String POSITIVE_TEXT_RES_LABEL = "positiveTextRes";
+    public static final String NEGATIVE_TEXT_RES_LABEL = "negativeTextRes";
+    public static final String NEUTRAL_TEXT_RES_LABEL = "neutralTextRes";
+    public static final String SINGLE_CHOICE_OPTIONS_RES_LABEL = "singleChoiceOptionsRes";
+    public static final String MULTI_CHOICE_OPTIONS_RES_LABEL = "multiChoiceOptionsRes";
+    public static final String PLAIN_CHOICE_OPTIONS_RES_LABEL = "plainChoiceOptionsRes";
+
     /**
      * The Texts
      */
@@ -58,6 +71,28 @@ public class BasicDialogWrapper extends DialogWrapper {
 
     protected CharSequence[] mPlainChoiceOptions;
 
+    /**
+     * The resource ids of the texts and choices, they're kept instead of the texts and resolved
+     * when the dialog is built, so the bundles only hold ints and follow the locale
+     */
+
+    @StringRes
+    protected int mTitleRes;
+    @StringRes
+    protected int mMessageRes;
+    @StringRes
+    protected int mPositiveTextRes;
+    @StringRes
+    protected int mNegativeTextRes;
+    @StringRes
+    protected int mNeutralTextRes;
+    @ArrayRes
+    protected int mSingleChoiceOptionsRes;
+    @ArrayRes
+    protected int mMultiChoiceOptionsRes;
+    @ArrayRes
+    protected int mPlainChoiceOptionsRes;
+
     @Override
     public void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
@@ -71,6 +106,14 @@ public class BasicDialogWrapper extends DialogWrapper {
         outState.putCharSequenceArray(MULTI_CHOICE_OPTIONS_LABEL, mMultiChoiceOptions);
         outState.putBooleanArray(MULTI_CHOICE_SELECTED_OPTIONS_LABEL, mMultiChoiceSelectedOptions);
         outState.putCharSequenceArray(PLAIN_CHOICE_OPTIONS_LABEL, mPlainChoiceOptions);
+        outState.putInt(TITLE_RES_LABEL, mTitleRes);
+        outState.putInt(MESSAGE_RES_LABEL, mMessageRes);
+        outState.putInt(POSITIVE_TEXT_RES_LABEL, mPositiveTextRes);
+        outState.putInt(NEGATIVE_TEXT_RES_LABEL, mNegativeTextRes);
+        outState.putInt(NEUTRAL_TEXT_RES_LABEL, mNeutralTextRes);
+        outState.putInt(SINGLE_CHOICE_OPTIONS_RES_LABEL, mSingleChoiceOptionsRes);
+        outState.putInt(MULTI_CHOICE_OPTIONS_RES_LABEL, mMultiChoiceOptionsRes);
+        outState.putInt(PLAIN_CHOICE_OPTIONS_RES_LABEL, mPlainChoiceOptionsRes);
     }
 
     private void extractBundleStates(Bundle bundle) {
@@ -105,38 +148,97 @@ public class BasicDialogWrapper extends DialogWrapper {
             if (bundle.containsKey(PLAIN_CHOICE_OPTIONS_LABEL)) {
                 this.mPlainChoiceOptions = bundle.getCharSequenceArray(PLAIN_CHOICE_OPTIONS_LABEL);
             }
+            if (bundle.containsKey(TITLE_RES_LABEL)) {
+                this.mTitleRes = bundle.getInt(TITLE_RES_LABEL);
+            }
+            if (bundle.containsKey(MESSAGE_RES_LABEL)) {
+                this.mMessageRes = bundle.getInt(MESSAGE_RES_LABEL);
+            }
+            if (bundle.containsKey(POSITIVE_TEXT_RES_LABEL)) {
+                this.mPositiveTextRes = bundle.getInt(POSITIVE_TEXT_RES_LABEL);
+            }
+            if (bundle.containsKey(NEGATIVE_TEXT_RES_LABEL)) {
+                this.mNegativeTextRes = bundle.getInt(NEGATIVE_TEXT_RES_LABEL);
+            }
+            if (bundle.containsKey(NEUTRAL_TEXT_RES_LABEL)) {
+                this.mNeutralTextRes = bundle.getInt(NEUTRAL_TEXT_RES_LABEL);
+            }
+            if (bundle.containsKey(SINGLE_CHOICE_OPTIONS_RES_LABEL)) {
+                this.mSingleChoiceOptionsRes = bundle.getInt(SINGLE_CHOICE_OPTIONS_RES_LABEL);
+            }
+            if (bundle.containsKey(MULTI_CHOICE_OPTIONS_RES_LABEL)) {
+                this.mMultiChoiceOptionsRes = bundle.getInt(MULTI_CHOICE_OPTIONS_RES_LABEL);
+            }
+            if (bundle.containsKey(PLAIN_CHOICE_OPTIONS_RES_LABEL)) {
+                this.mPlainChoiceOptionsRes = bundle.getInt(PLAIN_CHOICE_OPTIONS_RES_LABEL);
+            }
         }
     }
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
-        extractBundleStates(getArguments());
+        extractBundleStates(getDialogArguments());
         extractBundleStates(savedInstanceState);
         super.onCreate(savedInstanceState);
     }
 
+    @Override
+    public void onPrecompute(Context context) {
+        super.onPrecompute(context);
+        Bundle arguments = getDialogArguments();
+        if (arguments == null) {
+            return;
+        }
+
+        /*
+         * Measure the texts before the dialog is built, message is the one that can be very long
+         */
+        CharSequence title = resolveText(context, arguments.getCharSequence(TITLE_LABEL), arguments.getInt(TITLE_RES_LABEL));
+        if (title != null && title.length() > 0) {
+            TextLayoutWarmer.warm(context, title, TextLayoutWarmer.TITLE_TEXT_APPEARANCE);
+        }
+        CharSequence message = resolveText(context, arguments.getCharSequence(MESSAGE_LABEL), arguments.getInt(MESSAGE_RES_LABEL));
+        if (message != null && message.length() > 0) {
+            TextLayoutWarmer.warm(context, message, TextLayoutWarmer.MESSAGE_TEXT_APPEARANCE);
+        }
+    }
+
     @Override
     public void onBuildDialog(DialogBuilder dialogBuilder) {
-        if (mTitle != null && mTitle.length() > 0) {
-            dialogBuilder.setTitle(mTitle);
+        Context context = getContext();
+
+        /*
+         * Resolve the resource texts now, with the current locale
+         */
+        CharSequence title = resolveText(context, mTitle, mTitleRes);
+        CharSequence message = resolveText(context, mMessage, mMessageRes);
+        CharSequence positiveText = resolveText(context, mPositiveText, mPositiveTextRes);
+        CharSequence negativeText = resolveText(context, mNegativeText, mNegativeTextRes);
+        CharSequence neutralText = resolveText(context, mNeutralText, mNeutralTextRes);
+        CharSequence[] singleChoiceOptions = resolveTextArray(context, mSingleChoiceOptions, mSingleChoiceOptionsRes);
+        CharSequence[] multiChoiceOptions = resolveTextArray(context, mMultiChoiceOptions, mMultiChoiceOptionsRes);
+        CharSequence[] plainChoiceOptions = resolveTextArray(context, mPlainChoiceOptions, mPlainChoiceOptionsRes);
+
+        if (title != null && title.length() > 0) {
+            dialogBuilder.setTitle(title);
         }
-        if (mMessage != null && mMessage.length() > 0) {
-            dialogBuilder.setMessage(mMessage);
+        if (message != null && message.length() > 0) {
+            dialogBuilder.setMessage(message);
         }
 
-        if (mPositiveText != null && mPositiveText.length() > 0) {
-            dialogBuilder.setPositiveButton(mPositiveText);
+        if (positiveText != null && positiveText.length() > 0) {
+            dialogBuilder.setPositiveButton(positiveText);
         }
-        if (mNegativeText != null && mNegativeText.length() > 0) {
-            dialogBuilder.setNegativeButton(mNegativeText);
+        if (negativeText != null && negativeText.length() > 0) {
+            dialogBuilder.setNegativeButton(negativeText);
         }
-        if (mNeutralText != null && mNeutralText.length() > 0) {
-            dialogBuilder.setNeutralButton(mNeutralText);
+        if (neutralText != null && neutralText.length() > 0) {
+            dialogBuilder.setNeutralButton(neutralText);
         }
 
-        if (mSingleChoiceOptions != null && mSingleChoiceOptions.length > 0) {
+        if (singleChoiceOptions != null && singleChoiceOptions.length > 0) {
 
-            dialogBuilder.setSingleChoiceItems(mSingleChoiceOptions, mSingleChoiceSelectedOption);
+            dialogBuilder.setSingleChoiceItems(singleChoiceOptions, mSingleChoiceSelectedOption);
             dialogBuilder.setSingleChoiceOverridingListener(new OnClickListener() {
                 @Override
                 public void onClick(DialogInterface dialogInterface, int which) {
@@ -154,8 +256,16 @@ public class BasicDialogWrapper extends DialogWrapper {
                 }
             });
         }
-        if (mMultiChoiceOptions != null && mMultiChoiceOptions.length > 0) {
-            dialogBuilder.setMultiChoiceItems(mMultiChoiceOptions, mMultiChoiceSelectedOptions);
+        if (multiChoiceOptions != null && multiChoiceOptions.length > 0) {
+            if (mMultiChoiceSelectedOptions == null || mMultiChoiceSelectedOptions.length != multiChoiceOptions.length) {
+                boolean[] selectedOptions = new boolean[multiChoiceOptions.length];
+                if (mMultiChoiceSelectedOptions != null) {
+                    System.arraycopy(mMultiChoiceSelectedOptions, 0, selectedOptions, 0,
+                            Math.min(mMultiChoiceSelectedOptions.length, selectedOptions.length));
+                }
+                mMultiChoiceSelectedOptions = selectedOptions;
+            }
+            dialogBuilder.setMultiChoiceItems(multiChoiceOptions, mMultiChoiceSelectedOptions);
             dialogBuilder.setMultiChoiceOverridingListener(new OnMultiChoiceClickListener() {
                 @Override
                 public void onClick(DialogInterface dialogInterface, int which, boolean checked) {
@@ -166,8 +276,8 @@ public class BasicDialogWrapper extends DialogWrapper {
                 }
             });
         }
-        if (mPlainChoiceOptions != null && mPlainChoiceOptions.length > 0) {
-            dialogBuilder.setItems(mPlainChoiceOptions);
+        if (plainChoiceOptions != null && plainChoiceOptions.length > 0) {
+            dialogBuilder.setItems(plainChoiceOptions);
         }
     }
 
@@ -177,10 +287,10 @@ public class BasicDialogWrapper extends DialogWrapper {
         /*
          * Bundling the choices response
          */
-        if (mSingleChoiceOptions != null && mSingleChoiceOptions.length > 0) {
+        if (mSingleChoiceOptionsRes != 0 || (mSingleChoiceOptions != null && mSingleChoiceOptions.length > 0)) {
             responses.putInt(SINGLE_CHOICE_SELECTED_OPTION, mSingleChoiceSelectedOption);
         }
-        if (mMultiChoiceOptions != null && mMultiChoiceOptions.length > 0) {
+        if (mMultiChoiceOptionsRes != 0 || (mMultiChoiceOptions != null && mMultiChoiceOptions.length > 0)) {
             responses.putBooleanArray(MULTI_CHOICE_SELECTED_OPTIONS, mMultiChoiceSelectedOptions);
         }
     }
@@ -191,7 +301,29 @@ public class BasicDialogWrapper extends DialogWrapper {
      * @return Has positive button
      */
     private boolean positiveButtonExist() {
-        return mPositiveText != null && mPositiveText.length() > 0;
+        return mPositiveTextRes != 0 || (mPositiveText != null && mPositiveText.length() > 0);
+    }
+
+    /**
+     * Get the text from its resource if it's set, otherwise the text itself
+     */
+    @Nullable
+    private static CharSequence resolveText(@Nullable Context context, @Nullable CharSequence text, @StringRes int textRes) {
+        if (textRes != 0 && context != null) {
+            return context.getText(textRes);
+        }
+        return text;
+    }
+
+    /**
+     * Get the texts from their array resource if it's set, otherwise the texts themselves
+     */
+    @Nullable
+    private static CharSequence[] resolveTextArray(@Nullable Context context, @Nullable CharSequence[] texts, @ArrayRes int textsRes) {
+        if (textsRes != 0 && context != null) {
+            return context.getResources().getTextArray(textsRes);
+        }
+        return texts;
     }
 
     public static Builder newBuilder() {
@@ -202,31 +334,73 @@ public class BasicDialogWrapper extends DialogWrapper {
 
         public Builder title(CharSequence title) {
             arguments.putCharSequence(TITLE_LABEL, title);
+            arguments.remove(TITLE_RES_LABEL);
+            return this;
+        }
+
+        public Builder title(@StringRes int titleRes) {
+            arguments.putInt(TITLE_RES_LABEL, titleRes);
+            arguments.remove(TITLE_LABEL);
             return this;
         }
 
         public Builder message(CharSequence message) {
             arguments.putCharSequence(MESSAGE_LABEL, message);
+            arguments.remove(MESSAGE_RES_LABEL);
+            return this;
+        }
+
+        public Builder message(@StringRes int messageRes) {
+            arguments.putInt(MESSAGE_RES_LABEL, messageRes);
+            arguments.remove(MESSAGE_LABEL);
             return this;
         }
 
         public Builder positiveText(CharSequence positiveText) {
             arguments.putCharSequence(POSITIVE_TEXT_LABEL, positiveText);
+            arguments.remove(POSITIVE_TEXT_RES_LABEL);
+            return this;
+        }
+
+        public Builder positiveText(@StringRes int positiveTextRes) {
+            arguments.putInt(POSITIVE_TEXT_RES_LABEL, positiveTextRes);
+            arguments.remove(POSITIVE_TEXT_LABEL);
             return this;
         }
 
         public Builder negativeText(CharSequence negativeText) {
             arguments.putCharSequence(NEGATIVE_TEXT_LABEL, negativeText);
+            arguments.remove(NEGATIVE_TEXT_RES_LABEL);
+            return this;
+        }
+
+        public Builder negativeText(@StringRes int negativeTextRes) {
+            arguments.putInt(NEGATIVE_TEXT_RES_LABEL, negativeTextRes);
+            arguments.remove(NEGATIVE_TEXT_LABEL);
             return this;
         }
 
         public Builder neutralText(CharSequence neutralText) {
             arguments.putCharSequence(NEUTRAL_TEXT_LABEL, neutralText);
+            arguments.remove(NEUTRAL_TEXT_RES_LABEL);
+            return this;
+        }
+
+        public Builder neutralText(@StringRes int neutralTextRes) {
+            arguments.putInt(NEUTRAL_TEXT_RES_LABEL, neutralTextRes);
+            arguments.remove(NEUTRAL_TEXT_LABEL);
             return this;
         }
 
         public Builder singleChoiceOptions(CharSequence[] singleChoiceOptions) {
             arguments.putCharSequenceArray(SINGLE_CHOICE_OPTIONS_LABEL, singleChoiceOptions);
+            arguments.remove(SINGLE_CHOICE_OPTIONS_RES_LABEL);
+            return this;
+        }
+
+        public Builder singleChoiceOptions(@ArrayRes int singleChoiceOptionsRes) {
+            arguments.putInt(SINGLE_CHOICE_OPTIONS_RES_LABEL, singleChoiceOptionsRes);
+            arguments.remove(SINGLE_CHOICE_OPTIONS_LABEL);
             return this;
         }
 
@@ -237,6 +411,13 @@ public class BasicDialogWrapper extends DialogWrapper {
 
         public Builder multiChoiceOptions(CharSequence[] multiChoiceOptions) {
             arguments.putCharSequenceArray(MULTI_CHOICE_OPTIONS_LABEL, multiChoiceOptions);
+            arguments.remove(MULTI_CHOICE_OPTIONS_RES_LABEL);
+            return this;
+        }
+
+        public Builder multiChoiceOptions(@ArrayRes int multiChoiceOptionsRes) {
+            arguments.putInt(MULTI_CHOICE_OPTIONS_RES_LABEL, multiChoiceOptionsRes);
+            arguments.remove(MULTI_CHOICE_OPTIONS_LABEL);
             return this;
         }
 
@@ -247,6 +428,13 @@ public class BasicDialogWrapper extends DialogWrapper {
 
         public Builder plainChoiceOptions(CharSequence[] plainChoiceOptions) {
             arguments.putCharSequenceArray(PLAIN_CHOICE_OPTIONS_LABEL, plainChoiceOptions);
+            arguments.remove(PLAIN_CHOICE_OPTIONS_RES_LABEL);
+            return this;
+        }
+
+        public Builder plainChoiceOptions(@ArrayRes int plainChoiceOptionsRes) {
+            arguments.putInt(PLAIN_CHOICE_OPTIONS_RES_LABEL, plainChoiceOptionsRes);
+            arguments.remove(PLAIN_CHOICE_OPTIONS_LABEL);
             return this;
         }
 
@@ -1,5 +1,6 @@
 package com.mrhabibi.autonomousdialog.wrapper;
 
+import android.content.Context;
 import android.content.DialogInterface;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
@@ -8,6 +9,7 @@ import android.support.v7.app.AlertDialog;
 
 import com.mrhabibi.autonomousdialog.DialogBuilder;
 import com.mrhabibi.autonomousdialog.DialogCallback;
+import com.mrhabibi.autonomousdialog.utils.SpilledBundles;
 
 /**
  * Created by mrhabibi on 12/2/16.
@@ -25,6 +27,7 @@ public abstract class DialogWrapper extends Fragment implements DialogInterface,
      * instead of dialog builder
      */
     private DialogInterface mDialogInterface;
+    private Bundle mDialogArguments;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
@@ -34,6 +37,32 @@ public abstract class DialogWrapper extends Fragment implements DialogInterface,
         }
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+
+        /*
+         * The spilled arguments aren't needed by the next instance anymore
+         */
+        if (getActivity() != null && getActivity().isFinishing()) {
+            SpilledBundles.release(getArguments());
+        }
+    }
+
+    /**
+     * Arguments getter, use it instead of getArguments(), the oversized arguments are spilled by
+     * the builder and read back here on the first call
+     *
+     * @return The arguments
+     */
+    @Nullable
+    public Bundle getDialogArguments() {
+        if (mDialogArguments == null || !SpilledBundles.isSpilled(getArguments())) {
+            mDialogArguments = SpilledBundles.peek(getArguments());
+        }
+        return mDialogArguments;
+    }
+
     /**
      * Used by activity to set the built dialog
      *
@@ -67,6 +96,16 @@ public abstract class DialogWrapper extends Fragment implements DialogInterface,
      */
     public abstract void onBuildDialog(DialogBuilder dialogBuilder);
 
+    /**
+     * Called by the builder before the activity is started when text precomputation is enabled,
+     * used to prepare the heavy stuffs on background thread from the arguments, because the
+     * fragment hasn't been created yet
+     *
+     * @param context The God object
+     */
+    public void onPrecompute(Context context) {
+    }
+
     @Override
     public void onBundleResponses(Bundle responses) {
     }
@@ -0,0 +1,442 @@
+package com.mrhabibi.autonomousdialog.wrapper;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.app.FragmentManager;
+import android.support.v7.app.AlertDialog;
+
+import com.mrhabibi.autonomousdialog.DialogBuilder;
+import com.mrhabibi.autonomousdialog.DialogMemoryManager;
+import com.mrhabibi.autonomousdialog.DialogResult;
+import com.mrhabibi.autonomousdialog.Trimmable;
+import com.mrhabibi.autonomousdialog.utils.DialogExecutors;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * Extension of DialogWrapper that runs several dialog wrappers as steps inside one DialogActivity,
+ * so a wizard doesn't need to stack an activity per step. Every step is made from the responses
+ * of the previous steps, and the next likely step is made on background thread while the user is
+ * still on the current step. The flow returns one result, the result code is the last step's,
+ * and the responses bundle keeps each step's responses under the step name.
+ * The steps are code, so the flow instance is retained through config changes, but they can't
+ * survive process death, the flow just ends at the restored step in that case
+ */
+public class FlowDialogWrapper extends DialogWrapper implements Trimmable {
+
+    public static final String CURRENT_STEP_LABEL = "flowCurrentStep";
+    public static final String FLOW_RESPONSES_LABEL = "flowResponses";
+    public static final String FLOW_PATH_LABEL = "flowPath";
+    public static final String STEP_RESULT_CODE_LABEL = "flowStepResultCode";
+
+    private static final String STEP_TAG_PREFIX = "flowStep_";
+
+    private LinkedHashMap<String, Step> mSteps = new LinkedHashMap<>();
+    private Navigator mNavigator;
+
+    private String mCurrentStepName;
+    private DialogWrapper mCurrentStep;
+    private boolean mCompleted;
+
+    /**
+     * Each step's responses under the step name, and the visited step names
+     */
+    private Bundle mFlowResponses = new Bundle();
+    private ArrayList<String> mPath = new ArrayList<>();
+
+    /**
+     * Steps made ahead on background thread, main thread only
+     */
+    private final HashMap<String, DialogWrapper> mPrefetchedSteps = new HashMap<>();
+    private int mPrefetchGeneration;
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        /*
+         * Keep the steps and navigator through config changes
+         */
+        setRetainInstance(true);
+        DialogMemoryManager.register("FlowPrefetch", this);
+
+        if (savedInstanceState != null && mCurrentStepName == null) {
+            mCurrentStepName = savedInstanceState.getString(CURRENT_STEP_LABEL);
+            Bundle flowResponses = savedInstanceState.getBundle(FLOW_RESPONSES_LABEL);
+            if (flowResponses != null) {
+                mFlowResponses = flowResponses;
+            }
+            ArrayList<String> path = savedInstanceState.getStringArrayList(FLOW_PATH_LABEL);
+            if (path != null) {
+                mPath = path;
+            }
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        DialogMemoryManager.unregister(this);
+    }
+
+    /**
+     * Prefetched steps are made again when needed
+     */
+    @Override
+    public int onTrimMemory(int tier) {
+        int count = mPrefetchedSteps.size();
+        mPrefetchedSteps.clear();
+        mPrefetchGeneration++;
+        return count;
+    }
+
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(CURRENT_STEP_LABEL, mCurrentStepName);
+        outState.putBundle(FLOW_RESPONSES_LABEL, mFlowResponses);
+        outState.putStringArrayList(FLOW_PATH_LABEL, mPath);
+    }
+
+    @Override
+    public void onBuildDialog(DialogBuilder dialogBuilder) {
+        FragmentManager fragmentManager = getFragmentManager();
+
+        if (mCurrentStepName == null && !mSteps.isEmpty()) {
+            mCurrentStepName = mSteps.keySet().iterator().next();
+        }
+
+        /*
+         * The step fragment is recreated by the fragment manager after config changes
+         */
+        mCurrentStep = (DialogWrapper) fragmentManager.findFragmentByTag(STEP_TAG_PREFIX + mCurrentStepName);
+        if (mCurrentStep == null) {
+            mCurrentStep = takeStep(mCurrentStepName);
+            if (mCurrentStep == null) {
+                throw new IllegalStateException("Flow step " + mCurrentStepName + " is not found!");
+            }
+            fragmentManager.beginTransaction()
+                    .add(mCurrentStep, STEP_TAG_PREFIX + mCurrentStepName)
+                    .commit();
+            fragmentManager.executePendingTransactions();
+        }
+
+        mCurrentStep.onBuildDialog(dialogBuilder);
+        prefetchNextStep();
+    }
+
+    /**
+     * Called by the host when the current step is dismissed, collect the step responses and go on
+     * to the next step
+     *
+     * @return Is there next step to be shown
+     */
+    public boolean advance() {
+        int resultCode = collectCurrentStep();
+
+        String nextStepName = mNavigator != null && !mSteps.isEmpty()
+                ? mNavigator.next(mCurrentStepName, resultCode, mFlowResponses)
+                : null;
+        if (nextStepName == null) {
+            mCompleted = true;
+            return false;
+        }
+
+        DialogWrapper nextStep = takeStep(nextStepName);
+        if (nextStep == null) {
+            throw new IllegalStateException("Flow step " + nextStepName + " is not found!");
+        }
+
+        FragmentManager fragmentManager = getFragmentManager();
+        fragmentManager.beginTransaction()
+                .remove(mCurrentStep)
+                .add(nextStep, STEP_TAG_PREFIX + nextStepName)
+                .commitAllowingStateLoss();
+        fragmentManager.executePendingTransactions();
+
+        mCurrentStepName = nextStepName;
+        mCurrentStep = nextStep;
+        mResultCode = DialogResult.RESULT_DIALOG_CANCELLED;
+        return true;
+    }
+
+    /**
+     * Collect the current step responses and result code into the flow responses
+     *
+     * @return The step result code
+     */
+    private int collectCurrentStep() {
+        if (mCurrentStep == null) {
+            return mResultCode;
+        }
+        Bundle stepResponses = new Bundle();
+        mCurrentStep.onBundleResponses(stepResponses);
+        int resultCode = mCurrentStep.getResultCode();
+        stepResponses.putInt(STEP_RESULT_CODE_LABEL, resultCode);
+
+        mFlowResponses.putBundle(mCurrentStepName, stepResponses);
+        mPath.add(mCurrentStepName);
+        mResultCode = resultCode;
+        return resultCode;
+    }
+
+    /**
+     * Get the prefetched step or make it now, and hand the latest flow responses to it
+     */
+    @Nullable
+    private DialogWrapper takeStep(String stepName) {
+        DialogWrapper stepWrapper = mPrefetchedSteps.remove(stepName);
+        mPrefetchedSteps.clear();
+        mPrefetchGeneration++;
+
+        if (stepWrapper == null) {
+            Step step = mSteps.get(stepName);
+            if (step == null) {
+                return null;
+            }
+            stepWrapper = step.create(new Bundle(mFlowResponses));
+        }
+
+        Bundle arguments = stepWrapper.getArguments();
+        if (arguments == null) {
+            arguments = new Bundle();
+            stepWrapper.setArguments(arguments);
+        }
+        arguments.putBundle(FLOW_RESPONSES_LABEL, new Bundle(mFlowResponses));
+        return stepWrapper;
+    }
+
+    /**
+     * Make the next likely step on background thread, so it's ready when the user taps
+     */
+    private void prefetchNextStep() {
+        if (mNavigator == null || mSteps.isEmpty()) {
+            return;
+        }
+        final String nextStepName = mNavigator.predictNext(mCurrentStepName, mFlowResponses);
+        final Step step = nextStepName != null ? mSteps.get(nextStepName) : null;
+        if (step == null || !step.isPrefetchable() || mPrefetchedSteps.containsKey(nextStepName)) {
+            return;
+        }
+
+        final int generation = mPrefetchGeneration;
+        final Bundle flowResponses = new Bundle(mFlowResponses);
+        DialogExecutors.getBackgroundExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final DialogWrapper stepWrapper = step.create(flowResponses);
+                DialogExecutors.getMainThreadExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        /*
+                         * Drop it if the flow has moved on while making it
+                         */
+                        if (generation == mPrefetchGeneration && getContext() != null) {
+                            mPrefetchedSteps.put(nextStepName, stepWrapper);
+                            stepWrapper.onPrecompute(getContext());
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void onDialogShown(AlertDialog dialog) {
+        super.onDialogShown(dialog);
+        if (mCurrentStep != null) {
+            mCurrentStep.onDialogShown(dialog);
+        }
+    }
+
+    /**
+     * Pass the activity result for nested AutonomousDialog to the current step
+     */
+    @Override
+    public void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (mCurrentStep != null) {
+            mCurrentStep.onActivityResult(requestCode, resultCode, data);
+        }
+    }
+
+    @Override
+    public void setResultCode(int resultCode) {
+        super.setResultCode(resultCode);
+        if (mCurrentStep != null) {
+            mCurrentStep.setResultCode(resultCode);
+        }
+    }
+
+    @Override
+    public void onBundleResponses(Bundle responses) {
+        super.onBundleResponses(responses);
+
+        /*
+         * The host is finishing without asking to advance, like dismissed remotely
+         */
+        if (!mCompleted) {
+            collectCurrentStep();
+            mCompleted = true;
+        }
+        responses.putAll(mFlowResponses);
+        responses.putStringArrayList(FLOW_PATH_LABEL, mPath);
+    }
+
+    @Override
+    public int getResultCode() {
+        return mResultCode;
+    }
+
+    /**
+     * Get the responses of the previous steps, used by a step wrapper from its arguments
+     *
+     * @param stepWrapper The step wrapper
+     * @return Each step's responses under the step name
+     */
+    @NonNull
+    public static Bundle getFlowResponses(@NonNull DialogWrapper stepWrapper) {
+        Bundle arguments = stepWrapper.getDialogArguments();
+        Bundle flowResponses = arguments != null ? arguments.getBundle(FLOW_RESPONSES_LABEL) : null;
+        return flowResponses != null ? flowResponses : new Bundle();
+    }
+
+    /**
+     * Get the responses of a step from the flow result
+     *
+     * @param result   The flow result
+     * @param stepName The step name
+     * @return The step responses
+     */
+    @Nullable
+    public static Bundle getStepResponses(@NonNull DialogResult result, @NonNull String stepName) {
+        Bundle responses = result.getResponses();
+        return responses != null ? responses.getBundle(stepName) : null;
+    }
+
+    /**
+     * The step maker, called on background thread when the step is prefetched, so only make the
+     * wrapper and its arguments here
+     */
+    public abstract static class Step {
+
+        @NonNull
+        public abstract DialogWrapper create(@NonNull Bundle flowResponses);
+
+        /**
+         * Override this to make the step only when it's really shown, for step that depends on
+         * the responses of the step just before it
+         *
+         * @return Is the step can be made ahead
+         */
+        public boolean isPrefetchable() {
+            return true;
+        }
+    }
+
+    /**
+     * Decides the next step, makes the flow a graph instead of just sequence
+     */
+    public abstract static class Navigator {
+
+        /**
+         * @param stepName      The finished step
+         * @param resultCode    The finished step result code
+         * @param flowResponses Each step's responses under the step name
+         * @return The next step name, null to end the flow
+         */
+        @Nullable
+        public abstract String next(@NonNull String stepName, int resultCode, @NonNull Bundle flowResponses);
+
+        /**
+         * Guess the next step before the current step is answered, for prefetching
+         *
+         * @param stepName      The current step
+         * @param flowResponses Each step's responses under the step name
+         * @return The next likely step name, null to skip prefetching
+         */
+        @Nullable
+        public String predictNext(@NonNull String stepName, @NonNull Bundle flowResponses) {
+            return null;
+        }
+    }
+
+    /**
+     * Default navigator, goes through the steps in order and ends when a step is cancelled
+     */
+    private static class SequenceNavigator extends Navigator {
+
+        private final ArrayList<String> mStepNames;
+
+        SequenceNavigator(ArrayList<String> stepNames) {
+            this.mStepNames = stepNames;
+        }
+
+        @Nullable
+        @Override
+        public String next(@NonNull String stepName, int resultCode, @NonNull Bundle flowResponses) {
+            if (resultCode == DialogResult.RESULT_DIALOG_CANCELLED) {
+                return null;
+            }
+            return predictNext(stepName, flowResponses);
+        }
+
+        @Nullable
+        @Override
+        public String predictNext(@NonNull String stepName, @NonNull Bundle flowResponses) {
+            int index = mStepNames.indexOf(stepName);
+            return index >= 0 && index + 1 < mStepNames.size() ? mStepNames.get(index + 1) : null;
+        }
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public static class Builder extends DialogWrapper.Builder<FlowDialogWrapper> {
+
+        private final LinkedHashMap<String, Step> mSteps = new LinkedHashMap<>();
+        private Navigator mNavigator;
+
+        /**
+         * Add step, the first added step is the first shown
+         *
+         * @param stepName The unique step name
+         * @param step     The step maker
+         * @return The builder
+         */
+        public Builder step(@NonNull String stepName, @NonNull Step step) {
+            mSteps.put(stepName, step);
+            return this;
+        }
+
+        /**
+         * Setter for the navigator, the steps are gone through in order if it's not set
+         *
+         * @param navigator The navigator
+         * @return The builder
+         */
+        public Builder navigator(@NonNull Navigator navigator) {
+            mNavigator = navigator;
+            return this;
+        }
+
+        @Override
+        public FlowDialogWrapper build() {
+            if (mSteps.isEmpty()) {
+                throw new IllegalStateException("FlowDialogWrapper needs at least one step!");
+            }
+            FlowDialogWrapper dialogWrapper = new FlowDialogWrapper();
+            dialogWrapper.setArguments(arguments);
+            dialogWrapper.mSteps = new LinkedHashMap<>(mSteps);
+            dialogWrapper.mNavigator = mNavigator != null
+                    ? mNavigator
+                    : new SequenceNavigator(new ArrayList<>(mSteps.keySet()));
+            return dialogWrapper;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.mrhabibi.autonomousdialog.wrapper;
+
+import android.content.Context;
+import android.graphics.Typeface;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.TypedValue;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import com.mrhabibi.autonomousdialog.utils.DialogUtils;
+import com.mrhabibi.autonomousdialog.utils.TextStream;
+
+/**
+ * Extension of ViewDialogWrapper, used to show live text output like logs in the dialog, the text
+ * is read from TextStream and rendered incrementally by recycling list, so the dialog can be
+ * left open while the output keeps coming
+ */
+public class StreamingTextDialogWrapper extends ViewDialogWrapper implements TextStream.OnStreamChangedListener {
+
+    public static final String STREAM_ID_LABEL = "streamId";
+    public static final String AUTO_SCROLL_LABEL = "autoScroll";
+    public static final String CLOSE_ON_DISMISS_LABEL = "closeOnDismiss";
+
+    protected String mStreamId;
+    protected boolean mAutoScroll = true;
+    protected boolean mCloseOnDismiss = true;
+
+    private TextStream mStream;
+    private LineAdapter mAdapter;
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        Bundle arguments = getDialogArguments();
+        if (arguments != null) {
+            mStreamId = arguments.getString(STREAM_ID_LABEL);
+            mAutoScroll = arguments.getBoolean(AUTO_SCROLL_LABEL, true);
+            mCloseOnDismiss = arguments.getBoolean(CLOSE_ON_DISMISS_LABEL, true);
+        }
+        super.onCreate(savedInstanceState);
+        mStream = TextStream.get(mStreamId);
+    }
+
+    @NonNull
+    @Override
+    public View getView() {
+        Context context = getContext();
+
+        ListView listView = new ListView(context);
+        listView.setDivider(null);
+        listView.setLayoutParams(new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT,
+                DialogUtils.dpToPx(context, 320)));
+
+        /*
+         * Keep the list pinned to the newest line while the user hasn't scrolled away
+         */
+        if (mAutoScroll) {
+            listView.setTranscriptMode(AbsListView.TRANSCRIPT_MODE_NORMAL);
+            listView.setStackFromBottom(true);
+        }
+
+        mAdapter = new LineAdapter();
+        listView.setAdapter(mAdapter);
+
+        if (mStream != null) {
+            mStream.addOnStreamChangedListener(this);
+        }
+        return listView;
+    }
+
+    @Override
+    public void onStreamChanged(TextStream stream) {
+        if (mAdapter != null) {
+            mAdapter.notifyDataSetChanged();
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (mStream != null) {
+            mStream.removeOnStreamChangedListener(this);
+
+            /*
+             * Release the stream only when the dialog is really gone, not when config changes
+             */
+            if (mCloseOnDismiss && getActivity() != null && getActivity().isFinishing()) {
+                mStream.close();
+            }
+        }
+    }
+
+    @Override
+    protected boolean isUsingPadding() {
+        return false;
+    }
+
+    /**
+     * Override this to style the line view, called once per created row
+     *
+     * @param lineView The line view
+     */
+    protected void onStyleLineView(TextView lineView) {
+        lineView.setTypeface(Typeface.MONOSPACE);
+        lineView.setTextSize(TypedValue.COMPLEX_UNIT_SP, 12);
+        int horizontalPadding = DialogUtils.dpToPx(lineView.getContext(), 24);
+        lineView.setPadding(horizontalPadding, 0, horizontalPadding, 0);
+    }
+
+    private class LineAdapter extends BaseAdapter {
+
+        @Override
+        public int getCount() {
+            return mStream != null ? mStream.size() : 0;
+        }
+
+        @Override
+        public CharSequence getItem(int position) {
+            return mStream.getLine(position);
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            TextView lineView = (TextView) convertView;
+            if (lineView == null) {
+                lineView = new TextView(parent.getContext());
+                onStyleLineView(lineView);
+            }
+            lineView.setText(getItem(position));
+            return lineView;
+        }
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public static class Builder extends ViewDialogWrapper.Builder {
+
+        public Builder stream(@NonNull TextStream stream) {
+            arguments.putString(STREAM_ID_LABEL, stream.getStreamId());
+            return this;
+        }
+
+        public Builder autoScroll(boolean autoScroll) {
+            arguments.putBoolean(AUTO_SCROLL_LABEL, autoScroll);
+            return this;
+        }
+
+        public Builder closeOnDismiss(boolean closeOnDismiss) {
+            arguments.putBoolean(CLOSE_ON_DISMISS_LABEL, closeOnDismiss);
+            return this;
+        }
+
+        @Override
+        public StreamingTextDialogWrapper build() {
+            StreamingTextDialogWrapper dialogWrapper = new StreamingTextDialogWrapper();
+            dialogWrapper.setArguments(arguments);
+            return dialogWrapper;
+        }
+    }
+}
@@ -1,14 +1,30 @@
 package com.mrhabibi.autonomousdialog.wrapper;
 
+import android.content.Context;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Parcelable;
+import android.support.annotation.DrawableRes;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.SparseArray;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewGroup;
+import android.widget.EditText;
 import android.widget.FrameLayout;
+import android.widget.ImageView;
+import android.widget.LinearLayout;
 
 import com.mrhabibi.autonomousdialog.DialogBuilder;
 import com.mrhabibi.autonomousdialog.DialogCallback;
 import com.mrhabibi.autonomousdialog.utils.DialogUtils;
+import com.mrhabibi.autonomousdialog.utils.ImageLoader;
+
+import java.io.File;
 
 /**
  * Created by mrhabibi on 12/13/16.
@@ -19,11 +35,34 @@ import com.mrhabibi.autonomousdialog.utils.DialogUtils;
 public abstract class ViewDialogWrapper extends BasicDialogWrapper {
 
     public static final String SAVED_VIEW_LABEL = "savedViewState";
+    public static final String IMAGE_RES_LABEL = "imageRes";
+    public static final String IMAGE_URI_LABEL = "imageUri";
+    public static final String HIERARCHY_STATE_LABEL = "hierarchyState";
+
     Bundle mSavedViewState;
     View mView;
 
+    /**
+     * The last captured view state, shared by saving state and bundling responses of the same
+     * dismissal, and the flag that tells the view may have changed since it was captured
+     */
+    private Bundle mViewStateSnapshot;
+    private boolean mViewStateDirty = true;
+
+    /**
+     * The banner image shown above the view
+     */
+    @DrawableRes
+    protected int mImageRes;
+    protected Uri mImageUri;
+
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
+        Bundle arguments = getDialogArguments();
+        if (arguments != null) {
+            mImageRes = arguments.getInt(IMAGE_RES_LABEL);
+            mImageUri = arguments.getParcelable(IMAGE_URI_LABEL);
+        }
         super.onCreate(savedInstanceState);
         if (savedInstanceState != null) {
             /*
@@ -45,26 +84,54 @@ public abstract class ViewDialogWrapper extends BasicDialogWrapper {
          * Check if is having saved state, and restore it immediately after view created
          */
         if (mSavedViewState != null) {
+            if (isSavingHierarchyState()) {
+                SparseArray<Parcelable> hierarchyState = mSavedViewState.getSparseParcelableArray(HIERARCHY_STATE_LABEL);
+                if (hierarchyState != null) {
+                    mView.restoreHierarchyState(hierarchyState);
+                }
+            }
             onRestoreViewState();
             onRestoreViewState(mSavedViewState);
+
+            /*
+             * The restored view has the same state as the saved one, no need to capture it again
+             */
+            mViewStateSnapshot = new Bundle(mSavedViewState);
+            mViewStateDirty = false;
+        } else {
+            invalidateViewState();
         }
 
         /*
          * Set the dialog view
          */
-        dialogBuilder.setView(isUsingPadding() ? makeContainer(mView) : mView);
+        View content = makeContainer(mView);
+        if (mImageRes != 0 || mImageUri != null) {
+            content = makeImageContainer(content);
+        }
+        dialogBuilder.setView(content);
         super.onBuildDialog(dialogBuilder);
     }
 
+    @Override
+    public void onStart() {
+        super.onStart();
+        invalidateViewState();
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        invalidateViewState();
+    }
+
     @Override
     public void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
         /*
-         * Save all the view states
+         * Save all the view states, the dismissal right after this reuses them
          */
-        Bundle savedViewState = new Bundle();
-        onSaveViewState(savedViewState);
-        outState.putBundle(SAVED_VIEW_LABEL, savedViewState);
+        outState.putBundle(SAVED_VIEW_LABEL, captureViewState());
     }
 
     @NonNull
@@ -81,13 +148,60 @@ public abstract class ViewDialogWrapper extends BasicDialogWrapper {
         /*
          * Save all the view states first before bundling responses
          */
-        Bundle savedViewState = new Bundle();
-        onSaveViewState(savedViewState);
+        Bundle savedViewState = captureViewState();
 
         /*
          * Call and pass the saved view state to onBundleResponses
          */
         onBundleResponses(responses, savedViewState);
+
+        /*
+         * The next dismissal captures the view again
+         */
+        invalidateViewState();
+    }
+
+    /**
+     * Capture the view state once and reuse it until the view changes, so saving state and
+     * bundling responses in the same dismissal don't collect the view twice. The snapshot is
+     * captured again after starting, resuming and bundling responses
+     *
+     * @return Copy of the view state snapshot
+     */
+    protected final Bundle captureViewState() {
+        if (mViewStateDirty || mViewStateSnapshot == null) {
+            Bundle snapshot = new Bundle();
+            if (isSavingHierarchyState() && mView != null) {
+                /*
+                 * The whole hierarchy is saved again, a changed view may keep its state in any of
+                 * its parents, like the scroll position
+                 */
+                SparseArray<Parcelable> hierarchyState = new SparseArray<>();
+                mView.saveHierarchyState(hierarchyState);
+                snapshot.putSparseParcelableArray(HIERARCHY_STATE_LABEL, hierarchyState);
+            }
+            onSaveViewState(snapshot);
+            mViewStateSnapshot = snapshot;
+            mViewStateDirty = false;
+        }
+
+        /*
+         * Hand out a copy with its own hierarchy array, so the caller can't change the snapshot
+         */
+        Bundle copy = new Bundle(mViewStateSnapshot);
+        SparseArray<Parcelable> hierarchyState = mViewStateSnapshot.getSparseParcelableArray(HIERARCHY_STATE_LABEL);
+        if (hierarchyState != null) {
+            copy.putSparseParcelableArray(HIERARCHY_STATE_LABEL, hierarchyState.clone());
+        }
+        return copy;
+    }
+
+    /**
+     * Tell that the view state has changed, touches, keys and text edits inside the view are
+     * tracked automatically, call this when the view is changed programmatically
+     */
+    protected void invalidateViewState() {
+        mViewStateDirty = true;
     }
 
     /**
@@ -140,25 +254,105 @@ public abstract class ViewDialogWrapper extends BasicDialogWrapper {
     }
 
     /**
-     * Create container for the view to make right and left padding using FrameLayout Container
+     * Override this to save the view state automatically with the framework view state, like
+     * activity does, so onSaveViewState and onRestoreViewState are only needed for what the views
+     * don't keep themselves, the views need ids to be saved. The default is false
+     *
+     * @return Is saving the view hierarchy state
+     */
+    protected boolean isSavingHierarchyState() {
+        return false;
+    }
+
+    /**
+     * Create container for the view that tracks the view changes, and make right and left padding
+     * if the view is using padding
      *
      * @param view The dialog view
      * @return The Container
      */
     private FrameLayout makeContainer(View view) {
-        FrameLayout container = new FrameLayout(getContext());
+        FrameLayout container = new ViewStateTrackingLayout(getContext());
         /*
          * Give padding as much as the title's
          */
-        container.setPadding(
-                DialogUtils.dpToPx(getContext(), 24),
-                DialogUtils.dpToPx(getContext(), 8),
-                DialogUtils.dpToPx(getContext(), 24),
-                DialogUtils.dpToPx(getContext(), 8));
+        if (isUsingPadding()) {
+            container.setPadding(
+                    DialogUtils.dpToPx(getContext(), 24),
+                    DialogUtils.dpToPx(getContext(), 8),
+                    DialogUtils.dpToPx(getContext(), 24),
+                    DialogUtils.dpToPx(getContext(), 8));
+        }
         container.addView(view);
+        trackTextChanges(view);
         return container;
     }
 
+    /**
+     * Text typed from soft keyboard doesn't come as key events, so watch the text fields too
+     *
+     * @param view The view to be watched
+     */
+    private void trackTextChanges(View view) {
+        if (view instanceof EditText) {
+            ((EditText) view).addTextChangedListener(new TextWatcher() {
+                @Override
+                public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                }
+
+                @Override
+                public void onTextChanged(CharSequence s, int start, int before, int count) {
+                    invalidateViewState();
+                }
+
+                @Override
+                public void afterTextChanged(Editable s) {
+                }
+            });
+        } else if (view instanceof ViewGroup) {
+            ViewGroup viewGroup = (ViewGroup) view;
+            for (int i = 0; i < viewGroup.getChildCount(); i++) {
+                trackTextChanges(viewGroup.getChildAt(i));
+            }
+        }
+    }
+
+    /**
+     * Create container for the view with the banner image above it, the image is decoded on
+     * background thread and kept in memory cache, so rebuilding dialog after rotation is cheap
+     *
+     * @param view The dialog view
+     * @return The Container
+     */
+    private LinearLayout makeImageContainer(View view) {
+        LinearLayout container = new LinearLayout(getContext());
+        container.setOrientation(LinearLayout.VERTICAL);
+
+        ImageView imageView = new ImageView(getContext());
+        imageView.setAdjustViewBounds(true);
+        imageView.setScaleType(ImageView.ScaleType.CENTER_CROP);
+        container.addView(imageView, new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        loadImage(imageView, mImageUri != null ? mImageUri : ImageLoader.toUri(getContext(), mImageRes),
+                DialogUtils.estimateDialogWidth(getContext()), 0);
+
+        container.addView(view);
+        return container;
+    }
+
+    /**
+     * Load image for the view off the main thread, use this in getView instead of decoding the
+     * bitmap directly
+     *
+     * @param imageView    The image view
+     * @param uri          The image uri, use ImageLoader.toUri for resource or file
+     * @param targetWidth  The target width
+     * @param targetHeight The target height, 0 to follow the width
+     */
+    protected void loadImage(@NonNull ImageView imageView, @NonNull Uri uri, int targetWidth, int targetHeight) {
+        ImageLoader.load(imageView, uri, targetWidth, targetHeight);
+    }
+
     @Override
     public int getResultCode() {
         if (mView instanceof DialogCallback) {
@@ -167,6 +361,44 @@ public abstract class ViewDialogWrapper extends BasicDialogWrapper {
         return super.getResultCode();
     }
 
+    /**
+     * Container that marks the view state dirty whenever the user interacts with the view
+     */
+    private class ViewStateTrackingLayout extends FrameLayout {
+
+        ViewStateTrackingLayout(Context context) {
+            super(context);
+        }
+
+        @Override
+        public boolean dispatchTouchEvent(MotionEvent event) {
+            invalidateViewState();
+            return super.dispatchTouchEvent(event);
+        }
+
+        @Override
+        public boolean dispatchKeyEvent(KeyEvent event) {
+            invalidateViewState();
+            return super.dispatchKeyEvent(event);
+        }
+    }
+
     public abstract static class Builder extends BasicDialogWrapper.Builder {
+
+        public Builder image(@DrawableRes int imageRes) {
+            arguments.putInt(IMAGE_RES_LABEL, imageRes);
+            arguments.remove(IMAGE_URI_LABEL);
+            return this;
+        }
+
+        public Builder image(@NonNull File imageFile) {
+            return image(ImageLoader.toUri(imageFile));
+        }
+
+        public Builder image(@NonNull Uri imageUri) {
+            arguments.putParcelable(IMAGE_URI_LABEL, imageUri);
+            arguments.remove(IMAGE_RES_LABEL);
+            return this;
+        }
     }
 }
@@ -0,0 +1,205 @@
+package com.mrhabibi.autonomousdialog.instrumentation;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.ContextWrapper;
+
+import com.mrhabibi.autonomousdialog.DialogResult;
+import com.mrhabibi.autonomousdialog.utils.DialogExecutors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The journal is read by the apps that upload it, so its binary format is checked byte by byte
+ */
+public class InteractionRecorderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Context context;
+    private File journal;
+
+    @Before
+    public void setUp() throws IOException {
+        final File filesDir = folder.newFolder("files");
+        context = new ContextWrapper(null) {
+            @Override
+            public Context getApplicationContext() {
+                return this;
+            }
+
+            @Override
+            public File getFilesDir() {
+                return filesDir;
+            }
+        };
+        journal = new File(filesDir, "autonomous-dialog/interactions.journal");
+        DialogExecutors.setBackgroundExecutor(new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                runnable.run();
+            }
+        });
+        InteractionRecorder.enable(context);
+    }
+
+    @After
+    public void tearDown() {
+        InteractionRecorder.disable();
+        DialogExecutors.setBackgroundExecutor(null);
+    }
+
+    @Test
+    public void readsRecordedInteractionsInOrder() {
+        InteractionRecorder.recordShown("delete", "com.example.DeleteWrapper");
+        InteractionRecorder.recordDecision("delete", "com.example.DeleteWrapper",
+                DialogResult.RESULT_DIALOG_POSITIVE_BUTTON, -1, 1200);
+        InteractionRecorder.recordDecision("rename", null, DialogResult.RESULT_DIALOG_CANCELLED, -1, 300);
+
+        List<InteractionRecorder.Interaction> interactions = InteractionRecorder.read(context);
+        assertEquals(3, interactions.size());
+
+        InteractionRecorder.Interaction shown = interactions.get(0);
+        assertEquals(InteractionRecorder.EVENT_SHOWN, shown.getType());
+        assertEquals("delete", shown.getIdentifier());
+        assertEquals("com.example.DeleteWrapper", shown.getWrapperClass());
+        assertEquals(-1, shown.getWhich());
+        assertEquals(0, shown.getTimeToDecision());
+
+        InteractionRecorder.Interaction decided = interactions.get(1);
+        assertEquals(InteractionRecorder.EVENT_DECIDED, decided.getType());
+        assertEquals(DialogResult.RESULT_DIALOG_POSITIVE_BUTTON, decided.getResultCode());
+        assertEquals(1200, decided.getTimeToDecision());
+
+        InteractionRecorder.Interaction cancelled = interactions.get(2);
+        assertEquals(InteractionRecorder.EVENT_CANCELLED, cancelled.getType());
+        assertEquals("rename", cancelled.getIdentifier());
+        assertEquals("", cancelled.getWrapperClass());
+    }
+
+    @Test
+    public void writesVersionedFixedLayout() throws IOException {
+        long before = System.currentTimeMillis();
+        InteractionRecorder.recordDecision("delete", "com.example.DeleteWrapper",
+                DialogResult.RESULT_DIALOG_SINGLE_CHOICE, 2, 450);
+        InteractionRecorder.read(context);
+
+        DataInputStream inputStream = new DataInputStream(new FileInputStream(journal));
+        try {
+            assertEquals(1, inputStream.readByte());
+            assertEquals(InteractionRecorder.EVENT_DECIDED, inputStream.readByte());
+            long timestamp = inputStream.readLong();
+            assertTrue(timestamp >= before && timestamp <= System.currentTimeMillis());
+            assertEquals("delete", inputStream.readUTF());
+            assertEquals("com.example.DeleteWrapper", inputStream.readUTF());
+            assertEquals(DialogResult.RESULT_DIALOG_SINGLE_CHOICE, inputStream.readInt());
+            assertEquals(2, inputStream.readInt());
+            assertEquals(450, inputStream.readLong());
+            assertEquals(-1, inputStream.read());
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    @Test
+    public void appendsBatchesToJournal() {
+        InteractionRecorder.recordShown("delete", null);
+        assertEquals(1, InteractionRecorder.read(context).size());
+
+        InteractionRecorder.recordShown("rename", null);
+        List<InteractionRecorder.Interaction> interactions = InteractionRecorder.read(context);
+        assertEquals(2, interactions.size());
+        assertEquals("rename", interactions.get(1).getIdentifier());
+    }
+
+    @Test
+    public void skipsTornEventAtTheEnd() throws IOException {
+        InteractionRecorder.recordShown("delete", null);
+        InteractionRecorder.read(context);
+
+        DataOutputStream outputStream = new DataOutputStream(new FileOutputStream(journal, true));
+        try {
+            outputStream.writeByte(1);
+            outputStream.writeByte(InteractionRecorder.EVENT_SHOWN);
+            outputStream.writeInt(0);
+        } finally {
+            outputStream.close();
+        }
+
+        assertEquals(1, InteractionRecorder.read(context).size());
+    }
+
+    @Test
+    public void stopsAtUnknownVersion() throws IOException {
+        InteractionRecorder.recordShown("delete", null);
+        InteractionRecorder.read(context);
+
+        DataOutputStream outputStream = new DataOutputStream(new FileOutputStream(journal, true));
+        try {
+            outputStream.writeByte(2);
+            outputStream.writeLong(0);
+        } finally {
+            outputStream.close();
+        }
+        InteractionRecorder.recordShown("rename", null);
+
+        List<InteractionRecorder.Interaction> interactions = InteractionRecorder.read(context);
+        assertEquals(1, interactions.size());
+        assertEquals("delete", interactions.get(0).getIdentifier());
+    }
+
+    @Test
+    public void flushesWhenUiIsHidden() {
+        InteractionRecorder.recordShown("delete", null);
+        assertFalse(journal.exists());
+
+        InteractionRecorder.trim(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertTrue(journal.length() > 0);
+    }
+
+    @Test
+    public void keepsRecordingWhileUiIsVisible() {
+        InteractionRecorder.recordShown("delete", null);
+
+        InteractionRecorder.trim(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertFalse(journal.exists());
+        assertEquals(1, InteractionRecorder.read(context).size());
+    }
+
+    @Test
+    public void recordsNothingWhileDisabled() {
+        InteractionRecorder.disable();
+        InteractionRecorder.recordShown("delete", null);
+
+        assertTrue(InteractionRecorder.read(context).isEmpty());
+        assertFalse(journal.exists());
+    }
+
+    @Test
+    public void clearsJournal() {
+        InteractionRecorder.recordShown("delete", null);
+        InteractionRecorder.read(context);
+
+        InteractionRecorder.clear(context);
+        assertFalse(journal.exists());
+        assertTrue(InteractionRecorder.read(context).isEmpty());
+    }
+}
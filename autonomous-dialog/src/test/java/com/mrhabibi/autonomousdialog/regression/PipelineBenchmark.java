@@ -0,0 +1,269 @@
+package com.mrhabibi.autonomousdialog.regression;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.Bundle;
+
+import com.mrhabibi.autonomousdialog.DialogResult;
+import com.mrhabibi.autonomousdialog.instrumentation.DialogInstrumentation;
+import com.mrhabibi.autonomousdialog.instrumentation.ParcelSizeProfiler;
+
+import org.robolectric.Robolectric;
+import org.robolectric.shadows.ShadowActivity;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ActivityController;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Runs a scenario through the whole show and result pipeline under Robolectric, from
+ * Builder.show() through the host, the answer and onActivityResult of the caller to the parsed
+ * DialogResult. Only the rounds after the warm up ones are measured, the wall time and the
+ * allocated bytes are the medians of them and the parcel sizes are the largest ones measured by
+ * ParcelSizeProfiler. The allocated bytes are counted on the calling thread only, so the executors
+ * of the library must run inline
+ */
+class PipelineBenchmark {
+
+    static final long UNKNOWN = -1;
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 9;
+
+    private static final int PAYLOAD_COUNT = ParcelSizeProfiler.PAYLOAD_RESULT + 1;
+
+    /**
+     * One way a dialog is shown and answered, every show must use the same identifier
+     */
+    interface Scenario {
+
+        String getIdentifier();
+
+        /**
+         * Build and show the dialog from the caller
+         */
+        void show(Activity caller);
+
+        /**
+         * Answer the shown dialog like the user does, the host must finish
+         */
+        void answer(Activity host);
+
+        /**
+         * Check the parsed result
+         */
+        void verify(DialogResult result);
+    }
+
+    static Measurement run(Scenario scenario) {
+        ActivityController<CallerActivity> callerController = Robolectric.buildActivity(CallerActivity.class).setup();
+        CallerActivity caller = callerController.get();
+
+        PayloadCollector payloads = new PayloadCollector(scenario.getIdentifier());
+        DialogInstrumentation.setListener(payloads);
+        ParcelSizeProfiler.reset();
+        ParcelSizeProfiler.enable(caller);
+        try {
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                runRound(scenario, caller);
+            }
+            payloads.reset();
+
+            long[] wallNanos = new long[MEASURED_ROUNDS];
+            long[] allocatedBytes = new long[MEASURED_ROUNDS];
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                long allocatedBefore = getAllocatedBytes();
+                long start = System.nanoTime();
+                runRound(scenario, caller);
+                wallNanos[i] = System.nanoTime() - start;
+                long allocatedAfter = getAllocatedBytes();
+                allocatedBytes[i] = allocatedBefore != UNKNOWN && allocatedAfter != UNKNOWN
+                        ? allocatedAfter - allocatedBefore : UNKNOWN;
+            }
+            return new Measurement(median(wallNanos) / 1000000, median(allocatedBytes), payloads.getMaxBytes());
+        } finally {
+            ParcelSizeProfiler.disable();
+            DialogInstrumentation.setListener(null);
+            callerController.pause().stop().destroy();
+        }
+    }
+
+    private static void runRound(Scenario scenario, CallerActivity caller) {
+        String identifier = scenario.getIdentifier();
+        ShadowActivity shadowCaller = shadowOf(caller);
+
+        scenario.show(caller);
+        ShadowActivity.IntentForResult started = shadowCaller.getNextStartedActivityForResult();
+        assertNotNull(identifier + " has started no host", started);
+        assertEquals(DialogResult.REQUEST_DIALOG, started.requestCode);
+
+        ActivityController<? extends Activity> host = buildHost(started.intent).setup();
+
+        /*
+         * The host goes to background once, so its saved state is measured too
+         */
+        host.pause().saveInstanceState(new Bundle()).stop().start().resume();
+
+        scenario.answer(host.get());
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertTrue(identifier + " host hasn't finished after the answer", host.get().isFinishing());
+
+        ShadowActivity shadowHost = shadowOf(host.get());
+        shadowCaller.receiveResult(started.intent, shadowHost.getResultCode(), shadowHost.getResultIntent());
+        host.pause().stop().destroy();
+
+        DialogResult result = caller.takeResult();
+        assertNotNull(identifier + " result hasn't reached the caller", result);
+        scenario.verify(result);
+    }
+
+    private static ActivityController<? extends Activity> buildHost(Intent intent) {
+        String className = intent.getComponent().getClassName();
+        try {
+            return Robolectric.buildActivity(Class.forName(className).asSubclass(Activity.class), intent);
+        } catch (ClassNotFoundException e) {
+            throw new AssertionError("Unknown dialog host " + className);
+        }
+    }
+
+    /**
+     * Bytes allocated by the current thread so far, only HotSpot based JVMs count them
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotSpotThreads = (com.sun.management.ThreadMXBean) threads;
+            if (hotSpotThreads.isThreadAllocatedMemorySupported() && hotSpotThreads.isThreadAllocatedMemoryEnabled()) {
+                return hotSpotThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return UNKNOWN;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        if (sorted[0] == UNKNOWN) {
+            return UNKNOWN;
+        }
+        return sorted[sorted.length / 2];
+    }
+
+    /**
+     * The measured numbers of one scenario
+     */
+    static class Measurement {
+
+        static final String WALL_MILLIS = "wallMillis";
+        static final String ALLOCATED_BYTES = "allocatedBytes";
+
+        /**
+         * The payload metric names in PAYLOAD_* order
+         */
+        static final String[] PAYLOAD_METRICS = {"intentExtrasBytes", "argumentsBytes", "savedStateBytes", "resultBytes"};
+
+        final long wallMillis;
+        final long allocatedBytes;
+        private final int[] mPayloadBytes;
+
+        Measurement(long wallMillis, long allocatedBytes, int[] payloadBytes) {
+            this.wallMillis = wallMillis;
+            this.allocatedBytes = allocatedBytes;
+            this.mPayloadBytes = payloadBytes;
+        }
+
+        static String[] getMetrics() {
+            String[] metrics = new String[PAYLOAD_METRICS.length + 2];
+            metrics[0] = WALL_MILLIS;
+            metrics[1] = ALLOCATED_BYTES;
+            System.arraycopy(PAYLOAD_METRICS, 0, metrics, 2, PAYLOAD_METRICS.length);
+            return metrics;
+        }
+
+        /**
+         * @param metric One of getMetrics()
+         * @return The value, or UNKNOWN if it can't be measured on this JVM
+         */
+        long get(String metric) {
+            if (WALL_MILLIS.equals(metric)) {
+                return wallMillis;
+            }
+            if (ALLOCATED_BYTES.equals(metric)) {
+                return allocatedBytes;
+            }
+            for (int i = 0; i < PAYLOAD_METRICS.length; i++) {
+                if (PAYLOAD_METRICS[i].equals(metric)) {
+                    return mPayloadBytes[i];
+                }
+            }
+            throw new IllegalArgumentException("Unknown metric " + metric);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for (String metric : getMetrics()) {
+                if (builder.length() > 0) {
+                    builder.append(", ");
+                }
+                builder.append(metric).append('=').append(get(metric));
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Keeps the largest size of every payload of the scenario dialog
+     */
+    private static class PayloadCollector extends DialogInstrumentation.Listener {
+        private final String mIdentifier;
+        private final int[] mMaxBytes = new int[PAYLOAD_COUNT];
+
+        PayloadCollector(String identifier) {
+            mIdentifier = identifier;
+        }
+
+        @Override
+        public void onPayloadMeasured(int payload, String identifier, String wrapperClass, int bytes) {
+            if (mIdentifier.equals(identifier) && payload < PAYLOAD_COUNT) {
+                mMaxBytes[payload] = Math.max(mMaxBytes[payload], bytes);
+            }
+        }
+
+        void reset() {
+            Arrays.fill(mMaxBytes, 0);
+        }
+
+        int[] getMaxBytes() {
+            return mMaxBytes.clone();
+        }
+    }
+
+    /**
+     * The activity that shows the dialogs and receives their results
+     */
+    public static class CallerActivity extends Activity {
+        private DialogResult mResult;
+
+        @Override
+        protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+            super.onActivityResult(requestCode, resultCode, data);
+            if (requestCode == DialogResult.REQUEST_DIALOG) {
+                mResult = new DialogResult(resultCode, data);
+            }
+        }
+
+        DialogResult takeResult() {
+            DialogResult result = mResult;
+            mResult = null;
+            return result;
+        }
+    }
+}
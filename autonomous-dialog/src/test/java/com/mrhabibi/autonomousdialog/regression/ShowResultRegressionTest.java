@@ -0,0 +1,382 @@
+package com.mrhabibi.autonomousdialog.regression;
+
+import android.app.Activity;
+import android.content.DialogInterface;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.v4.app.Fragment;
+import android.support.v4.app.FragmentActivity;
+import android.support.v7.app.AlertDialog;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import com.mrhabibi.autonomousdialog.AutonomousDialog;
+import com.mrhabibi.autonomousdialog.BuildConfig;
+import com.mrhabibi.autonomousdialog.DialogActivity;
+import com.mrhabibi.autonomousdialog.DialogCallback;
+import com.mrhabibi.autonomousdialog.DialogResult;
+import com.mrhabibi.autonomousdialog.R;
+import com.mrhabibi.autonomousdialog.utils.DialogExecutors;
+import com.mrhabibi.autonomousdialog.wrapper.BasicDialogWrapper;
+import com.mrhabibi.autonomousdialog.wrapper.ViewDialogWrapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowDialog;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Guards the cost of showing a dialog and getting its result, every scenario is measured by
+ * PipelineBenchmark and fails when a measurement is over its budget in budgets.properties, so a
+ * regression fails the build. The measurements are printed to the test output, use them to
+ * update the budgets when the cost changes on purpose
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class ShowResultRegressionTest {
+
+    private static final String BUDGETS = "budgets.properties";
+
+    private final Properties budgets = new Properties();
+
+    @Before
+    public void setUp() throws IOException {
+        Executor inline = new Executor() {
+            @Override
+            public void execute(@NonNull Runnable runnable) {
+                runnable.run();
+            }
+        };
+        DialogExecutors.setBackgroundExecutor(inline);
+        DialogExecutors.setIoExecutor(inline);
+        DialogExecutors.setMainThreadExecutor(inline);
+
+        InputStream input = ShowResultRegressionTest.class.getResourceAsStream(BUDGETS);
+        assertNotNull(BUDGETS + " is missing", input);
+        try {
+            budgets.load(input);
+        } finally {
+            input.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        DialogExecutors.setBackgroundExecutor(null);
+        DialogExecutors.setIoExecutor(null);
+        DialogExecutors.setMainThreadExecutor(null);
+    }
+
+    @Test
+    public void basic() {
+        assertWithinBudgets("basic", PipelineBenchmark.run(new BasicScenario()));
+    }
+
+    @Test
+    public void choice() {
+        assertWithinBudgets("choice", PipelineBenchmark.run(new ChoiceScenario()));
+    }
+
+    @Test
+    public void view() {
+        assertWithinBudgets("view", PipelineBenchmark.run(new ViewScenario()));
+    }
+
+    @Test
+    public void fragment() {
+        assertWithinBudgets("fragment", PipelineBenchmark.run(new FragmentScenario()));
+    }
+
+    @Test
+    public void customActivity() {
+        assertWithinBudgets("customActivity", PipelineBenchmark.run(new CustomActivityScenario()));
+    }
+
+    private void assertWithinBudgets(String scenario, PipelineBenchmark.Measurement measurement) {
+        System.out.println(scenario + ": " + measurement);
+
+        StringBuilder overBudget = new StringBuilder();
+        for (String metric : PipelineBenchmark.Measurement.getMetrics()) {
+            long value = measurement.get(metric);
+            if (value == PipelineBenchmark.UNKNOWN) {
+                continue;
+            }
+            String budget = budgets.getProperty(scenario + "." + metric);
+            assertNotNull("No budget for " + scenario + "." + metric + " in " + BUDGETS, budget);
+            if (value > Long.parseLong(budget.trim())) {
+                overBudget.append("\n").append(metric).append(" is ").append(value)
+                        .append(", over the budget of ").append(budget.trim());
+            }
+        }
+        if (overBudget.length() > 0) {
+            fail(scenario + " has regressed:" + overBudget);
+        }
+    }
+
+    private static AlertDialog getShownDialog() {
+        AlertDialog dialog = (AlertDialog) ShadowDialog.getLatestDialog();
+        assertNotNull("No alert dialog is shown", dialog);
+        assertTrue(dialog.isShowing());
+        return dialog;
+    }
+
+    private static class BasicScenario implements PipelineBenchmark.Scenario {
+        static final String IDENTIFIER = "regressionBasic";
+
+        @Override
+        public String getIdentifier() {
+            return IDENTIFIER;
+        }
+
+        @Override
+        public void show(Activity caller) {
+            Bundle params = new Bundle();
+            params.putString("itemName", "Sample item");
+            AutonomousDialog.builder(caller, IDENTIFIER)
+                    .setContent(BasicDialogWrapper.newBuilder()
+                            .title("Delete item")
+                            .message("The item will be deleted permanently")
+                            .positiveText("Delete")
+                            .negativeText("Cancel")
+                            .build())
+                    .setParams(params)
+                    .show();
+        }
+
+        @Override
+        public void answer(Activity host) {
+            getShownDialog().getButton(DialogInterface.BUTTON_POSITIVE).performClick();
+        }
+
+        @Override
+        public void verify(DialogResult result) {
+            assertTrue(result.isPositive(IDENTIFIER));
+            assertEquals("Sample item", result.getParams().getString("itemName"));
+        }
+    }
+
+    private static class ChoiceScenario implements PipelineBenchmark.Scenario {
+        static final String IDENTIFIER = "regressionChoice";
+
+        @Override
+        public String getIdentifier() {
+            return IDENTIFIER;
+        }
+
+        @Override
+        public void show(Activity caller) {
+            AutonomousDialog.builder(caller, IDENTIFIER)
+                    .setContent(BasicDialogWrapper.newBuilder()
+                            .title("Size")
+                            .singleChoiceOptions(new CharSequence[]{"Small", "Medium", "Large"})
+                            .singleChoiceSelectedOption(0)
+                            .build())
+                    .show();
+        }
+
+        @Override
+        public void answer(Activity host) {
+            ListView list = getShownDialog().getListView();
+            list.performItemClick(list.getAdapter().getView(1, null, list), 1, list.getItemIdAtPosition(1));
+        }
+
+        @Override
+        public void verify(DialogResult result) {
+            assertTrue(result.isSingleChoice(IDENTIFIER));
+            assertEquals(1, result.getWhich());
+            assertEquals(1, result.getResponses().getInt(BasicDialogWrapper.SINGLE_CHOICE_SELECTED_OPTION));
+        }
+    }
+
+    private static class ViewScenario implements PipelineBenchmark.Scenario {
+        static final String IDENTIFIER = "regressionView";
+
+        @Override
+        public String getIdentifier() {
+            return IDENTIFIER;
+        }
+
+        @Override
+        public void show(Activity caller) {
+            AutonomousDialog.builder(caller, IDENTIFIER)
+                    .setContent(new NoteDialogWrapper.Builder()
+                            .title("Delivery note")
+                            .positiveText("Save")
+                            .build())
+                    .show();
+        }
+
+        @Override
+        public void answer(Activity host) {
+            AlertDialog dialog = getShownDialog();
+            ((EditText) dialog.findViewById(android.R.id.edit)).setText("Leave it at the door");
+            dialog.getButton(DialogInterface.BUTTON_POSITIVE).performClick();
+        }
+
+        @Override
+        public void verify(DialogResult result) {
+            assertTrue(result.isPositive(IDENTIFIER));
+            assertEquals("Leave it at the door", result.getResponses().getString(NoteDialogWrapper.NOTE_RESPONSE));
+        }
+    }
+
+    private static class FragmentScenario implements PipelineBenchmark.Scenario {
+        static final String IDENTIFIER = "regressionFragment";
+
+        @Override
+        public String getIdentifier() {
+            return IDENTIFIER;
+        }
+
+        @Override
+        public void show(Activity caller) {
+            AutonomousDialog.builder(caller, IDENTIFIER)
+                    .setContent(new ConfirmFragment())
+                    .show();
+        }
+
+        @Override
+        public void answer(Activity host) {
+            Fragment fragment = ((FragmentActivity) host).getSupportFragmentManager().findFragmentByTag(DialogActivity.FRAGMENT_TAG);
+            assertNotNull("The fragment isn't attached", fragment);
+            fragment.getView().performClick();
+        }
+
+        @Override
+        public void verify(DialogResult result) {
+            assertTrue(result.isPositive(getIdentifier()));
+            assertTrue(result.getResponses().getBoolean(ConfirmFragment.CONFIRMED_RESPONSE));
+        }
+    }
+
+    private static class CustomActivityScenario extends FragmentScenario {
+        static final String IDENTIFIER = "regressionCustomActivity";
+
+        @Override
+        public String getIdentifier() {
+            return IDENTIFIER;
+        }
+
+        @Override
+        public void show(Activity caller) {
+            AutonomousDialog.builder(caller, IDENTIFIER)
+                    .setContent(CustomDialogActivity.class, new ConfirmFragment())
+                    .setTheme(R.style.AutonomousDialogFragment)
+                    .show();
+        }
+    }
+
+    /**
+     * Alert dialog with a note field
+     */
+    public static class NoteDialogWrapper extends ViewDialogWrapper {
+        static final String NOTE_RESPONSE = "note";
+
+        private EditText mNoteView;
+
+        @NonNull
+        @Override
+        public View getView() {
+            mNoteView = new EditText(getContext());
+            mNoteView.setId(android.R.id.edit);
+            return mNoteView;
+        }
+
+        @Override
+        protected boolean isSavingHierarchyState() {
+            return true;
+        }
+
+        @Override
+        protected void onBundleResponses(Bundle responses, Bundle savedViewState) {
+            responses.putString(NOTE_RESPONSE, mNoteView.getText().toString());
+        }
+
+        public static class Builder extends ViewDialogWrapper.Builder {
+
+            @Override
+            public NoteDialogWrapper build() {
+                NoteDialogWrapper dialogWrapper = new NoteDialogWrapper();
+                dialogWrapper.setArguments(arguments);
+                return dialogWrapper;
+            }
+        }
+    }
+
+    /**
+     * Dialog fragment content with a confirm button that finishes the host
+     */
+    public static class ConfirmFragment extends Fragment implements DialogCallback {
+        static final String CONFIRMED_RESPONSE = "confirmed";
+
+        private int mResultCode = DialogResult.RESULT_DIALOG_CANCELLED;
+
+        @Override
+        public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+            Button button = new Button(getContext());
+            button.setText("Confirm");
+            button.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View view) {
+                    mResultCode = DialogResult.RESULT_DIALOG_POSITIVE_BUTTON;
+                    getActivity().finish();
+                }
+            });
+            return button;
+        }
+
+        @Override
+        public void onBundleResponses(Bundle responses) {
+            responses.putBoolean(CONFIRMED_RESPONSE, mResultCode == DialogResult.RESULT_DIALOG_POSITIVE_BUTTON);
+        }
+
+        @Override
+        public int getResultCode() {
+            return mResultCode;
+        }
+    }
+
+    /**
+     * Custom host with its own layout around the fragment container
+     */
+    public static class CustomDialogActivity extends DialogActivity {
+
+        @Override
+        protected void onCreate(Bundle savedInstanceState) {
+            super.onCreate(savedInstanceState);
+
+            LinearLayout content = new LinearLayout(this);
+            content.setOrientation(LinearLayout.VERTICAL);
+
+            TextView header = new TextView(this);
+            header.setText("Confirm the order");
+            content.addView(header);
+
+            FrameLayout container = new FrameLayout(this);
+            container.setId(R.id.fragment_container);
+            content.addView(container);
+
+            setContentView(content);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.mrhabibi.autonomousdialog.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * The main thread is replaced by a queue that runs only when the test says so, so the batches
+ * drained into the ring are seen one by one
+ */
+public class TextStreamTest {
+
+    private final QueuedExecutor mainThread = new QueuedExecutor();
+    private TextStream stream;
+
+    @Before
+    public void setUp() {
+        DialogExecutors.setMainThreadExecutor(mainThread);
+    }
+
+    @After
+    public void tearDown() {
+        if (stream != null) {
+            stream.close();
+        }
+        DialogExecutors.setMainThreadExecutor(null);
+    }
+
+    @Test
+    public void drainsAppendedLinesInOneBatch() {
+        stream = TextStream.open(10);
+        CountingListener listener = new CountingListener();
+        stream.addOnStreamChangedListener(listener);
+
+        stream.append("first\nsecond");
+        stream.append("third");
+        assertEquals(0, stream.size());
+        assertEquals(1, mainThread.size());
+
+        mainThread.runAll();
+        assertEquals(3, stream.size());
+        assertEquals("first", stream.getLine(0).toString());
+        assertEquals("second", stream.getLine(1).toString());
+        assertEquals("third", stream.getLine(2).toString());
+        assertEquals(1, listener.count);
+    }
+
+    @Test
+    public void splitsTrailingAndEmptyLines() {
+        stream = TextStream.open(10);
+
+        stream.append("first\n");
+        stream.append("");
+        mainThread.runAll();
+
+        assertEquals(2, stream.size());
+        assertEquals("first", stream.getLine(0).toString());
+        assertEquals("", stream.getLine(1).toString());
+    }
+
+    @Test
+    public void keepsLastLinesWhenRingIsFull() {
+        stream = TextStream.open(3);
+
+        stream.append("1\n2");
+        mainThread.runAll();
+        stream.append("3\n4\n5");
+        mainThread.runAll();
+
+        assertEquals(3, stream.size());
+        assertEquals("3", stream.getLine(0).toString());
+        assertEquals("4", stream.getLine(1).toString());
+        assertEquals("5", stream.getLine(2).toString());
+
+        stream.append("6\n7");
+        mainThread.runAll();
+        assertEquals("5", stream.getLine(0).toString());
+        assertEquals("6", stream.getLine(1).toString());
+        assertEquals("7", stream.getLine(2).toString());
+    }
+
+    @Test
+    public void boundsPendingLinesBeforeDrain() {
+        stream = TextStream.open(3);
+
+        for (int i = 1; i <= 10; i++) {
+            stream.append(String.valueOf(i));
+        }
+        mainThread.runAll();
+
+        assertEquals(3, stream.size());
+        assertEquals("8", stream.getLine(0).toString());
+        assertEquals("10", stream.getLine(2).toString());
+    }
+
+    @Test
+    public void clearsRingAndPendingLines() {
+        stream = TextStream.open(3);
+        stream.append("1\n2");
+        mainThread.runAll();
+
+        stream.append("3");
+        stream.clear();
+        mainThread.runAll();
+
+        assertEquals(0, stream.size());
+        stream.append("4");
+        mainThread.runAll();
+        assertEquals(1, stream.size());
+        assertEquals("4", stream.getLine(0).toString());
+    }
+
+    @Test
+    public void keepsLinesAppendedAfterClear() {
+        stream = TextStream.open(3);
+        stream.append("1");
+        mainThread.runAll();
+
+        stream.append("2");
+        stream.clear();
+        stream.append("3");
+        mainThread.runAll();
+
+        assertEquals(1, stream.size());
+        assertEquals("3", stream.getLine(0).toString());
+    }
+
+    @Test
+    public void keepsStreamUntilClosed() {
+        stream = TextStream.open();
+        assertSame(stream, TextStream.get(stream.getStreamId()));
+        assertEquals(TextStream.DEFAULT_CAPACITY, stream.getCapacity());
+
+        stream.close();
+        assertNull(TextStream.get(stream.getStreamId()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyCapacity() {
+        TextStream.open(0);
+    }
+
+    private static class QueuedExecutor implements Executor {
+        private final ArrayDeque<Runnable> mRunnables = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable runnable) {
+            mRunnables.offerLast(runnable);
+        }
+
+        int size() {
+            return mRunnables.size();
+        }
+
+        void runAll() {
+            Runnable runnable;
+            while ((runnable = mRunnables.pollFirst()) != null) {
+                runnable.run();
+            }
+        }
+    }
+
+    private static class CountingListener implements TextStream.OnStreamChangedListener {
+        int count;
+
+        @Override
+        public void onStreamChanged(TextStream stream) {
+            count++;
+        }
+    }
+}